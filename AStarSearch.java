@@ -0,0 +1,306 @@
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ *  A* search for a shortest path between two nodes of a GraphSnapshot
+ *  whose edges carry non-negative integer weights.  Nodes are expanded
+ *  in order of their distance from the source plus a heuristic's
+ *  estimate of their distance to the target, so a good heuristic keeps
+ *  the search near the line between the two and expands far fewer
+ *  nodes than Dijkstra's algorithm would.  The path found is shortest
+ *  as long as the heuristic never overestimates (is admissible); a
+ *  node whose distance improves after it was expanded is simply
+ *  expanded again.
+ *
+ *  For the GUI's graphs, whose nodes carry PlacedData positions,
+ *  euclidean() estimates the straight-line distance between the two
+ *  nodes, which is admissible whenever no edge weighs less than the
+ *  distance between its endpoints times the scale given.  of() picks
+ *  the largest such scale for the graph it is given, since the GUI's
+ *  weights bear no relation to its pixel positions.
+ *
+ *  Like ShortestPaths, the engine allocates its arrays and heap once
+ *  and stamps their entries with the query that wrote them, so queries
+ *  allocate nothing.  expanded() reports how many nodes the last query
+ *  expanded.
+ */
+public class AStarSearch<N,E> {
+    /**
+     *  Estimates the distance between two nodes from their data.
+     */
+    public interface Heuristic<N> {
+	/**
+	 *  Estimates the length of a shortest path from one node to
+	 *  another.  For the path found to be shortest the estimate must
+	 *  never be larger than the true length.
+	 *
+	 *  @param from : the data of the node the path starts at
+	 *  @param to   : the data of the target node
+	 *  @return the estimate, at least 0
+	 */
+	long estimate(N from, N to);
+    }
+
+    /**
+     *  Returns a heuristic giving the straight-line distance between the
+     *  positions of two PlacedData, rounded down.
+     *
+     *  @return the heuristic
+     */
+    public static Heuristic<PlacedData<?>> euclidean() {
+	return euclidean(1.0);
+    }
+
+    /**
+     *  Returns a heuristic giving the straight-line distance between the
+     *  positions of two PlacedData times a scale, rounded down.  It is
+     *  admissible if every edge weighs at least the distance between its
+     *  endpoints times the scale.
+     *
+     *  @param scale : the least weight of an edge per unit of distance
+     *  @return the heuristic
+     */
+    public static Heuristic<PlacedData<?>> euclidean(final double scale) {
+	return new Heuristic<PlacedData<?>>() {
+	    public long estimate(PlacedData<?> from, PlacedData<?> to) {
+		double dx = from.getX() - to.getX();
+		double dy = from.getY() - to.getY();
+		return (long)(Math.sqrt(dx * dx + dy * dy) * scale);
+	    }
+	};
+    }
+
+    /**
+     *  Create an engine for one of the GUI's graphs: the edge data are
+     *  the weights and the heuristic is euclidean() with the largest
+     *  scale that keeps it admissible, the least weight per unit of
+     *  length over all the edges.
+     *  Performance: O(n + e)
+     *
+     *  @param snapshot : the graph to search
+     *  @return the engine
+     *  @throws Error if an edge has a negative or null weight
+     */
+    public static AStarSearch<PlacedData<Integer>,Integer> of(GraphSnapshot<PlacedData<Integer>,Integer> snapshot) {
+	return of(snapshot, admissibleScale(snapshot));
+    }
+
+    /**
+     *  Create an engine for one of the GUI's graphs: the edge data are
+     *  the weights and the heuristic is euclidean(scale).  The paths
+     *  found are shortest only if every edge weighs at least the
+     *  distance between its endpoints times the scale.
+     *  Performance: O(n + e)
+     *
+     *  @param snapshot : the graph to search
+     *  @param scale    : the least weight of an edge per unit of distance
+     *  @return the engine
+     *  @throws Error if an edge has a negative or null weight
+     */
+    public static AStarSearch<PlacedData<Integer>,Integer> of(GraphSnapshot<PlacedData<Integer>,Integer> snapshot,
+							      double scale) {
+	return new AStarSearch<PlacedData<Integer>,Integer>(snapshot, new ToIntFunction<Integer>() {
+		public int applyAsInt(Integer data) {
+		    if(data == null) {
+			throw new Error("Edge has no weight.");
+		    }
+		    return data;
+		}
+	    }, euclidean(scale));
+    }
+
+    /**
+     *  Returns the least weight per unit of length over the edges of a
+     *  graph, shaved a little so rounding cannot make euclidean()
+     *  overestimate, or 0 if no edge joins two distinct positions.
+     *  Performance: O(e)
+     */
+    private static double admissibleScale(GraphSnapshot<PlacedData<Integer>,Integer> snapshot) {
+	double scale = Double.POSITIVE_INFINITY;
+	for(int e = 0; e < snapshot.numEdges(); e++) {
+	    PlacedData<Integer> from = snapshot.nodeData(snapshot.tail(e));
+	    PlacedData<Integer> to = snapshot.nodeData(snapshot.head(e));
+	    Integer weight = snapshot.edgeData(e);
+	    if(from == null || to == null || weight == null) {
+		continue;
+	    }
+	    double dx = from.getX() - to.getX();
+	    double dy = from.getY() - to.getY();
+	    double length = Math.sqrt(dx * dx + dy * dy);
+	    if(length > 0) {
+		scale = Math.min(scale, Math.max(0, weight) / length);
+	    }
+	}
+	return (scale == Double.POSITIVE_INFINITY) ? 0 : scale * (1 - 1e-9);
+    }
+
+    /** The graph searched. */
+    private final GraphSnapshot<N,E> snapshot;
+    /** The weight of each edge. */
+    private final int[] weight;
+    /** Estimates distances to the target. */
+    private final Heuristic<? super N> heuristic;
+    /** The best known distance from the source to each node reached. */
+    private final long[] distance;
+    /** The heuristic's estimate for each node reached. */
+    private final long[] estimate;
+    /** The last edge on the best known path to each node reached. */
+    private final int[] parent;
+    /** The query that last reached each node. */
+    private final int[] reached;
+    /** The nodes waiting to be expanded, keyed by distance plus estimate. */
+    private final IndexedIntHeap open;
+    /** The number of the current query. */
+    private int query;
+    /** The target of the current query. */
+    private int target = -1;
+    /** The number of nodes expanded by the last query. */
+    private int expanded;
+    /** True if the last query reached its target. */
+    private boolean found;
+
+    /**
+     *  Create an engine for a snapshot.
+     *  Performance: O(n + e)
+     *
+     *  @param snapshot  : the graph to search
+     *  @param weigher   : gives the weight of an edge from its data
+     *  @param heuristic : estimates the distance between two nodes
+     *  @throws Error if an edge has a negative weight
+     */
+    public AStarSearch(GraphSnapshot<N,E> snapshot, ToIntFunction<? super E> weigher,
+		       Heuristic<? super N> heuristic) {
+	this.snapshot = snapshot;
+	this.heuristic = heuristic;
+	int n = snapshot.numNodes();
+	int m = snapshot.numEdges();
+	this.weight = new int[m];
+	for(int e = 0; e < m; e++) {
+	    weight[e] = weigher.applyAsInt(snapshot.edgeData(e));
+	    if(weight[e] < 0) {
+		throw new Error("Negative edge weight.");
+	    }
+	}
+	this.distance = new long[n];
+	this.estimate = new long[n];
+	this.parent = new int[n];
+	this.reached = new int[n];
+	this.open = new IndexedIntHeap(n);
+    }
+
+    /**
+     *  Finds a shortest path from source to target.
+     *  Performance: O((n' + e') log n') for the n' nodes and e' edges
+     *  the search reaches
+     *
+     *  @param source : the id of the starting node
+     *  @param target : the id of the node sought
+     *  @return the length of the path, or -1 if there is none
+     */
+    public long distance(int source, int target) {
+	if(source < 0 || source >= distance.length || target < 0 || target >= distance.length) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	open.clear();
+	query++;
+	if(query == 0) {
+	    Arrays.fill(reached, 0);
+	    query = 1;
+	}
+	this.target = target;
+	expanded = 0;
+	found = false;
+	N goal = snapshot.nodeData(target);
+	reach(source, 0, -1, goal);
+	while(!open.isEmpty()) {
+	    int v = open.poll();
+	    if(v == target) {
+		found = true;
+		return distance[v];
+	    }
+	    expanded++;
+	    long d = distance[v];
+	    for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+		int w = snapshot.head(e);
+		long candidate = d + weight[e];
+		if(reached[w] != query || candidate < distance[w]) {
+		    reach(w, candidate, e, goal);
+		}
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     *  Finds a shortest path between two nodes.
+     *
+     *  @param source : the starting node, of the snapshot or of the
+     *                  graph it was taken from
+     *  @param target : the node sought
+     *  @return the edges of the path, of the graph the snapshot was
+     *          taken from, or null if there is no path
+     *  @throws Error if either node does not belong to the snapshot
+     */
+    public List<Graph.Edge<N,E>> shortestPath(Graph.Node<N,E> source, Graph.Node<N,E> target) {
+	int s = snapshot.indexOf(source);
+	int t = snapshot.indexOf(target);
+	if(s < 0 || t < 0) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	if(distance(s, t) < 0) {
+	    return null;
+	}
+	List<Graph.Edge<N,E>> edges = new ArrayList<Graph.Edge<N,E>>();
+	for(int e : path()) {
+	    edges.add(snapshot.sourceEdge(e));
+	}
+	return edges;
+    }
+
+    /**
+     *  Returns the edges of the path found by the last query, from the
+     *  source onward.
+     *  Performance: O(length of the path)
+     *
+     *  @return the edge ids, or null if the last query found no path
+     */
+    public int[] path() {
+	if(!found) {
+	    return null;
+	}
+	int length = 0;
+	for(int w = target; parent[w] >= 0; w = snapshot.tail(parent[w])) {
+	    length++;
+	}
+	int[] path = new int[length];
+	for(int w = target; parent[w] >= 0; w = snapshot.tail(parent[w])) {
+	    path[--length] = parent[w];
+	}
+	return path;
+    }
+
+    /**
+     *  Returns the number of nodes the last query expanded, that is,
+     *  whose outgoing edges it followed.  A node expanded twice is
+     *  counted twice.
+     *  Performance: O(1)
+     *
+     *  @return the number of expansions
+     */
+    public int expanded() {
+	return expanded;
+    }
+
+    /**
+     *  Records a better path to a node and (re)opens it.
+     */
+    private void reach(int w, long d, int edge, N goal) {
+	if(reached[w] != query) {
+	    reached[w] = query;
+	    estimate[w] = heuristic.estimate(snapshot.nodeData(w), goal);
+	}
+	distance[w] = d;
+	parent[w] = edge;
+	open.offer(w, d + estimate[w]);
+    }
+}
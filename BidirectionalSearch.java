@@ -0,0 +1,365 @@
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ *  Point-to-point searches over a GraphSnapshot that work from both
+ *  ends at once: forward from the source along outgoing edges and
+ *  backward from the target along incoming edges, until the two
+ *  searches meet.  Each side only has to reach about half way, so on
+ *  graphs of large diameter far fewer nodes are explored than by a
+ *  search from the source alone.
+ *
+ *  hops() is a bidirectional breadth-first search counting edges: it
+ *  expands a whole level of whichever side has the smaller frontier,
+ *  and stops at the end of the first level in which the sides meet.
+ *  distance() is a bidirectional Dijkstra over non-negative integer
+ *  weights: it settles a node from whichever side's nearest unsettled
+ *  node is nearer, keeps the length of the best path seen through an
+ *  edge joining the sides, and stops once the two sides' nearest
+ *  unsettled nodes add up to no less than that.
+ *
+ *  As in ShortestPaths, all state is allocated once and stamped with
+ *  the query that wrote it, so queries allocate nothing.  explored()
+ *  reports how many nodes the last query expanded on both sides.
+ */
+public class BidirectionalSearch<N,E> {
+    /** The graph searched. */
+    private final GraphSnapshot<N,E> snapshot;
+    /** The weight of each edge, or null if only hops() is used. */
+    private final int[] weight;
+    /** Distances from the source and to the target. */
+    private final long[] forwardDistance;
+    private final long[] backwardDistance;
+    /** The edge by which each node was reached from either side, or -1. */
+    private final int[] forwardParent;
+    private final int[] backwardParent;
+    /** The query that last reached each node from either side. */
+    private final int[] forwardReached;
+    private final int[] backwardReached;
+    /** The query that last settled each node from either side. */
+    private final int[] forwardSettled;
+    private final int[] backwardSettled;
+    /** The breadth-first queues; each node is queued at most once a side. */
+    private final int[] forwardQueue;
+    private final int[] backwardQueue;
+    /** The Dijkstra heaps, created when first needed. */
+    private IndexedIntHeap forwardHeap;
+    private IndexedIntHeap backwardHeap;
+    /** The number of the current query. */
+    private int query;
+    /** The edge joining the two sides on the best path, or -1. */
+    private int meetEdge;
+    /** The node where the sides met when source is target, or -1. */
+    private int meetNode;
+    /** The number of nodes expanded by the last query. */
+    private int explored;
+
+    /**
+     *  Create an engine for a snapshot whose edge data are the weights.
+     *
+     *  @param snapshot : the graph to search
+     *  @return the engine
+     *  @throws Error if an edge has a negative or null weight
+     */
+    public static <N> BidirectionalSearch<N,Integer> of(GraphSnapshot<N,Integer> snapshot) {
+	return new BidirectionalSearch<N,Integer>(snapshot, new ToIntFunction<Integer>() {
+		public int applyAsInt(Integer data) {
+		    if(data == null) {
+			throw new Error("Edge has no weight.");
+		    }
+		    return data;
+		}
+	    });
+    }
+
+    /**
+     *  Create an engine for a snapshot, for hop counts only.
+     *
+     *  @param snapshot : the graph to search
+     */
+    public BidirectionalSearch(GraphSnapshot<N,E> snapshot) {
+	this(snapshot, null);
+    }
+
+    /**
+     *  Create an engine for a snapshot.
+     *  Performance: O(n + e)
+     *
+     *  @param snapshot : the graph to search
+     *  @param weigher  : gives the weight of an edge from its data, or
+     *                    null if only hops() will be used
+     *  @throws Error if an edge has a negative weight
+     */
+    public BidirectionalSearch(GraphSnapshot<N,E> snapshot, ToIntFunction<? super E> weigher) {
+	this.snapshot = snapshot;
+	int n = snapshot.numNodes();
+	if(weigher == null) {
+	    weight = null;
+	} else {
+	    weight = new int[snapshot.numEdges()];
+	    for(int e = 0; e < weight.length; e++) {
+		weight[e] = weigher.applyAsInt(snapshot.edgeData(e));
+		if(weight[e] < 0) {
+		    throw new Error("Negative edge weight.");
+		}
+	    }
+	}
+	forwardDistance = new long[n];
+	backwardDistance = new long[n];
+	forwardParent = new int[n];
+	backwardParent = new int[n];
+	forwardReached = new int[n];
+	backwardReached = new int[n];
+	forwardSettled = new int[n];
+	backwardSettled = new int[n];
+	forwardQueue = new int[n];
+	backwardQueue = new int[n];
+    }
+
+    /**
+     *  Finds a path with the fewest edges from source to target.
+     *  Performance: O(nodes and edges explored)
+     *
+     *  @param source : the id of the starting node
+     *  @param target : the id of the node sought
+     *  @return the number of edges on the path, or -1 if there is none
+     */
+    public long hops(int source, int target) {
+	start(source, target);
+	if(source == target) {
+	    return 0;
+	}
+	int forwardHead = 0, forwardTail = 1;
+	int backwardHead = 0, backwardTail = 1;
+	forwardQueue[0] = source;
+	backwardQueue[0] = target;
+	long best = Long.MAX_VALUE;
+	while(forwardHead < forwardTail && backwardHead < backwardTail) {
+	    if(forwardTail - forwardHead <= backwardTail - backwardHead) {
+		int end = forwardTail;
+		for(; forwardHead < end; forwardHead++) {
+		    int v = forwardQueue[forwardHead];
+		    explored++;
+		    for(int e = snapshot.outStart(v), stop = snapshot.outEnd(v); e < stop; e++) {
+			int w = snapshot.head(e);
+			if(backwardReached[w] == query && forwardDistance[v] + 1 + backwardDistance[w] < best) {
+			    best = forwardDistance[v] + 1 + backwardDistance[w];
+			    meetEdge = e;
+			}
+			if(forwardReached[w] != query) {
+			    forwardReached[w] = query;
+			    forwardDistance[w] = forwardDistance[v] + 1;
+			    forwardParent[w] = e;
+			    forwardQueue[forwardTail++] = w;
+			}
+		    }
+		}
+	    } else {
+		int end = backwardTail;
+		for(; backwardHead < end; backwardHead++) {
+		    int v = backwardQueue[backwardHead];
+		    explored++;
+		    for(int i = snapshot.inStart(v), stop = snapshot.inEnd(v); i < stop; i++) {
+			int u = snapshot.inSource(i);
+			int e = snapshot.inEdge(i);
+			if(forwardReached[u] == query && forwardDistance[u] + 1 + backwardDistance[v] < best) {
+			    best = forwardDistance[u] + 1 + backwardDistance[v];
+			    meetEdge = e;
+			}
+			if(backwardReached[u] != query) {
+			    backwardReached[u] = query;
+			    backwardDistance[u] = backwardDistance[v] + 1;
+			    backwardParent[u] = e;
+			    backwardQueue[backwardTail++] = u;
+			}
+		    }
+		}
+	    }
+	    if(best != Long.MAX_VALUE) {
+		return best;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     *  Finds a shortest weighted path from source to target.
+     *  Performance: O((n' + e') log n') for the n' nodes and e' edges
+     *  explored
+     *
+     *  @param source : the id of the starting node
+     *  @param target : the id of the node sought
+     *  @return the length of the path, or -1 if there is none
+     *  @throws Error if the engine was created without weights
+     */
+    public long distance(int source, int target) {
+	if(weight == null) {
+	    throw new Error("Search has no edge weights.");
+	}
+	if(forwardHeap == null) {
+	    forwardHeap = new IndexedIntHeap(forwardDistance.length);
+	    backwardHeap = new IndexedIntHeap(forwardDistance.length);
+	}
+	start(source, target);
+	if(source == target) {
+	    return 0;
+	}
+	forwardHeap.clear();
+	backwardHeap.clear();
+	forwardHeap.offer(source, 0);
+	backwardHeap.offer(target, 0);
+	long best = Long.MAX_VALUE;
+	while(!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+	    long forwardMin = forwardHeap.key(forwardHeap.peek());
+	    long backwardMin = backwardHeap.key(backwardHeap.peek());
+	    if(best != Long.MAX_VALUE && forwardMin + backwardMin >= best) {
+		break;
+	    }
+	    explored++;
+	    if(forwardMin <= backwardMin) {
+		int v = forwardHeap.poll();
+		forwardSettled[v] = query;
+		for(int e = snapshot.outStart(v), stop = snapshot.outEnd(v); e < stop; e++) {
+		    int w = snapshot.head(e);
+		    if(forwardSettled[w] == query) {
+			continue;
+		    }
+		    long d = forwardDistance[v] + weight[e];
+		    if(forwardReached[w] != query || d < forwardDistance[w]) {
+			forwardReached[w] = query;
+			forwardDistance[w] = d;
+			forwardParent[w] = e;
+			forwardHeap.offer(w, d);
+		    }
+		    if(backwardReached[w] == query && d + backwardDistance[w] < best) {
+			best = d + backwardDistance[w];
+			meetEdge = e;
+		    }
+		}
+	    } else {
+		int v = backwardHeap.poll();
+		backwardSettled[v] = query;
+		for(int i = snapshot.inStart(v), stop = snapshot.inEnd(v); i < stop; i++) {
+		    int u = snapshot.inSource(i);
+		    int e = snapshot.inEdge(i);
+		    if(backwardSettled[u] == query) {
+			continue;
+		    }
+		    long d = backwardDistance[v] + weight[e];
+		    if(backwardReached[u] != query || d < backwardDistance[u]) {
+			backwardReached[u] = query;
+			backwardDistance[u] = d;
+			backwardParent[u] = e;
+			backwardHeap.offer(u, d);
+		    }
+		    if(forwardReached[u] == query && forwardDistance[u] + d < best) {
+			best = forwardDistance[u] + d;
+			meetEdge = e;
+		    }
+		}
+	    }
+	}
+	return (best == Long.MAX_VALUE) ? -1 : best;
+    }
+
+    /**
+     *  Returns the edges of the path found by the last query, from the
+     *  source onward.
+     *  Performance: O(length of the path)
+     *
+     *  @return the edge ids, or null if the last query found no path
+     */
+    public int[] path() {
+	if(meetNode >= 0) {
+	    return new int[0];
+	}
+	if(meetEdge < 0) {
+	    return null;
+	}
+	int forwardLength = 0;
+	for(int w = snapshot.tail(meetEdge); forwardParent[w] >= 0; w = snapshot.tail(forwardParent[w])) {
+	    forwardLength++;
+	}
+	int backwardLength = 0;
+	for(int w = snapshot.head(meetEdge); backwardParent[w] >= 0; w = snapshot.head(backwardParent[w])) {
+	    backwardLength++;
+	}
+	int[] path = new int[forwardLength + 1 + backwardLength];
+	int at = forwardLength;
+	for(int w = snapshot.tail(meetEdge); forwardParent[w] >= 0; w = snapshot.tail(forwardParent[w])) {
+	    path[--at] = forwardParent[w];
+	}
+	at = forwardLength;
+	path[at++] = meetEdge;
+	for(int w = snapshot.head(meetEdge); backwardParent[w] >= 0; w = snapshot.head(backwardParent[w])) {
+	    path[at++] = backwardParent[w];
+	}
+	return path;
+    }
+
+    /**
+     *  Finds a shortest weighted path between two nodes.
+     *
+     *  @param source : the starting node, of the snapshot or of the
+     *                  graph it was taken from
+     *  @param target : the node sought
+     *  @return the edges of the path, of the graph the snapshot was
+     *          taken from, or null if there is no path
+     *  @throws Error if either node does not belong to the snapshot
+     */
+    public List<Graph.Edge<N,E>> shortestPath(Graph.Node<N,E> source, Graph.Node<N,E> target) {
+	int s = snapshot.indexOf(source);
+	int t = snapshot.indexOf(target);
+	if(s < 0 || t < 0) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	if(distance(s, t) < 0) {
+	    return null;
+	}
+	List<Graph.Edge<N,E>> edges = new ArrayList<Graph.Edge<N,E>>();
+	for(int e : path()) {
+	    edges.add(snapshot.sourceEdge(e));
+	}
+	return edges;
+    }
+
+    /**
+     *  Returns the number of nodes the last query expanded, counting
+     *  both sides.
+     *  Performance: O(1)
+     *
+     *  @return the number of nodes expanded
+     */
+    public int explored() {
+	return explored;
+    }
+
+    /**
+     *  Begins a new query, reaching the source forward and the target
+     *  backward.
+     */
+    private void start(int source, int target) {
+	int n = forwardDistance.length;
+	if(source < 0 || source >= n || target < 0 || target >= n) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	query++;
+	if(query == 0) {
+	    // the stamps have wrapped around; forget them all
+	    Arrays.fill(forwardReached, 0);
+	    Arrays.fill(backwardReached, 0);
+	    Arrays.fill(forwardSettled, 0);
+	    Arrays.fill(backwardSettled, 0);
+	    query = 1;
+	}
+	explored = 0;
+	meetEdge = -1;
+	meetNode = (source == target) ? source : -1;
+	forwardReached[source] = query;
+	forwardDistance[source] = 0;
+	forwardParent[source] = -1;
+	backwardReached[target] = query;
+	backwardDistance[target] = 0;
+	backwardParent[target] = -1;
+    }
+}
@@ -0,0 +1,553 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  A thread-safe implementation of the Graph interface.  Any number of
+ *  threads may add and remove nodes and edges while others traverse
+ *  the graph.
+ *
+ *  The node and edge sets, and each node's incoming and outgoing edge
+ *  sets, are concurrent hash sets, so reads never block and iteration
+ *  is weakly consistent: it never throws a
+ *  ConcurrentModificationException, and it sees every element present
+ *  for the whole iteration and possibly some added or removed during
+ *  it.  Writers that change a node's adjacency take a lock chosen by
+ *  the node's id from a fixed array of locks (lock striping), so
+ *  writers touching different nodes rarely contend.  When an operation
+ *  needs several stripes it takes them in increasing order, which rules
+ *  out deadlock.
+ */
+public class ConcurrentGraphImplementation<N,E> implements Graph<N,E> {
+    /** A set of all nodes in the graph. */
+    private final Set<NodeImplementation> nodes = ConcurrentHashMap.newKeySet();
+    /** A set of all edges in the graph. */
+    private final Set<EdgeImplementation> edges = ConcurrentHashMap.newKeySet();
+    /** The lock stripes; node v is guarded by locks[v.id & mask]. */
+    private final ReentrantLock[] locks;
+    /** locks.length - 1, where locks.length is a power of two. */
+    private final int mask;
+    /** The id to give the next node created. */
+    private final AtomicInteger nextNodeId = new AtomicInteger();
+    /** The id to give the next edge created. */
+    private final AtomicInteger nextEdgeId = new AtomicInteger();
+
+    /**
+     *  Create an empty graph with four lock stripes per processor.
+     */
+    public ConcurrentGraphImplementation() {
+	this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     *  Create an empty graph with at least the given number of lock
+     *  stripes.  More stripes mean less contention between writers at
+     *  the cost of a little memory.
+     *
+     *  @param stripes : the minimum number of lock stripes
+     */
+    public ConcurrentGraphImplementation(int stripes) {
+	int size = 1;
+	while(size < stripes) {
+	    size <<= 1;
+	}
+	locks = new ReentrantLock[size];
+	for(int i = 0; i < size; i++) {
+	    locks[i] = new ReentrantLock();
+	}
+	mask = size - 1;
+    }
+
+    /**
+     *  Get an unmodifiable, weakly consistent view of the nodes in the
+     *  graph.
+     *  Performance: O(1)
+     *
+     *  @return the set of the nodes in the graph
+     */
+    public Set<Node<N,E>> getNodes() {
+	return Collections.<Node<N,E>>unmodifiableSet(nodes);
+    }
+
+    /**
+     *  Get an unmodifiable, weakly consistent view of the edges in the
+     *  graph.
+     *  Performance: O(1)
+     *
+     *  @return the set of the edges in the graph
+     */
+    public Set<Edge<N,E>> getEdges() {
+	return Collections.<Edge<N,E>>unmodifiableSet(edges);
+    }
+
+    /**
+     *  Find a particular edge given its tail and head.
+     *  Performance: O(out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be found
+     *  @param head : the head ("to" node) of the edge to be found
+     *  @return the edge, or null if there is no such edge
+     */
+    public Edge<N,E> findEdge(Node<N,E> tail, Node<N,E> head) {
+	if(!(tail instanceof ConcurrentGraphImplementation.NodeImplementation)
+	   || ((NodeImplementation)tail).owner() != this) {
+	    return null;
+	}
+	for(EdgeImplementation edge : ((NodeImplementation)tail).outies) {
+	    if(edge.head == head && !edge.removed) {
+		return edge;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     *  Returns the number of nodes in the graph.  While other threads
+     *  are writing, the result is only an estimate.
+     *  Performance: O(1)
+     *
+     *  @return the number of nodes in the graph
+     */
+    public int numNodes() {
+	return nodes.size();
+    }
+
+    /**
+     *  Returns the number of edges in the graph.  While other threads
+     *  are writing, the result is only an estimate.
+     *  Performance: O(1)
+     *
+     *  @return the number of edges in the graph
+     */
+    public int numEdges() {
+	return edges.size();
+    }
+
+    /**
+     *  Adds a node to the graph. The new node will have degree 0.
+     *  Performance: O(1)
+     *
+     *  @param data : the data to be associated with the node
+     *  @return the new node
+     */
+    public Node<N,E> addNode(N data) {
+	NodeImplementation newnode = new NodeImplementation(data);
+	nodes.add(newnode);
+	return newnode;
+    }
+
+    /**
+     *  Adds an edge to the graph.
+     *  Performance: O(1)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be added
+     *  @param head : the head ("to" node) of the edge to be added
+     *  @return the new edge
+     *  @throws Error if either node does not belong to this graph
+     */
+    public Edge<N,E> addEdge(E data, Node<N,E> tail, Node<N,E> head) {
+	NodeImplementation t = member(tail);
+	NodeImplementation h = member(head);
+	int first = Math.min(t.id & mask, h.id & mask);
+	int second = Math.max(t.id & mask, h.id & mask);
+	lock(first, second);
+	try {
+	    if(t.removed || h.removed) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	    EdgeImplementation newedge = new EdgeImplementation(data, t, h);
+	    edges.add(newedge);
+	    t.outies.add(newedge);
+	    h.innies.add(newedge);
+	    return newedge;
+	} finally {
+	    unlock(first, second);
+	}
+    }
+
+    /**
+     *  Removes a node and all its incident edges from the graph.  Once
+     *  the node is marked removed no thread can attach a new edge to
+     *  it, so its edge sets only shrink while they are emptied.
+     *  Performance: O(degree)
+     *
+     *  @param node : the node to be removed
+     *  @throws Error if the node does not belong to this graph
+     */
+    public void removeNode(Node<N,E> node) {
+	NodeImplementation n = member(node);
+	ReentrantLock lock = locks[n.id & mask];
+	lock.lock();
+	try {
+	    if(n.removed) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	    n.removed = true;
+	} finally {
+	    lock.unlock();
+	}
+	for(EdgeImplementation edge : n.outies) {
+	    detachEdge(edge);
+	}
+	for(EdgeImplementation edge : n.innies) {
+	    detachEdge(edge);
+	}
+	nodes.remove(n);
+    }
+
+    /**
+     *  Removes an edge from the graph.
+     *  Performance: O(1)
+     *
+     *  @param edge : the edge to be removed
+     *  @throws Error if the edge does not belong to this graph
+     */
+    public void removeEdge(Edge<N,E> edge) {
+	if(!(edge instanceof ConcurrentGraphImplementation.EdgeImplementation)
+	   || ((EdgeImplementation)edge).owner() != this
+	   || !detachEdge((EdgeImplementation)edge)) {
+	    throw new Error("Edge does not belong to graph.");
+	}
+    }
+
+    /**
+     *  Removes every edge from the graph with the given tail and head
+     *  nodes.
+     *  Performance: O(out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be removed
+     *  @param head : the head ("to" node) of the edge to be removed
+     *  @throws Error if the head or tail nodes do not belong to this graph
+     */
+    public void removeEdge(Node<N,E> tail, Node<N,E> head) {
+	NodeImplementation t = member(tail);
+	member(head);
+	for(EdgeImplementation edge : t.outies) {
+	    if(edge.head == head) {
+		detachEdge(edge);
+	    }
+	}
+    }
+
+    /**
+     *  Returns a string representation of the graph.
+     *
+     *  @return a string representation of the graph
+     */
+    public String toString() {
+	StringBuilder builder = new StringBuilder();
+	builder.append("\n");
+	builder.append("Graph");
+	builder.append("\n");
+	for(NodeImplementation nodey : nodes) {
+	    builder.append("\n  Node: ");
+	    builder.append(nodey.getData().toString());
+	    for(EdgeImplementation edgey : nodey.outies) {
+		builder.append("\n    To: ").append(edgey.head.getData()).append(", ").append(edgey.getData());
+	    }
+	}
+	builder.append("\n\n Edges: ");
+	for(EdgeImplementation edgey : edges) {
+	    builder.append("\n    ").append(edgey.head.getData()).append(", ").append(edgey.getData());
+	}
+	builder.append("\n");
+	return builder.toString();
+    }
+
+    /**
+     *  Verifies the internal consistency of the graph structure.  The
+     *  answer is only meaningful while no other thread is writing.
+     *
+     *  @return true if consistent, false otherwise
+     */
+    public boolean validateGraph() {
+	for(EdgeImplementation edgey : edges) {
+	    if(!edgey.head.innies.contains(edgey) || !edgey.tail.outies.contains(edgey)) {
+		return false;
+	    }
+	    if(!nodes.contains(edgey.head) || !nodes.contains(edgey.tail)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     *  Casts a node to this graph's node class.
+     *
+     *  @throws Error if the node was not created by this graph
+     */
+    private NodeImplementation member(Node<N,E> node) {
+	if(!(node instanceof ConcurrentGraphImplementation.NodeImplementation)
+	   || ((NodeImplementation)node).owner() != this) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	return (NodeImplementation)node;
+    }
+
+    /**
+     *  Removes an edge from the graph and from its endpoints' sets,
+     *  unless another thread got there first.
+     *
+     *  @param edge : the edge to be removed
+     *  @return true if this call removed the edge
+     */
+    private boolean detachEdge(EdgeImplementation edge) {
+	while(true) {
+	    NodeImplementation t = edge.tail;
+	    NodeImplementation h = edge.head;
+	    int first = Math.min(t.id & mask, h.id & mask);
+	    int second = Math.max(t.id & mask, h.id & mask);
+	    lock(first, second);
+	    try {
+		// the edge may have been moved while we waited
+		if(edge.tail != t || edge.head != h) continue;
+		if(edge.removed) {
+		    return false;
+		}
+		edge.removed = true;
+		t.outies.remove(edge);
+		h.innies.remove(edge);
+		edges.remove(edge);
+		return true;
+	    } finally {
+		unlock(first, second);
+	    }
+	}
+    }
+
+    /**
+     *  Locks the given stripes in increasing order, skipping duplicates.
+     */
+    private void lock(int... stripes) {
+	Arrays.sort(stripes);
+	for(int i = 0; i < stripes.length; i++) {
+	    if(i == 0 || stripes[i] != stripes[i - 1]) {
+		locks[stripes[i]].lock();
+	    }
+	}
+    }
+
+    /**
+     *  Unlocks stripes locked by lock(), skipping duplicates.
+     */
+    private void unlock(int... stripes) {
+	Arrays.sort(stripes);
+	for(int i = stripes.length - 1; i >= 0; i--) {
+	    if(i == 0 || stripes[i] != stripes[i - 1]) {
+		locks[stripes[i]].unlock();
+	    }
+	}
+    }
+
+    /**
+     *  Represents a node in a graph.
+     */
+    private class NodeImplementation implements Graph.Node<N,E> {
+	/** The node's id, which picks its lock stripe and is its hash code. */
+	private final int id = nextNodeId.getAndIncrement();
+	/** The data associated with this node. */
+	private volatile N data;
+	/** Set once the node has been removed from the graph. */
+	private volatile boolean removed;
+	/** The set of edges entering this node. */
+	private final Set<EdgeImplementation> innies = ConcurrentHashMap.newKeySet();
+	/** The set of edges leaving this node. */
+	private final Set<EdgeImplementation> outies = ConcurrentHashMap.newKeySet();
+
+	/**
+	 *  Create a node with the given data.
+	 *
+	 *  @param data : the data to be associated with the node
+	 */
+	public NodeImplementation(N data) {
+	    this.data = data;
+	}
+
+	/** @return the graph this node was created by */
+	ConcurrentGraphImplementation<N,E> owner() {
+	    return ConcurrentGraphImplementation.this;
+	}
+
+	public N getData() {
+	    return data;
+	}
+
+	public void setData(N data) {
+	    this.data = data;
+	}
+
+	/**
+	 *  Returns an unmodifiable, weakly consistent view of the edges
+	 *  leaving this node.
+	 *  Performance: O(1)
+	 *
+	 *  @return the set of edges leaving this node
+	 */
+	public Set<Edge<N,E>> getOutgoingEdges() {
+	    return Collections.<Edge<N,E>>unmodifiableSet(outies);
+	}
+
+	/**
+	 *  Returns an unmodifiable, weakly consistent view of the edges
+	 *  entering this node.
+	 *  Performance: O(1)
+	 *
+	 *  @return the set of edges entering this node
+	 */
+	public Set<Edge<N,E>> getIncomingEdges() {
+	    return Collections.<Edge<N,E>>unmodifiableSet(innies);
+	}
+
+	/**
+	 *  Every node is distinct, so this is identity.
+	 *  Performance: O(1)
+	 *
+	 *  @param that : the node to compare to this one
+	 *  @return true if that is this very node
+	 */
+	public boolean equals(Node<N,E> that) {
+	    return (that == this);
+	}
+
+	public boolean equals(Object that) {
+	    return (that == this);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return data.toString();
+	}
+    }
+
+    /**
+     *  Represents an edge in the graph.
+     */
+    private class EdgeImplementation implements Graph.Edge<N,E> {
+	/** The edge's id, which is also its hash code. */
+	private final int id = nextEdgeId.getAndIncrement();
+	/** The data associated with this edge. */
+	private volatile E data;
+	/** The edge's tail node. */
+	private volatile NodeImplementation tail;
+	/** The edge's head node. */
+	private volatile NodeImplementation head;
+	/** Set once the edge has been removed from the graph. */
+	private volatile boolean removed;
+
+	/**
+	 *  Create an edge with the given data pointing from the tail node to the head node.
+	 *
+	 *  @param data : the data to be associated with the edge
+	 *  @param tail : the edge's tail node
+	 *  @param head : the edge's head node
+	 */
+	public EdgeImplementation(E data, NodeImplementation tail, NodeImplementation head) {
+	    this.data = data;
+	    this.tail = tail;
+	    this.head = head;
+	}
+
+	/** @return the graph this edge was created by */
+	ConcurrentGraphImplementation<N,E> owner() {
+	    return ConcurrentGraphImplementation.this;
+	}
+
+	public E getData() {
+	    return data;
+	}
+
+	public void setData(E data) {
+	    this.data = data;
+	}
+
+	public Node<N,E> getTail() {
+	    return tail;
+	}
+
+	/**
+	 *  Moves this edge to a new tail.
+	 *  Performance: O(1)
+	 *
+	 *  @param node : the new tail
+	 *  @throws Error if the edge or the new tail is not in the graph
+	 */
+	public void setTail(Node<N,E> node) {
+	    move(member(node), null);
+	}
+
+	public Node<N,E> getHead() {
+	    return head;
+	}
+
+	/**
+	 *  Moves this edge to a new head.
+	 *  Performance: O(1)
+	 *
+	 *  @param node : the new head
+	 *  @throws Error if the edge or the new head is not in the graph
+	 */
+	public void setHead(Node<N,E> node) {
+	    move(null, member(node));
+	}
+
+	/**
+	 *  Moves this edge to a new tail or head (whichever is not null)
+	 *  holding the stripes of the old endpoints and the new one.
+	 */
+	private void move(NodeImplementation newTail, NodeImplementation newHead) {
+	    while(true) {
+		NodeImplementation t = tail;
+		NodeImplementation h = head;
+		NodeImplementation target = (newTail != null) ? newTail : newHead;
+		int[] stripes = { t.id & mask, h.id & mask, target.id & mask };
+		lock(stripes);
+		try {
+		    if(tail != t || head != h) continue;
+		    if(removed || target.removed) {
+			throw new Error("Edge does not belong to graph.");
+		    }
+		    if(newTail != null) {
+			t.outies.remove(this);
+			tail = newTail;
+			newTail.outies.add(this);
+		    } else {
+			h.innies.remove(this);
+			head = newHead;
+			newHead.innies.add(this);
+		    }
+		    return;
+		} finally {
+		    unlock(stripes);
+		}
+	    }
+	}
+
+	/**
+	 *  Every edge is distinct, so this is identity.
+	 *  Performance: O(1)
+	 *
+	 *  @param that : the edge to compare to this one
+	 *  @return true if that is this very edge
+	 */
+	public boolean equals(Edge<N,E> that) {
+	    return (that == this);
+	}
+
+	public boolean equals(Object that) {
+	    return (that == this);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return data.toString();
+	}
+    }
+}
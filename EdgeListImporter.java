@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ *  Imports a plain-text edge list, one edge per line:
+ *
+ *      tail head weight
+ *
+ *  where the three fields are decimal integers separated by spaces or
+ *  tabs.  Blank lines and lines starting with '#' are skipped.  Nodes
+ *  are named by non-negative ids; the graph gets one node for every id
+ *  from 0 up to the largest id seen, and each node's data is its id.
+ *  Ids may leave gaps, but the largest must be less than ID_SLACK plus
+ *  twice the number of edges, so one stray large id cannot make the
+ *  importer create billions of nodes.
+ *
+ *  The file is memory-mapped and cut into chunks at line boundaries,
+ *  and the chunks are parsed in parallel, straight from the mapped
+ *  bytes into int arrays.  The parsed edges are then handed to a
+ *  GraphBuilder in file order.  importMapped() instead writes a
+ *  MappedGraph file without holding the edges anywhere: it parses the
+ *  file once in parallel to size the graph, then twice more as the
+ *  MappedGraph's EdgeSource.
+ */
+public class EdgeListImporter {
+    /** The smallest chunk worth handing to a thread. */
+    static final long MIN_CHUNK = 1 << 20;
+    /** The largest chunk, which must fit one mapping. */
+    static final long MAX_CHUNK = 1 << 30;
+    /** How many more ids than the edges could name are allowed. */
+    static final long ID_SLACK = 1 << 20;
+    /** The most edges one graph may have, which must fit one array. */
+    static final long MAX_EDGES = Integer.MAX_VALUE - 8;
+
+    private EdgeListImporter() {
+    }
+
+    /**
+     *  Imports an edge list as a graph whose accessors return copies.
+     *
+     *  @param path : the file to read
+     *  @return the graph read
+     *  @throws IOException if the file cannot be read or is malformed
+     */
+    public static GraphImplementation<Integer,Integer> read(Path path) throws IOException {
+	return load(path).build();
+    }
+
+    /**
+     *  Imports an edge list into a builder, so the caller can choose
+     *  between build() and buildSnapshot().
+     *  Performance: O(file size / cores + n + e)
+     *
+     *  @param path : the file to read
+     *  @return a builder holding the graph read
+     *  @throws IOException if the file cannot be read or is malformed
+     */
+    public static GraphBuilder<Integer,Integer> load(Path path) throws IOException {
+	return load(path, chunkSize(path));
+    }
+
+    /**
+     *  Imports an edge list into a builder, cutting the file into chunks
+     *  of about the given size.
+     *
+     *  @param path      : the file to read
+     *  @param chunkSize : the least number of bytes in a chunk but the last
+     *  @return a builder holding the graph read
+     *  @throws IOException if the file cannot be read or is malformed
+     */
+    static GraphBuilder<Integer,Integer> load(Path path, long chunkSize) throws IOException {
+	try(FileChannel channel = FileChannel.open(path)) {
+	    List<Chunk> chunks = parseAll(channel, split(channel, chunkSize), true);
+
+	    int maxId = maxId(chunks);
+	    int numEdges = numEdges(chunks, maxId);
+	    GraphBuilder<Integer,Integer> builder = new GraphBuilder<Integer,Integer>(maxId + 1, numEdges);
+	    for(int v = 0; v <= maxId; v++) {
+		builder.addNode(v);
+	    }
+	    for(Chunk chunk : chunks) {
+		for(int i = 0; i < chunk.size; i++) {
+		    builder.addEdge(chunk.weights[i], chunk.tails[i], chunk.heads[i]);
+		}
+	    }
+	    return builder;
+	}
+    }
+
+    /**
+     *  Imports an edge list straight into a MappedGraph file.  Neither
+     *  the edges nor the graph are ever held on the heap, so the file
+     *  may be far larger than the heap.
+     *  Performance: O(file size / cores + file size + n + e)
+     *
+     *  @param path : the edge list to read
+     *  @param file : the graph file to write; it is replaced if it exists
+     *  @return the graph mapped from the new file
+     *  @throws IOException if either file cannot be used, the edge list
+     *          is malformed, or the graph is too large for the format
+     */
+    public static MappedGraph importMapped(Path path, Path file) throws IOException {
+	return importMapped(path, file, chunkSize(path));
+    }
+
+    /**
+     *  Imports an edge list straight into a MappedGraph file, cutting
+     *  the edge list into chunks of about the given size.
+     *
+     *  @param path      : the edge list to read
+     *  @param file      : the graph file to write; it is replaced if it exists
+     *  @param chunkSize : the least number of bytes in a chunk but the last
+     *  @return the graph mapped from the new file
+     *  @throws IOException if either file cannot be used, the edge list
+     *          is malformed, or the graph is too large for the format
+     */
+    static MappedGraph importMapped(Path path, Path file, long chunkSize) throws IOException {
+	try(final FileChannel channel = FileChannel.open(path)) {
+	    final long[] bounds = split(channel, chunkSize);
+	    List<Chunk> chunks = parseAll(channel, bounds, false);
+	    int maxId = maxId(chunks);
+	    return MappedGraph.write(file, maxId + 1, numEdges(chunks, maxId), new IntUnaryOperator() {
+		    public int applyAsInt(int v) {
+			return v;
+		    }
+		}, new MappedGraph.EdgeSource() {
+		    public void edges(MappedGraph.EdgeSink sink) throws IOException {
+			for(int i = 0; i + 1 < bounds.length; i++) {
+			    parse(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]),
+				  bounds[i], sink);
+			}
+		    }
+		});
+	}
+    }
+
+    /**
+     *  Parses the chunks of the file in parallel.
+     *
+     *  @param keep : true to keep the edges, false only to count them
+     *  @return the parsed chunks, in file order
+     */
+    private static List<Chunk> parseAll(final FileChannel channel, long[] bounds, final boolean keep)
+	throws IOException {
+	List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>();
+	for(int i = 0; i + 1 < bounds.length; i++) {
+	    final long start = bounds[i];
+	    final long end = bounds[i + 1];
+	    tasks.add(new Callable<Chunk>() {
+		    public Chunk call() throws IOException {
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			Chunk chunk = new Chunk(keep ? Math.max(16, bytes.limit() / 32) : 0);
+			parse(bytes, start, chunk);
+			return chunk;
+		    }
+		});
+	}
+	List<Chunk> chunks = new ArrayList<Chunk>();
+	for(Future<Chunk> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+	    chunks.add(get(future));
+	}
+	return chunks;
+    }
+
+    private static int maxId(List<Chunk> chunks) {
+	int maxId = -1;
+	for(Chunk chunk : chunks) {
+	    maxId = Math.max(maxId, chunk.maxId);
+	}
+	return maxId;
+    }
+
+    /**
+     *  Totals the edges in the chunks and checks the graph is not too
+     *  large: at most MAX_EDGES edges, and a largest id below ID_SLACK
+     *  plus twice the number of edges.
+     *
+     *  @param maxId : the largest id in the chunks
+     *  @return the number of edges
+     *  @throws IOException if the graph is too large
+     */
+    private static int numEdges(List<Chunk> chunks, int maxId) throws IOException {
+	long numEdges = 0;
+	for(Chunk chunk : chunks) {
+	    numEdges += chunk.size;
+	}
+	if(numEdges > MAX_EDGES) {
+	    throw new IOException("Too many edges: " + numEdges + ".");
+	}
+	if(maxId >= ID_SLACK + 2 * numEdges) {
+	    throw new IOException("Node id " + maxId + " is too large for " + numEdges + " edges.");
+	}
+	return (int)numEdges;
+    }
+
+    /**
+     *  Returns the chunk size that gives each core a chunk of a file,
+     *  within MIN_CHUNK and MAX_CHUNK.
+     */
+    private static long chunkSize(Path path) throws IOException {
+	int cores = Runtime.getRuntime().availableProcessors();
+	return Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, Files.size(path) / cores + 1));
+    }
+
+    /**
+     *  Cuts the file into chunks of at least the target size, each
+     *  ending just after a newline (or at the end of the file).
+     *
+     *  @param target : the least number of bytes in a chunk but the last
+     *  @return the chunk boundaries, starting with 0 and ending with the file size
+     */
+    private static long[] split(FileChannel channel, long target) throws IOException {
+	long size = channel.size();
+	List<Long> bounds = new ArrayList<Long>();
+	bounds.add(0L);
+	ByteBuffer probe = ByteBuffer.allocate(4096);
+	long start = 0;
+	while(start < size) {
+	    long end = start + target;
+	    if(end >= size) {
+		end = size;
+	    } else {
+		// move forward to just past the next newline
+		boolean found = false;
+		while(!found && end < size) {
+		    probe.clear();
+		    int count = channel.read(probe, end);
+		    for(int i = 0; i < count && !found; i++) {
+			if(probe.get(i) == '\n') {
+			    end += i + 1;
+			    found = true;
+			}
+		    }
+		    if(!found) {
+			end += count;
+		    }
+		}
+		if(end - start > Integer.MAX_VALUE) {
+		    throw new IOException("Line too long at byte " + start + ".");
+		}
+	    }
+	    bounds.add(end);
+	    start = end;
+	}
+	long[] result = new long[bounds.size()];
+	for(int i = 0; i < result.length; i++) {
+	    result[i] = bounds.get(i);
+	}
+	return result;
+    }
+
+    /**
+     *  Parses the edges in one chunk.
+     *
+     *  @param bytes  : the mapped chunk
+     *  @param offset : the chunk's position in the file, for error messages
+     *  @param sink   : receives the edges, in file order
+     */
+    private static void parse(MappedByteBuffer bytes, long offset, MappedGraph.EdgeSink sink) throws IOException {
+	int limit = bytes.limit();
+	int pos = 0;
+	int[] field = new int[3];
+	while(pos < limit) {
+	    pos = skipBlanks(bytes, pos, limit);
+	    if(pos == limit) {
+		break;
+	    }
+	    byte b = bytes.get(pos);
+	    if(b == '\n' || b == '\r') {
+		pos++;
+		continue;
+	    }
+	    if(b == '#') {
+		while(pos < limit && bytes.get(pos) != '\n') {
+		    pos++;
+		}
+		continue;
+	    }
+	    long lineStart = offset + pos;
+	    for(int f = 0; f < 3; f++) {
+		pos = skipBlanks(bytes, pos, limit);
+		int value = 0;
+		boolean negative = false;
+		int digits = 0;
+		if(pos < limit && bytes.get(pos) == '-') {
+		    negative = true;
+		    pos++;
+		}
+		while(pos < limit) {
+		    int d = bytes.get(pos) - '0';
+		    if(d < 0 || d > 9) {
+			break;
+		    }
+		    if(value > (Integer.MAX_VALUE - d) / 10) {
+			throw new IOException("Number too large at byte " + lineStart + ".");
+		    }
+		    value = 10 * value + d;
+		    digits++;
+		    pos++;
+		}
+		if(digits == 0) {
+		    throw new IOException("Malformed edge at byte " + lineStart + ".");
+		}
+		field[f] = negative ? -value : value;
+	    }
+	    pos = skipBlanks(bytes, pos, limit);
+	    if(pos < limit && bytes.get(pos) == '\r') {
+		pos++;
+	    }
+	    if(pos < limit && bytes.get(pos) != '\n') {
+		throw new IOException("Malformed edge at byte " + lineStart + ".");
+	    }
+	    if(field[0] < 0 || field[1] < 0) {
+		throw new IOException("Negative node id at byte " + lineStart + ".");
+	    }
+	    sink.edge(field[0], field[1], field[2]);
+	}
+    }
+
+    private static int skipBlanks(MappedByteBuffer bytes, int pos, int limit) {
+	while(pos < limit && (bytes.get(pos) == ' ' || bytes.get(pos) == '\t')) {
+	    pos++;
+	}
+	return pos;
+    }
+
+    private static Chunk get(Future<Chunk> future) throws IOException {
+	try {
+	    return future.get();
+	} catch(ExecutionException e) {
+	    // the pool may wrap the task's exception more than once
+	    for(Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+		if(cause instanceof IOException) {
+		    throw (IOException)cause;
+		}
+	    }
+	    throw new Error(e.getCause());
+	} catch(InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException("Interrupted while importing.");
+	}
+    }
+
+    /**
+     *  The edges parsed from one chunk, in primitive arrays, or only
+     *  their number and largest id if created with no capacity.
+     */
+    private static class Chunk implements MappedGraph.EdgeSink {
+	int[] tails;
+	int[] heads;
+	int[] weights;
+	int size;
+	int maxId = -1;
+
+	Chunk(int capacity) {
+	    tails = new int[capacity];
+	    heads = new int[capacity];
+	    weights = new int[capacity];
+	}
+
+	public void edge(int tail, int head, int weight) {
+	    maxId = Math.max(maxId, Math.max(tail, head));
+	    if(tails.length == 0) {
+		size++;
+		return;
+	    }
+	    if(size == tails.length) {
+		tails = Arrays.copyOf(tails, 2 * size);
+		heads = Arrays.copyOf(heads, 2 * size);
+		weights = Arrays.copyOf(weights, 2 * size);
+	    }
+	    tails[size] = tail;
+	    heads[size] = head;
+	    weights[size] = weight;
+	    size++;
+	}
+    }
+}
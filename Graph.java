@@ -147,7 +147,8 @@ public interface Graph<N,E> {
 
 	/**
 	 *  Is this node equal to that node, (i.e., are the contents equal
-	 *  to each other)?
+	 *  to each other)?  Implementations that treat every node as
+	 *  distinct, such as GraphImplementation, may use identity instead.
 	 *
 	 *  @param that  the node to compare to this one
 	 *  @return true if the data associated with this is equal to the
@@ -226,7 +227,9 @@ public interface Graph<N,E> {
 
 	/**
 	 *  Is this edge equal to that edge, (i.e., are the head, tail,
-	 *  and contents equal to each other)?
+	 *  and contents equal to each other)?  Implementations that treat
+	 *  every edge as distinct, such as GraphImplementation, may use
+	 *  identity instead.
 	 *
 	 *  @param that  the edge to compare to this one
 	 *  @return true if the head, tail, and data associated with this
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ *  Collects the nodes and edges of a graph and then builds the whole
+ *  graph in one go.  Nodes are referred to by the int index addNode
+ *  returns, and edges are buffered in primitive arrays, so loading
+ *  creates no per-edge objects until build() is called.  build() counts
+ *  every node's degree first and creates each node with edge sets
+ *  already the right size, so no hash set is ever rehashed while the
+ *  graph is filled in.
+ *
+ *  Typical use:
+ *
+ *      GraphBuilder<String,Integer> builder = new GraphBuilder<String,Integer>(n, e);
+ *      int a = builder.addNode("a");
+ *      int b = builder.addNode("b");
+ *      builder.addEdge(7, a, b);
+ *      GraphImplementation<String,Integer> graph = builder.build();
+ */
+public class GraphBuilder<N,E> {
+    /** The data of each node, indexed by node index. */
+    private Object[] nodeData;
+    /** The number of nodes added. */
+    private int numNodes;
+    /** The tail index of each edge. */
+    private int[] tails;
+    /** The head index of each edge. */
+    private int[] heads;
+    /** The data of each edge. */
+    private Object[] edgeData;
+    /** The number of edges added. */
+    private int numEdges;
+
+    /**
+     *  Create a builder with a small default capacity.
+     */
+    public GraphBuilder() {
+	this(16, 16);
+    }
+
+    /**
+     *  Create a builder with room for the given numbers of nodes and
+     *  edges.  Going over either number is allowed but costs a copy of
+     *  the buffers.
+     *
+     *  @param expectedNodes : the expected number of nodes
+     *  @param expectedEdges : the expected number of edges
+     */
+    public GraphBuilder(int expectedNodes, int expectedEdges) {
+	nodeData = new Object[Math.max(expectedNodes, 1)];
+	tails = new int[Math.max(expectedEdges, 1)];
+	heads = new int[Math.max(expectedEdges, 1)];
+	edgeData = new Object[Math.max(expectedEdges, 1)];
+    }
+
+    /**
+     *  Returns the number of nodes added so far.
+     *
+     *  @return the number of nodes
+     */
+    public int numNodes() {
+	return numNodes;
+    }
+
+    /**
+     *  Returns the number of edges added so far.
+     *
+     *  @return the number of edges
+     */
+    public int numEdges() {
+	return numEdges;
+    }
+
+    /**
+     *  Adds a node.
+     *  Performance: O(1) amortized
+     *
+     *  @param data : the data to be associated with the node
+     *  @return the index of the node, to be passed to addEdge
+     */
+    public int addNode(N data) {
+	if(numNodes == nodeData.length) {
+	    nodeData = Arrays.copyOf(nodeData, 2 * numNodes);
+	}
+	nodeData[numNodes] = data;
+	return numNodes++;
+    }
+
+    /**
+     *  Adds an edge between two nodes already added.
+     *  Performance: O(1) amortized
+     *
+     *  @param data : the data to be associated with the edge
+     *  @param tail : the index of the tail ("from" node)
+     *  @param head : the index of the head ("to" node)
+     *  @throws Error if either index is not that of a node added so far
+     */
+    public void addEdge(E data, int tail, int head) {
+	if(tail < 0 || tail >= numNodes || head < 0 || head >= numNodes) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	if(numEdges == tails.length) {
+	    int capacity = 2 * numEdges;
+	    tails = Arrays.copyOf(tails, capacity);
+	    heads = Arrays.copyOf(heads, capacity);
+	    edgeData = Arrays.copyOf(edgeData, capacity);
+	}
+	tails[numEdges] = tail;
+	heads[numEdges] = head;
+	edgeData[numEdges] = data;
+	numEdges++;
+    }
+
+    /**
+     *  Builds a GraphImplementation holding the nodes and edges added,
+     *  whose accessors return copies.
+     *  Performance: O(n + e)
+     *
+     *  @return the new graph
+     */
+    public GraphImplementation<N,E> build() {
+	return build(false);
+    }
+
+    /**
+     *  Builds a GraphImplementation holding the nodes and edges added.
+     *  The graph's node and edge sets and every node's edge sets are
+     *  created at their final size.
+     *  Performance: O(n + e)
+     *
+     *  @param liveViews : true if the graph's accessors should return views
+     *  @return the new graph
+     */
+    @SuppressWarnings("unchecked")
+    public GraphImplementation<N,E> build(boolean liveViews) {
+	int[] outDegree = new int[numNodes];
+	int[] inDegree = new int[numNodes];
+	for(int i = 0; i < numEdges; i++) {
+	    outDegree[tails[i]]++;
+	    inDegree[heads[i]]++;
+	}
+	GraphImplementation<N,E> graph = new GraphImplementation<N,E>(liveViews, numNodes, numEdges);
+	Graph.Node<N,E>[] nodes = GraphSnapshot.newNodeArray(numNodes);
+	for(int v = 0; v < numNodes; v++) {
+	    nodes[v] = graph.addNode((N)nodeData[v], outDegree[v], inDegree[v]);
+	}
+	for(int i = 0; i < numEdges; i++) {
+	    graph.addEdge((E)edgeData[i], nodes[tails[i]], nodes[heads[i]]);
+	}
+	return graph;
+    }
+
+    /**
+     *  Writes the nodes and edges added straight to a MappedGraph file,
+     *  without building a graph on the heap.  Node ids in the file are
+     *  the indices returned by addNode.
+     *  Performance: O(n + e)
+     *
+     *  @param file       : the file to write; it is replaced if it exists
+     *  @param nodeValue  : gives the int value to store for each node's data
+     *  @param edgeWeight : gives the int weight to store for each edge's data
+     *  @return the graph mapped from the new file
+     *  @throws IOException if the file cannot be written
+     */
+    public MappedGraph writeMapped(Path file, final ToIntFunction<? super N> nodeValue,
+				   final ToIntFunction<? super E> edgeWeight) throws IOException {
+	return MappedGraph.write(file, numNodes, numEdges, new IntUnaryOperator() {
+		public int applyAsInt(int v) {
+		    return nodeValue.applyAsInt(nodeData(v));
+		}
+	    }, new MappedGraph.EdgeSource() {
+		public void edges(MappedGraph.EdgeSink sink) {
+		    for(int i = 0; i < numEdges; i++) {
+			sink.edge(tails[i], heads[i], edgeWeight.applyAsInt(edgeData(i)));
+		    }
+		}
+	    });
+    }
+
+    @SuppressWarnings("unchecked")
+    private N nodeData(int v) {
+	return (N)nodeData[v];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E edgeData(int i) {
+	return (E)edgeData[i];
+    }
+
+    /**
+     *  Builds a read-only snapshot holding the nodes and edges added,
+     *  without creating any node or edge objects.  Node ids in the
+     *  snapshot are the indices returned by addNode.
+     *  Performance: O(n + e)
+     *
+     *  @return the new snapshot
+     */
+    public GraphSnapshot<N,E> buildSnapshot() {
+	return GraphSnapshot.build(Arrays.copyOf(nodeData, numNodes), null,
+				   tails, heads, edgeData, null, numEdges);
+    }
+}
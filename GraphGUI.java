@@ -72,11 +72,23 @@ public class GraphGUI {
      *  Constructor that builds a completely empty graph.
      */
     public GraphGUI() {
-	this.graph = new GraphImplementation<PlacedData<Integer>, Integer>();
+	this.graph = new GraphImplementation<PlacedData<Integer>, Integer>(true);
 	initializeGraph();
 	this.graphComponent = new GraphComponent(this.graph);
     }
 
+    /**
+     *  Constructor that displays an existing graph.  The graph should
+     *  have been created with live views, as the GUI reads its node and
+     *  edge sets on every repaint.
+     *
+     *  @param graph : the graph to display
+     */
+    public GraphGUI(GraphImplementation<PlacedData<Integer>, Integer> graph) {
+	this.graph = graph;
+	this.graphComponent = new GraphComponent(this.graph);
+    }
+
     /**
      *  Create and show the GUI.
      */
@@ -129,13 +141,10 @@ public class GraphGUI {
 	removeNodeButton.setEnabled(false);
 	removeNodeButton.addActionListener(new ActionListener(){
 		public void actionPerformed(ActionEvent e) {
-		    Set<Graph.Node<PlacedData<Integer>, Integer>>
-			toRemoveNodes = new HashSet<Graph.Node<PlacedData<Integer>, Integer>>();
-		    for (Graph.Node<PlacedData<Integer>, Integer> node : nodesSelected) {
-			graph.removeNode(node);
-			toRemoveNodes.add(node);
-		    }
-		    nodesSelected.removeAll(toRemoveNodes);
+		    graph.removeNodes(nodesSelected);
+		    nodesSelected.clear();
+		    // drop selected edges that went away with their nodes
+		    edgesSelected.retainAll(graph.getEdges());
 		    enterEdgeData.setText("");
 		    removeNodeButton.setEnabled(false);
 		    graphComponent.repaint();
@@ -175,13 +184,8 @@ public class GraphGUI {
 	removeEdgeButton.setEnabled(false);
 	removeEdgeButton.addActionListener(new ActionListener(){
 		public void actionPerformed(ActionEvent e) {
-		    Set<Graph.Edge<PlacedData<Integer>, Integer>>
-			toRemoveEdges = new HashSet<Graph.Edge<PlacedData<Integer>, Integer>>();
-		    for (Graph.Edge<PlacedData<Integer>, Integer> edge : edgesSelected) {
-			graph.removeEdge(edge);
-			toRemoveEdges.add(edge);
-		    }
-		    edgesSelected.removeAll(toRemoveEdges);
+		    graph.removeEdges(edgesSelected);
+		    edgesSelected.clear();
 		    enterEdgeData.setText("");
 		    removeEdgeButton.setEnabled(false);
 		    graphComponent.repaint();
@@ -209,28 +213,14 @@ public class GraphGUI {
 	JButton dftButton = new JButton("DFT");
 	dftButton.addActionListener(new ActionListener(){
 		public void actionPerformed(ActionEvent e) {
-		    new Thread(new Runnable(){
-			    public void run() {
-				if (chosenNode != null) {
-				    new GraphTraverser().depthFirstTraversal
-					(chosenNode, new NodeProcessor());
-				}
-			    }
-			}).start();
+		    traverse(true);
 		}
 	    });
 	travpanel.add(dftButton);
 	JButton bftButton = new JButton("BFT");
 	bftButton.addActionListener(new ActionListener(){
 		public void actionPerformed(ActionEvent e) {
-		    new Thread(new Runnable(){
-			    public void run() {
-				if (chosenNode != null) {
-				    new GraphTraverser().breadthFirstTraversal
-					(chosenNode, new NodeProcessor());
-				}
-			    }
-			}).start();
+		    traverse(false);
 		}
 	    });
 	travpanel.add(bftButton);
@@ -277,16 +267,27 @@ public class GraphGUI {
     }
 
     /**
-     *  The obligatory main method for the application.  With no
-     *  arguments the application will read the graph from the standard
-     *  input; with one argument (a file name) it will read the graph
-     *  from the named file.
+     *  The obligatory main method for the application.  With one
+     *  argument (a file name) the application will read the graph from
+     *  the named file, or from the standard input if the argument is
+     *  "-"; the file must be in the format written by GraphWriter.
+     *  With no arguments it shows a small built-in graph.
      *
      *  @param args  the command-line arguments
      */
     public static void main(String[] args) throws IOException {
 	GraphGUI graphicGraph;
-	graphicGraph = new GraphGUI();
+	if(args.length == 0) {
+	    graphicGraph = new GraphGUI();
+	} else if(args[0].equals("-")) {
+	    GraphReader reader = new GraphReader(java.nio.channels.Channels.newChannel(System.in));
+	    graphicGraph = new GraphGUI(reader.read(true));
+	} else {
+	    try(java.nio.channels.FileChannel channel
+		= java.nio.channels.FileChannel.open(java.nio.file.Paths.get(args[0]))) {
+		graphicGraph = new GraphGUI(new GraphReader(channel).read(true));
+	    }
+	}
 	graphicGraph.execute();
     }
 
@@ -531,10 +532,46 @@ public class GraphGUI {
 	Graph.Edge<PlacedData<Integer>, Integer> edge6 = graph.addEdge(6, node3, node7);
 	Graph.Edge<PlacedData<Integer>, Integer> edge7 = graph.addEdge(7, node3, node1);
 	System.out.println(graph.validateGraph());
-	System.out.println(graph.toString());
+	try {
+	    graph.writeTo(System.out);
+	} catch(IOException e) {
+	    // System.out does not throw
+	}
+	System.out.println();
     }
 
 
+    /**
+     *  Animates a traversal from the chosen node on a worker thread.  The
+     *  worker walks a snapshot taken here, on the event thread, so edits
+     *  made during the animation cannot disturb it; the snapshot shares
+     *  the node data, so the coloring shows on the displayed graph.
+     *
+     *  @param depthFirst : true for depth-first, false for breadth-first
+     */
+    private void traverse(final boolean depthFirst) {
+	if (chosenNode == null) {
+	    return;
+	}
+	GraphSnapshot<PlacedData<Integer>, Integer> frozen = graph.snapshot();
+	int v = frozen.indexOf(chosenNode);
+	if (v < 0) {
+	    return;
+	}
+	final Graph.Node<PlacedData<Integer>, Integer> start = frozen.node(v);
+	new Thread(new Runnable(){
+		public void run() {
+		    GraphTraverser<PlacedData<Integer>, Integer> traverser
+			= new GraphTraverser<PlacedData<Integer>, Integer>();
+		    if (depthFirst) {
+			traverser.depthFirstTraversal(start, new NodeProcessor());
+		    } else {
+			traverser.breadthFirstTraversal(start, new NodeProcessor());
+		    }
+		}
+	    }).start();
+    }
+
     private class NodeProcessor implements Graph.Processor<PlacedData<Integer>, Integer> {
 	public boolean processEdge(Graph.Edge<PlacedData<Integer>, Integer> edge) {
 	    // do nothing
@@ -1,4 +1,6 @@
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  *  Implements the Graph interface.
@@ -11,19 +13,103 @@ import java.util.*;
  */
 public class GraphImplementation<N,E> implements Graph<N,E> {
     /** A set of all nodes in the graph. */
-    private Set<NodeImplementation> nodes = new HashSet<NodeImplementation>();
+    private Set<NodeImplementation> nodes;
     /** A set of all edges in the graph. */
-    private Set<EdgeImplementation> edges = new HashSet<EdgeImplementation>();
+    private Set<EdgeImplementation> edges;
+    /**
+     *  If true, getNodes, getEdges, getOutgoingEdges and
+     *  getIncomingEdges return unmodifiable live views instead of copies.
+     */
+    private final boolean liveViews;
+    /** The id to give the next node created; ids are never reused. */
+    private int nextNodeId;
+    /** The id to give the next edge created; ids are never reused. */
+    private int nextEdgeId;
+    /** The journal every change is logged to, or null. */
+    private GraphJournal<N,E> journal;
+    /**
+     *  The nodes added, removed, or given or stripped of an edge since
+     *  the graph was last validated; each is flagged by its dirty field.
+     *  Null until validateIncremental() is first called, and again
+     *  whenever the list grows too long to be worth keeping.
+     */
+    private ArrayList<NodeImplementation> dirtyNodes;
+
+    /** Below this many items, validation does not bother to go parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    /**
+     *  Create an empty graph whose accessors return copies of its sets.
+     */
+    public GraphImplementation() {
+	this(false);
+    }
+
+    /**
+     *  Create an empty graph.  With live views, getNodes, getEdges,
+     *  getOutgoingEdges and getIncomingEdges return unmodifiable views
+     *  of the graph's own sets in O(1) instead of copying them.  The
+     *  views reflect later changes to the graph, and iterating one
+     *  while the underlying set is changed throws a
+     *  ConcurrentModificationException.
+     *
+     *  @param liveViews : true to return views instead of copies
+     */
+    public GraphImplementation(boolean liveViews) {
+	this(liveViews, 0, 0);
+    }
+
+    /**
+     *  Create an empty graph whose node and edge sets are sized to hold
+     *  the given numbers of nodes and edges without growing.  Used by
+     *  GraphBuilder.
+     *
+     *  @param liveViews    : true to return views instead of copies
+     *  @param nodeCapacity : the expected number of nodes
+     *  @param edgeCapacity : the expected number of edges
+     */
+    GraphImplementation(boolean liveViews, int nodeCapacity, int edgeCapacity) {
+	this.liveViews = liveViews;
+	this.nodes = new HashSet<NodeImplementation>(capacityFor(nodeCapacity));
+	this.edges = new HashSet<EdgeImplementation>(capacityFor(edgeCapacity));
+    }
+
+    /**
+     *  Returns the initial capacity a hash set or map needs to hold the
+     *  given number of entries without growing, at the default load
+     *  factor.  Small sets get the usual default capacity.
+     *
+     *  @param expected : the expected number of entries
+     *  @return the capacity to create the set with
+     */
+    static int capacityFor(int expected) {
+	return Math.max(16, (int)(expected / 0.75f) + 1);
+    }
+
+    /**
+     *  Sets the journal that every later change to the graph is logged
+     *  to.  Used by GraphJournal.
+     *
+     *  @param journal : the journal, or null to stop logging
+     */
+    void setJournal(GraphJournal<N,E> journal) {
+	this.journal = journal;
+    }
     
     /**
      *  Get a new set of all of the nodes in the graph. Changes made 
      *  to the returned set will not be reflected in the graph, though 
-     *  changes made to particular nodes in the set may be.
-     *  Performance: O(n)
+     *  changes made to particular nodes in the set may be.  If the
+     *  graph was created with live views, an unmodifiable view of the
+     *  graph's node set is returned instead.
+     *  Performance: O(n), or O(1) with live views
      *
      *  @return a new set of the nodes in the graph
      */
     public Set<Node<N,E>> getNodes() {
+	if(liveViews) {
+	    return Collections.<Node<N,E>>unmodifiableSet(nodes);
+	}
 	HashSet<Node<N,E>> nclone = new HashSet<Node<N,E>>();
 	for(NodeImplementation nodey : nodes) {
 	    nclone.add(nodey);
@@ -34,12 +120,17 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
     /**
      *  Get a new set of all of the edges in the graph.  Changes made to the
      *  returned set will not be reflected in the graph, though changes made to
-     *  particular edges in the set may be.
-     *  Performance: O(e)
+     *  particular edges in the set may be.  If the graph was created
+     *  with live views, an unmodifiable view of the graph's edge set is
+     *  returned instead.
+     *  Performance: O(e), or O(1) with live views
      *
      *  @return a new set of the edges in the graph
      */
     public Set<Edge<N,E>> getEdges() {
+	if(liveViews) {
+	    return Collections.<Edge<N,E>>unmodifiableSet(edges);
+	}
 	HashSet<Edge<N,E>> eclone = new HashSet<Edge<N,E>>();
 	for(EdgeImplementation edgey : edges) {
 	    eclone.add(edgey);
@@ -48,20 +139,19 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
     }
 
     /**
-     *  Find a particular edge given its tail and head.
-     *  Performance: O(e)
+     *  Find a particular edge given its tail and head.  If there are
+     *  several such edges, the most recently added one is returned.
+     *  Performance: O(1) expected
      *
      *  @param tail : the tail ("from" node) of the edge to be found
      *  @param head : the head ("to" node) of the edge to be found
      *  @return the edge, or null if there is no such edge
      */
     public Edge<N,E> findEdge(Node<N,E> tail, Node<N,E> head) {
-	for(EdgeImplementation edge : edges) {
-	    if(tail == edge.tail && head == edge.head) {
-		return edge;
-	    }
+	if(!(tail instanceof GraphImplementation.NodeImplementation)) {
+	    return null;
 	}
-	return null;
+	return ((NodeImplementation)tail).firstEdgeTo(head);
     }
 
     /**
@@ -96,8 +186,32 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
      *  @return the new node
      */
     public Node<N,E> addNode(N data) {
-	NodeImplementation newnode = new NodeImplementation(data);
+	NodeImplementation newnode = new NodeImplementation(data, 0, 0);
 	nodes.add(newnode);
+	markDirty(newnode);
+	if(journal != null) {
+	    journal.logAddNode(newnode.id, data);
+	}
+	return newnode;
+    }
+
+    /**
+     *  Adds a node whose edge sets are sized to hold the given numbers
+     *  of edges without growing.  Used by GraphBuilder.
+     *  Performance: O(1)
+     *
+     *  @param data      : the data to be associated with the node
+     *  @param outDegree : the expected number of edges leaving the node
+     *  @param inDegree  : the expected number of edges entering the node
+     *  @return the new node
+     */
+    Node<N,E> addNode(N data, int outDegree, int inDegree) {
+	NodeImplementation newnode = new NodeImplementation(data, outDegree, inDegree);
+	nodes.add(newnode);
+	markDirty(newnode);
+	if(journal != null) {
+	    journal.logAddNode(newnode.id, data);
+	}
 	return newnode;
     }
 
@@ -114,35 +228,75 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	edges.add(newedge);
 	((NodeImplementation)tail).addToOuties(newedge);
 	((NodeImplementation)head).addToInnies(newedge);
+	if(journal != null) {
+	    journal.logAddEdge(newedge.id, newedge.tail.id, newedge.head.id, data);
+	}
 	return newedge;
     }
 
     /**
      *  Removes a node and all its incident edges from the graph.
-     *  Performance: O(e)
+     *  Performance: O(degree)
      *
      *  @param node : the node to be removed
      *  @throws Error if the node does not belong to this graph
      */
     public void removeNode(Node<N,E> node) {
-	if(!nodes.contains((NodeImplementation)node)) {
+	if(!nodes.contains(node)) {
 	    throw new Error("Node does not belong to graph.");
 	}
-	Set<EdgeImplementation> toremove = new HashSet<EdgeImplementation>();
-	for(EdgeImplementation edge : edges) {
-	    if(((NodeImplementation)node).outiesContains(edge) || ((NodeImplementation)node).inniesContains(edge)) {
-		//if node is tail
-		((NodeImplementation)node).removeFromOuties(edge);
-		((NodeImplementation)edge.getHead()).removeFromInnies(edge);
-		//if node is head
-		((NodeImplementation)node).removeFromInnies(edge);
-		((NodeImplementation)edge.getTail()).removeFromOuties(edge);
-		//no matter what
-		toremove.add(edge);
+	detachNode((NodeImplementation)node);
+    }
+
+    /**
+     *  Removes a collection of nodes and all their incident edges from
+     *  the graph.  Every node is checked before any is removed, so if
+     *  one does not belong to the graph the graph is left unchanged.
+     *  Performance: O(k + sum of the degrees of the k nodes)
+     *
+     *  @param group : the nodes to be removed
+     *  @throws Error if any of the nodes does not belong to this graph
+     */
+    public void removeNodes(Collection<? extends Node<N,E>> group) {
+	for(Node<N,E> node : group) {
+	    if(!nodes.contains(node)) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	}
+	for(Node<N,E> node : group) {
+	    if(nodes.contains(node)) {
+		detachNode((NodeImplementation)node);
 	    }
 	}
-	edges.removeAll(toremove);
+    }
+
+    /**
+     *  Removes a node and its incident edges, walking only the node's
+     *  own edge sets.  Self-loops are dropped from innies while outies
+     *  is walked, so neither set is modified while it is iterated.
+     *
+     *  @param node : a node of this graph
+     */
+    private void detachNode(NodeImplementation node) {
+	for(EdgeImplementation edge : node.outies) {
+	    edge.head.removeFromInnies(edge);
+	    edges.remove(edge);
+	}
+	for(EdgeImplementation edge : node.innies) {
+	    edge.tail.removeFromOuties(edge);
+	    edges.remove(edge);
+	}
+	for(EdgeImplementation edge : node.outies) {
+	    edge.nextParallel = null;
+	}
+	node.outies.clear();
+	node.heads.clear();
+	node.innies.clear();
 	nodes.remove(node);
+	markDirty(node);
+	if(journal != null) {
+	    journal.logRemoveNode(node.id);
+	}
     }
 
     /**
@@ -159,11 +313,41 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	((NodeImplementation)edge.getTail()).removeFromOuties((EdgeImplementation)edge);
 	((NodeImplementation)edge.getHead()).removeFromInnies((EdgeImplementation)edge);
 	edges.remove(edge);
+	if(journal != null) {
+	    journal.logRemoveEdge(((EdgeImplementation)edge).id);
+	}
     }
 
     /**
-     *  Removes an edge from the graph given its tail and head nodes.
-     *  Performance: O(e)
+     *  Removes a collection of edges from the graph.  Every edge is
+     *  checked before any is removed, so if one does not belong to the
+     *  graph the graph is left unchanged.
+     *  Performance: O(k) expected for k edges
+     *
+     *  @param group : the edges to be removed
+     *  @throws Error if any of the edges does not belong to this graph
+     */
+    public void removeEdges(Collection<? extends Edge<N,E>> group) {
+	for(Edge<N,E> edge : group) {
+	    if(!edges.contains(edge)) {
+		throw new Error("Edge does not belong to graph.");
+	    }
+	}
+	for(Edge<N,E> edge : group) {
+	    if(edges.remove(edge)) {
+		((EdgeImplementation)edge).tail.removeFromOuties((EdgeImplementation)edge);
+		((EdgeImplementation)edge).head.removeFromInnies((EdgeImplementation)edge);
+		if(journal != null) {
+		    journal.logRemoveEdge(((EdgeImplementation)edge).id);
+		}
+	    }
+	}
+    }
+
+    /**
+     *  Removes every edge from the graph with the given tail and head
+     *  nodes.
+     *  Performance: O(1) expected per edge removed
      *
      *  @param tail : the tail ("from" node) of the edge to be removed
      *  @param head   : the head ("to" node) of the edge to be removed
@@ -173,10 +357,11 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	if(!nodes.contains(tail) || !nodes.contains(head)) {
 	    throw new Error("Edge does not belong to graph.");
 	}
-	for(Edge<N,E> outy : tail.getOutgoingEdges()) {
-	    if(((EdgeImplementation)outy).head == head) {
-		removeEdge(outy);
-	    }
+	EdgeImplementation edge = ((NodeImplementation)tail).firstEdgeTo(head);
+	while(edge != null) {
+	    EdgeImplementation next = edge.nextParallel;
+	    removeEdge(edge);
+	    edge = next;
 	}
     }
 
@@ -221,7 +406,11 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
      *  given node. As each node or edge is processed, the appropriate
      *  method in the processor is invoked. The traversal will continue 
      *  until all of the nodes have been traversed or the processor
-     *  returns true, whichever happens first. 
+     *  returns true, whichever happens first.  Nodes are marked visited
+     *  in a bit set indexed by node id and each node's own edge set is
+     *  walked, so the processor must not add or remove edges during the
+     *  traversal.
+     *  Performance: O(nodes and edges reached)
      *
      *  @param start     : the starting node for the traversal
      *  @param processor : the processing object to be applied to each node/edge
@@ -232,25 +421,23 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	if(!nodes.contains(start)) {
 	    throw new Error("Edge does not belong to graph.");
 	}
-	System.out.println("breadthFirst");
-	Queue<Graph.Node<N,E>> queue = new LinkedList<Graph.Node<N,E>>();
-	Set<Graph.Node<N,E>> visited = new HashSet<Graph.Node<N,E>>();
-	queue.add(start);
+	BitSet visited = new BitSet(nextNodeId);
+	ArrayDeque<NodeImplementation> queue = new ArrayDeque<NodeImplementation>();
+	queue.add((NodeImplementation)start);
+	visited.set(((NodeImplementation)start).id);
 	while (! queue.isEmpty()) {
-	    Graph.Node<N,E> node = queue.remove();
-	    System.out.println("Processing " + node);
-	    if (visited.contains(node)) continue;
-	    visited.add(node);
+	    NodeImplementation node = queue.remove();
 	    if (processor.preProcessNode(node)) {
 		return true;
 	    }
-	    Set<Graph.Edge<N,E>> edges = node.getOutgoingEdges();
-	    for (Graph.Edge<N,E> edge : edges) {
+	    for (EdgeImplementation edge : node.outies) {
 		if (processor.processEdge(edge)) {
 		    return true;
 		}
-		Graph.Node<N,E> head = edge.getHead();
-		queue.add(head);
+		if (!visited.get(edge.head.id)) {
+		    visited.set(edge.head.id);
+		    queue.add(edge.head);
+		}
 	    }
 	}
 	return false;
@@ -261,7 +448,15 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
      *  given node. As each node or edge is processed, the appropriate
      *  method in the processor is invoked. The traversal will continue 
      *  until all of the nodes have been traversed or the processor 
-     *  returns true, whichever happens first.
+     *  returns true, whichever happens first.  A node is post-processed
+     *  only after every node first reached through its edges has been,
+     *  in true post-order.  The current path is kept in an explicit
+     *  stack of frames, each a node and an iterator over its edges, so
+     *  memory grows with the depth of the search, not the number of
+     *  edges.  Nodes are marked visited in a bit set indexed by node id
+     *  and each node's own edge set is walked, so the processor must not
+     *  add or remove edges during the traversal.
+     *  Performance: O(nodes and edges reached)
      *
      *  @param start     : the starting node for the traversal
      *  @param processor : the processing class to be applied to each node/edge
@@ -272,93 +467,446 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	if(!nodes.contains(start)) {
 	    throw new Error("Edge does not belong to graph.");
 	}
-	LinkedList<Graph.Node<N,E>> queue = new LinkedList<Graph.Node<N,E>>();
-	Set<Graph.Node<N,E>> visited = new HashSet<Graph.Node<N,E>>();
-	queue.push(start);
-	while (! queue.isEmpty()) {
-	    Graph.Node<N,E> node = queue.pop();
-	    if (visited.contains(node)) continue;
-	    visited.add(node);
-	    if (processor.preProcessNode(node)) {
-		return true;
-	    }
-	    Set<Graph.Edge<N,E>> edges = node.getOutgoingEdges();
-	    for (Graph.Edge<N,E> edge : edges) {
+	BitSet visited = new BitSet(nextNodeId);
+	ArrayDeque<NodeImplementation> path = new ArrayDeque<NodeImplementation>();
+	ArrayDeque<Iterator<EdgeImplementation>> edgesLeft = new ArrayDeque<Iterator<EdgeImplementation>>();
+	NodeImplementation first = (NodeImplementation)start;
+	visited.set(first.id);
+	if (processor.preProcessNode(first)) {
+	    return true;
+	}
+	path.push(first);
+	edgesLeft.push(first.outies.iterator());
+	while (! path.isEmpty()) {
+	    Iterator<EdgeImplementation> it = edgesLeft.peek();
+	    if (it.hasNext()) {
+		EdgeImplementation edge = it.next();
 		if (processor.processEdge(edge)) {
 		    return true;
 		}
-		Graph.Node<N,E> head = edge.getHead();
-		queue.push(head);
-	    }
-	    if (processor.postProcessNode(node)) {
-		return true;
+		if (!visited.get(edge.head.id)) {
+		    visited.set(edge.head.id);
+		    if (processor.preProcessNode(edge.head)) {
+			return true;
+		    }
+		    path.push(edge.head);
+		    edgesLeft.push(edge.head.outies.iterator());
+		}
+	    } else {
+		edgesLeft.pop();
+		if (processor.postProcessNode(path.pop())) {
+		    return true;
+		}
 	    }
 	}
 	return false;
     }
 
     /**
-     *  Returns a string representation of the graph.
+     *  Returns the id of a node of this graph.  Ids are handed out
+     *  densely from 0 as nodes are created and never change or get
+     *  reused, so they may be used to index arrays of size nodeIdBound().
+     *  Performance: O(1)
+     *
+     *  @param node : a node of this graph
+     *  @return the node's id
+     */
+    public int nodeId(Node<N,E> node) {
+	return ((NodeImplementation)node).id;
+    }
+
+    /**
+     *  Returns the id of an edge of this graph.  Ids are handed out
+     *  densely from 0 as edges are created and never change or get
+     *  reused, so they may be used to index arrays of size edgeIdBound().
+     *  Performance: O(1)
+     *
+     *  @param edge : an edge of this graph
+     *  @return the edge's id
+     */
+    public int edgeId(Edge<N,E> edge) {
+	return ((EdgeImplementation)edge).id;
+    }
+
+    /**
+     *  Returns one more than the largest node id handed out so far.
+     *  Performance: O(1)
+     *
+     *  @return the bound on node ids
+     */
+    public int nodeIdBound() {
+	return nextNodeId;
+    }
+
+    /**
+     *  Returns one more than the largest edge id handed out so far.
+     *  Performance: O(1)
+     *
+     *  @return the bound on edge ids
+     */
+    public int edgeIdBound() {
+	return nextEdgeId;
+    }
+
+    /**
+     *  Freezes the current state of the graph into an immutable
+     *  compressed-sparse-row snapshot.  Later changes to the graph are
+     *  not reflected in the snapshot, though the node and edge data
+     *  objects are shared rather than copied.
+     *  Performance: O(n + e)
+     *
+     *  @return a read-only snapshot of the graph
+     */
+    public GraphSnapshot<N,E> snapshot() {
+	Object[] nodeData = new Object[nodes.size()];
+	Graph.Node<N,E>[] sourceNodes = GraphSnapshot.newNodeArray(nodes.size());
+	int[] index = new int[nextNodeId];
+	int v = 0;
+	for(NodeImplementation nodey : nodes) {
+	    index[nodey.id] = v;
+	    nodeData[v] = nodey.data;
+	    sourceNodes[v] = nodey;
+	    v++;
+	}
+	int m = edges.size();
+	int[] tails = new int[m];
+	int[] heads = new int[m];
+	Object[] edgeData = new Object[m];
+	Graph.Edge<N,E>[] sourceEdges = GraphSnapshot.newEdgeArray(m);
+	int i = 0;
+	for(EdgeImplementation edgey : edges) {
+	    tails[i] = index[edgey.tail.id];
+	    heads[i] = index[edgey.head.id];
+	    edgeData[i] = edgey.data;
+	    sourceEdges[i] = edgey;
+	    i++;
+	}
+	return GraphSnapshot.build(nodeData, sourceNodes, tails, heads, edgeData, sourceEdges, m);
+    }
+
+    /**
+     *  Returns a string representation of the graph.  For a large graph
+     *  use writeTo, which does not build the whole description in
+     *  memory.
      *
      *  @return a string representation of the graph
      */
     public String toString() {
 	StringBuilder builder = new StringBuilder();
-	builder.append("\n");
-	builder.append("Graph");
-	builder.append("\n");
+	try {
+	    writeTo(builder);
+	} catch(IOException e) {
+	    // a StringBuilder does not throw
+	    throw new Error(e);
+	}
+	return builder.toString();
+    }
+
+    /**
+     *  Writes the description toString returns to out, a chunk at a
+     *  time, so only one chunk is ever held in memory.
+     *  Performance: O(n + e)
+     *
+     *  @param out : where to write the description
+     *  @throws IOException if out throws
+     */
+    public void writeTo(Appendable out) throws IOException {
+	ChunkedAppender chunks = new ChunkedAppender(out);
+	chunks.append("\n").append("Graph").append("\n");
 	for(NodeImplementation nodey : nodes) {
-	    builder.append("\n  Node: ");
-	    builder.append(nodey.getData().toString());
-	    for(Edge<N,E> edgey : nodey.getOutgoingEdges()) {
-		builder.append("\n    To: ").append(edgey.getHead().getData()).append(", ").append(edgey.getData());
-	    }
+	    writeNode(chunks, nodey);
 	}
-	builder.append("\n\n Edges: ");
+	chunks.append("\n\n Edges: ");
 	for(EdgeImplementation edgey : edges) {
-	    builder.append("\n    ").append(edgey.getHead().getData()).append(", ").append(edgey.getData());
+	    chunks.append("\n    ").append(edgey.head.getData()).append(", ").append(edgey.data);
+	}
+	chunks.append("\n");
+	chunks.flush();
+    }
+
+    /**
+     *  Writes one page of the description to out: the nodes from the
+     *  first-th to just before the (first + max)-th, in the order the
+     *  graph iterates them, followed by the edges leaving those nodes.
+     *  Writing successive pages of an unchanged graph covers every node
+     *  and every edge once.  A page starting past the last node is
+     *  empty.
+     *  Performance: O(first + the size of the page)
+     *
+     *  @param out   : where to write the page
+     *  @param first : the number of nodes to skip
+     *  @param max   : the most nodes to write
+     *  @return the number of nodes written, which is less than max
+     *          only on the last page
+     *  @throws IOException if out throws
+     *  @throws Error if first or max is negative
+     */
+    public int writeTo(Appendable out, int first, int max) throws IOException {
+	if(first < 0 || max < 0) {
+	    throw new Error("Negative page bounds.");
+	}
+	ChunkedAppender chunks = new ChunkedAppender(out);
+	// long arithmetic, as first + max may pass Integer.MAX_VALUE
+	int end = (int)Math.min((long)first + max, nodes.size());
+	if(first >= end) {
+	    chunks.append("\n").append("Graph (no nodes from ").append(first)
+		.append(" of ").append(nodes.size()).append(")\n");
+	    chunks.append("\n\n Edges: ").append("\n");
+	    chunks.flush();
+	    return 0;
+	}
+	chunks.append("\n").append("Graph (nodes ").append(first).append(" to ")
+	    .append(end - 1).append(" of ").append(nodes.size()).append(")\n");
+	int written = 0;
+	Iterator<NodeImplementation> it = nodes.iterator();
+	for(int i = 0; i < first && it.hasNext(); i++) {
+	    it.next();
+	}
+	ArrayList<NodeImplementation> page = new ArrayList<NodeImplementation>(Math.min(max, 1024));
+	while(written < max && it.hasNext()) {
+	    NodeImplementation nodey = it.next();
+	    writeNode(chunks, nodey);
+	    page.add(nodey);
+	    written++;
+	}
+	chunks.append("\n\n Edges: ");
+	for(NodeImplementation nodey : page) {
+	    for(EdgeImplementation edgey : nodey.outies) {
+		chunks.append("\n    ").append(edgey.head.getData()).append(", ").append(edgey.data);
+	    }
+	}
+	chunks.append("\n");
+	chunks.flush();
+	return written;
+    }
+
+    /**
+     *  Writes a node and the edges leaving it.
+     */
+    private void writeNode(ChunkedAppender chunks, NodeImplementation nodey) throws IOException {
+	chunks.append("\n  Node: ").append(nodey.getData());
+	for(EdgeImplementation edgey : nodey.outies) {
+	    chunks.append("\n    To: ").append(edgey.head.getData()).append(", ").append(edgey.data);
 	}
-	builder.append("\n");
-	return builder.toString();
     }
 
     /**
-     *  Verifies the internal consistency of the graph structure.
+     *  Collects text in a buffer of bounded size and hands it on to an
+     *  Appendable whenever the buffer fills, so that an unbuffered
+     *  destination sees a few large writes instead of many small ones.
+     */
+    private static class ChunkedAppender {
+	/** How many characters to collect before handing them on. */
+	private static final int CHUNK = 1 << 13;
+	/** Where the text goes. */
+	private final Appendable out;
+	/** Text not yet handed on. */
+	private final StringBuilder buffer = new StringBuilder(CHUNK + 256);
+
+	ChunkedAppender(Appendable out) {
+	    this.out = out;
+	}
+
+	ChunkedAppender append(Object value) throws IOException {
+	    buffer.append(value);
+	    if(buffer.length() >= CHUNK) {
+		flush();
+	    }
+	    return this;
+	}
+
+	void flush() throws IOException {
+	    out.append(buffer);
+	    buffer.setLength(0);
+	}
+    }
+
+    /**
+     *  Verifies the internal consistency of the graph structure: every
+     *  edge's endpoints belong to the graph, every edge is in its
+     *  tail's outgoing set and its head's incoming set, and every edge
+     *  in a node's sets belongs to the graph and ends at that node.
+     *  The node and edge sets are scanned in place, in parallel when
+     *  they are large, without copying anything.  The graph must not
+     *  be changed while it is validated.  A successful validation
+     *  marks every node clean for validateIncremental().
+     *  Performance: O(n + e), divided among the available cores
      *
      *  @return true if consistent, false otherwise
      */
     public boolean validateGraph() {
-	boolean heads = true;
-	boolean tails = true;
-	for(EdgeImplementation edgey : edges) {
-	    if(!(edgey.getHead().getIncomingEdges().contains(edgey))) {
-		heads = false;
+	boolean valid = scan(edges, new Predicate<EdgeImplementation>() {
+		public boolean test(EdgeImplementation edge) {
+		    return edgeConsistent(edge);
+		}
+	    }) && scan(nodes, new Predicate<NodeImplementation>() {
+		    public boolean test(NodeImplementation node) {
+			return nodeConsistent(node);
+		    }
+		});
+	if(valid) {
+	    clearDirty();
+	}
+	return valid;
+    }
+
+    /**
+     *  Verifies the consistency of just the nodes added, removed, or
+     *  given or stripped of an edge since the graph was last validated,
+     *  and of the edges touching them.  Every change to the structure
+     *  touches at least one such node, so if the graph was consistent
+     *  when last validated this finds any inconsistency since.  Changes
+     *  are only tracked from the first call on, so the first call runs
+     *  validateGraph(); so does any call after so many changes that
+     *  checking them would cost more than checking the whole graph.
+     *  A successful validation marks the checked nodes clean.
+     *  Performance: O(k + sum of the degrees of the k nodes checked)
+     *
+     *  @return true if consistent, false otherwise
+     */
+    public boolean validateIncremental() {
+	if(dirtyNodes == null) {
+	    boolean valid = validateGraph();
+	    if(valid) {
+		dirtyNodes = new ArrayList<NodeImplementation>();
 	    }
-	    if(!(edgey.getTail().getOutgoingEdges().contains(edgey))) {
-		tails = false;
+	    return valid;
+	}
+	boolean valid = scan(dirtyNodes, new Predicate<NodeImplementation>() {
+		public boolean test(NodeImplementation node) {
+		    if(!nodes.contains(node)) {
+			// a removed node must have been stripped of its edges
+			return node.outies.isEmpty() && node.innies.isEmpty();
+		    }
+		    return nodeConsistent(node);
+		}
+	    });
+	if(valid) {
+	    clearDirty();
+	}
+	return valid;
+    }
+
+    /**
+     *  Tests every item of a collection, in parallel if there are many.
+     *
+     *  @param items : the items to test
+     *  @param check : the test each must pass
+     *  @return true if every item passes
+     */
+    private static <T> boolean scan(Collection<T> items, Predicate<T> check) {
+	if(items.size() < PARALLEL_THRESHOLD) {
+	    for(T item : items) {
+		if(!check.test(item)) {
+		    return false;
+		}
 	    }
+	    return true;
+	}
+	return items.parallelStream().allMatch(check);
+    }
+
+    /**
+     *  Is an edge of the graph consistent with its endpoints?
+     */
+    private boolean edgeConsistent(EdgeImplementation edge) {
+	return nodes.contains(edge.tail) && nodes.contains(edge.head)
+	    && edge.tail.outies.contains(edge) && edge.head.innies.contains(edge);
+    }
+
+    /**
+     *  Is every edge in a node's sets an edge of the graph that ends at
+     *  the node and is mirrored in the other endpoint's set?
+     */
+    private boolean nodeConsistent(NodeImplementation node) {
+	for(EdgeImplementation edge : node.outies) {
+	    if(edge.tail != node || !edges.contains(edge)
+	       || !nodes.contains(edge.head) || !edge.head.innies.contains(edge)) {
+		return false;
+	    }
+	}
+	for(EdgeImplementation edge : node.innies) {
+	    if(edge.head != node || !edges.contains(edge)
+	       || !nodes.contains(edge.tail) || !edge.tail.outies.contains(edge)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     *  Notes that a node's place in the graph has changed since the
+     *  last validation, if changes are being tracked.  Once the list
+     *  holds twice as many nodes as the graph, tracking stops until
+     *  the next validateIncremental(), so the list stays O(n) however
+     *  long the graph goes unvalidated.
+     *  Performance: O(1) amortized
+     *
+     *  @param node : the node
+     */
+    private void markDirty(NodeImplementation node) {
+	if(dirtyNodes != null && !node.dirty) {
+	    node.dirty = true;
+	    dirtyNodes.add(node);
+	    if(dirtyNodes.size() > 2 * nodes.size() + PARALLEL_THRESHOLD) {
+		clearDirty();
+		dirtyNodes = null;
+	    }
+	}
+    }
+
+    /**
+     *  Marks every node clean.
+     */
+    private void clearDirty() {
+	if(dirtyNodes == null) {
+	    return;
+	}
+	for(NodeImplementation node : dirtyNodes) {
+	    node.dirty = false;
+	}
+	if(dirtyNodes.size() > PARALLEL_THRESHOLD) {
+	    // let a burst of changes' worth of list be collected
+	    dirtyNodes = new ArrayList<NodeImplementation>();
+	} else {
+	    dirtyNodes.clear();
 	}
-	return (heads) && (tails);
     }
 
     /**
      *  Represents a node in a graph.
      */
     private class NodeImplementation implements Graph.Node<N,E> {
+	/** The node's id, which is also its hash code. */
+	private final int id = nextNodeId++;
+	/** True while the node is in dirtyNodes. */
+	private boolean dirty;
 	/** The data associated with this node. */
 	private N data;
 	/** The set of edges entering this node. */
-	private Set<EdgeImplementation> innies = new HashSet<EdgeImplementation>();
+	private Set<EdgeImplementation> innies;
 	/** The set of edges leaving this node. */
-	private Set<EdgeImplementation> outies = new HashSet<EdgeImplementation>();
+	private Set<EdgeImplementation> outies;
+	/**
+	 *  For each head node, the most recent edge leaving this node and
+	 *  entering that head.  Older edges between the same pair are
+	 *  chained through EdgeImplementation.nextParallel.
+	 */
+	private Map<NodeImplementation, EdgeImplementation> heads;
 	
 	/**
-	 *  Create a node with the given data.
+	 *  Create a node with the given data, with edge sets sized for the
+	 *  expected numbers of edges.
 	 *
-	 *  @param data : the data to be associated with the node
+	 *  @param data      : the data to be associated with the node
+	 *  @param outDegree : the expected number of edges leaving the node
+	 *  @param inDegree  : the expected number of edges entering the node
 	 */
-	public NodeImplementation(N data) {
+	public NodeImplementation(N data, int outDegree, int inDegree) {
 	    this.data = data;
+	    this.outies = new HashSet<EdgeImplementation>(capacityFor(outDegree));
+	    this.innies = new HashSet<EdgeImplementation>(capacityFor(inDegree));
+	    this.heads = new HashMap<NodeImplementation, EdgeImplementation>(capacityFor(outDegree));
 	}
 
 	/**
@@ -372,9 +920,17 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	/**
+	 *  Sets the data associated with this node.  The change is only
+	 *  journaled while the node is part of the graph.
+	 *  Performance: O(1)
+	 *
+	 *  @param data : the new data
 	 */
 	public void setData(N data) {
 	    this.data = data;
+	    if(journal != null && nodes.contains(this)) {
+		journal.logSetNodeData(id, data);
+	    }
 	}
 
 	public boolean outiesContains(EdgeImplementation edge) {
@@ -382,23 +938,62 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	public void addToOuties(EdgeImplementation newedge) {
-	    outies.add(newedge);
+	    markDirty(this);
+	    if(outies.add(newedge)) {
+		newedge.nextParallel = heads.put(newedge.head, newedge);
+	    }
 	}
 
 	public void removeFromOuties(EdgeImplementation edge) {
-	    outies.remove(edge);
+	    markDirty(this);
+	    if(!outies.remove(edge)) {
+		return;
+	    }
+	    EdgeImplementation first = heads.get(edge.head);
+	    if(first == edge) {
+		if(edge.nextParallel == null) {
+		    heads.remove(edge.head);
+		} else {
+		    heads.put(edge.head, edge.nextParallel);
+		}
+	    } else {
+		EdgeImplementation prev = first;
+		while(prev != null && prev.nextParallel != edge) {
+		    prev = prev.nextParallel;
+		}
+		if(prev != null) {
+		    prev.nextParallel = edge.nextParallel;
+		}
+	    }
+	    edge.nextParallel = null;
+	}
+
+	/**
+	 *  Returns the most recent edge leaving this node and entering
+	 *  head; the others are reachable through nextParallel.
+	 *  Performance: O(1) expected
+	 *
+	 *  @param head : the head node
+	 *  @return the edge, or null if there is none
+	 */
+	public EdgeImplementation firstEdgeTo(Node<N,E> head) {
+	    return heads.get(head);
 	}
 
 	/**
 	 *  Return a new set of edges leaving this node, the set of all
 	 *  edges whose tail is this node. Changes to the returned set will
 	 *  not be reflected in the graph, but changes to individual edges
-	 *  in the set may be.
-	 *  Performance: O(e)
+	 *  in the set may be.  With live views, an unmodifiable view of
+	 *  the node's own set is returned instead.
+	 *  Performance: O(e), or O(1) with live views
 	 *
 	 *  @return the set of edges leaving this node
 	 */
 	public Set<Edge<N,E>> getOutgoingEdges() {
+	    if(liveViews) {
+		return Collections.<Edge<N,E>>unmodifiableSet(outies);
+	    }
 	    HashSet<Edge<N,E>> oclone = new HashSet<Edge<N,E>>();
 	    for(EdgeImplementation edgey : outies) {
 		oclone.add(edgey);
@@ -411,10 +1006,12 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	public void addToInnies(EdgeImplementation newedge) {
+	    markDirty(this);
 	    innies.add(newedge);
 	}
 
 	public void removeFromInnies(EdgeImplementation newedge) {
+	    markDirty(this);
 	    innies.remove(newedge);
 	}
 	
@@ -422,12 +1019,16 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	 *  Return a new set of edges entering this node, the set of all
 	 *  edges whose head is this node. Changes to the returned set will
 	 *  not be reflected in the graph, but changes to individual edges
-	 *  in the set may be.
-	 *  Performance: O(e)
+	 *  in the set may be.  With live views, an unmodifiable view of
+	 *  the node's own set is returned instead.
+	 *  Performance: O(e), or O(1) with live views
 	 *
 	 *  @return the set of edges entering this node
 	 */
 	public Set<Edge<N,E>> getIncomingEdges() {
+	    if(liveViews) {
+		return Collections.<Edge<N,E>>unmodifiableSet(innies);
+	    }
 	    HashSet<Edge<N,E>> iclone = new HashSet<Edge<N,E>>();
 	    for(EdgeImplementation edgey : innies) {
 		iclone.add(edgey);
@@ -436,24 +1037,23 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	/**
-	 *  Is this node equal to that node (are the contents equal)?
+	 *  Is this node equal to that node?  Every node is distinct, even
+	 *  from another node with the same data, so this is identity.
 	 *  Performance: O(1)
 	 *
 	 *  @param that : the node to compare to this one
-	 *  @return true if the data associated with this is equal to the 
-	 *          data associated with that
+	 *  @return true if that is this very node
 	 */
 	public boolean equals(Node<N,E> that) {
-	    return (that.getData() == data);
+	    return (that == this);
 	}
 
 	/**
-	 *  Is this node equal to that object (are the contents equal)?
+	 *  Is this node equal to that object?
 	 *  Performance: O(1)
 	 *  
 	 *  @param that : the object to compare to this one
-	 *  @return true if that is a Node and the data associated with 
-	 *          this is equal to the data associated with that
+	 *  @return true if that is this very node
 	 */
 	@SuppressWarnings("unchecked")
 	public boolean equals(Object that) {
@@ -467,13 +1067,14 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
         /**
 	 *  Returns a hash code for this node. This must be defined such
 	 *  that if two nodes are equal (as determined by equals) then 
-	 *  their hash codes are the same.
+	 *  their hash codes are the same.  The node's id is used, so
+	 *  nodes with equal data do not collide.
 	 *  Performance: O(1)
 	 *
 	 *  @return the hash code computed for this object
 	 */
 	public int hashCode() {
-	    return data.hashCode();
+	    return id;
 	}
     }
 
@@ -481,12 +1082,16 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
      *  Represents an edge in the graph.
      */
     private class EdgeImplementation implements Graph.Edge<N,E> {
+	/** The edge's id, which is also its hash code. */
+	private final int id = nextEdgeId++;
 	/** The data associated with this edge. */
 	private E data;
 	/** The edge's tail node. */
 	private NodeImplementation tail;
 	/** The edge's head node. */
 	private NodeImplementation head;
+	/** The next older edge with the same tail and head, or null. */
+	private EdgeImplementation nextParallel;
 
 	/**
 	 *  Create an edge with the given data pointing from the tail node to the head node.
@@ -512,9 +1117,17 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	/**
+	 *  Sets the data associated with this edge.  The change is only
+	 *  journaled while the edge is part of the graph.
+	 *  Performance: O(1)
+	 *
+	 *  @param data : the new data
 	 */
 	public void setData(E data) {
 	    this.data = data;
+	    if(journal != null && edges.contains(this)) {
+		journal.logSetEdgeData(id, data);
+	    }
 	}
 
 	/**
@@ -528,9 +1141,24 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	/**
+	 *  Sets the tail of this edge, moving it between the tails'
+	 *  edge sets if it is currently part of the graph.
+	 *  Performance: O(1) expected
+	 *
+	 *  @param tail : the new tail
 	 */
 	public void setTail(Node<N,E> tail) {
+	    boolean attached = this.tail.outiesContains(this);
+	    if(attached) {
+		this.tail.removeFromOuties(this);
+	    }
 	    this.tail = (NodeImplementation)tail;
+	    if(attached) {
+		this.tail.addToOuties(this);
+		if(journal != null) {
+		    journal.logSetTail(id, this.tail.id);
+		}
+	    }
 	}
 
 	/**
@@ -544,33 +1172,46 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	}
 
 	/**
+	 *  Sets the head of this edge, moving it between the heads'
+	 *  edge sets if it is currently part of the graph.
+	 *  Performance: O(1) expected
+	 *
+	 *  @param head : the new head
 	 */
 	public void setHead(Node<N,E> head) {
+	    boolean attached = this.tail.outiesContains(this);
+	    if(attached) {
+		this.tail.removeFromOuties(this);
+		this.head.removeFromInnies(this);
+	    }
 	    this.head = (NodeImplementation)head;
+	    if(attached) {
+		this.tail.addToOuties(this);
+		this.head.addToInnies(this);
+		if(journal != null) {
+		    journal.logSetHead(id, this.head.id);
+		}
+	    }
 	}
 
 	/**
-	 *  Is this edge equal to that edge (are the head, tail, and
-	 *  contents equal to each other)?
+	 *  Is this edge equal to that edge?  Every edge is distinct, even
+	 *  from a parallel edge with the same data, so this is identity.
 	 *  Performance: O(1)
 	 *
 	 *  @param that : the object to compare to this one
-	 *  @return true if the head, tail, and data associated with
-	 *          this are equal to the head, tail, and data 
-	 *          associated with that
+	 *  @return true if that is this very edge
 	 */
 	public boolean equals(Edge<N,E> that) {
-	    return(that.getData() == data);
+	    return (that == this);
 	}
 
 	/**
-	 *  Is this edge equal to that edge (are the head, tail, and
-	 *  contents equal to each other)?
+	 *  Is this edge equal to that object?
 	 *  Performance: O(1)
 	 *
 	 *  @param that : the object to compare to this one
-	 *  @return true if that is an Edge and the two edges are equal
-	 *          as determined by .equals(Edge<N,E> that)
+	 *  @return true if that is this very edge
 	 */
 	@SuppressWarnings("unchecked")
 	public boolean equals(Object that) {
@@ -584,13 +1225,14 @@ public class GraphImplementation<N,E> implements Graph<N,E> {
 	/**
 	 *  Returns a hash code for this edge. This must be defined 
 	 *  such that if two edges are equal (as determined by equals)
-	 *  then their hash codes are the same.
+	 *  then their hash codes are the same.  The edge's id is used,
+	 *  so edges with equal data do not collide.
 	 *  Performance: O(1)
 	 *
 	 *  @return the hash code computed for this object
 	 */
 	public int hashCode() {
-	    return data.hashCode();
+	    return id;
 	}
     }
 }
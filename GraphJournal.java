@@ -0,0 +1,806 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ *  A write-ahead journal that makes a GraphImplementation durable.
+ *  Every addNode, addEdge, removeNode, removeEdge, setData, setTail and
+ *  setHead on the graph appends a compact record (an op byte, varint
+ *  node and edge ids, and the data encoded by a Codec) to an in-memory
+ *  buffer, which costs no disk access.  A background thread wakes
+ *  every few milliseconds, writes everything appended since it last
+ *  ran as one batch, and forces it to disk, so any number of changes
+ *  share one fsync.  sync() waits until everything appended so far is
+ *  on disk.
+ *
+ *  The journal lives in a directory of numbered generations.
+ *  checkpoint-G holds the whole graph as it was when generation G
+ *  started, and journal-G the changes made since.  A checkpoint is
+ *  taken every time the journal grows past a threshold (and by
+ *  checkpoint()): the graph is encoded in memory on the calling thread,
+ *  and the background thread writes it, starts the next generation's
+ *  log, and deletes the older generations.  Recovery loads the newest
+ *  complete checkpoint and replays the logs after it.
+ *
+ *  Typical use:
+ *
+ *      GraphJournal<Integer,String> journal = GraphJournal.open(dir,
+ *          GraphJournal.INTEGER, GraphJournal.STRING, false);
+ *      GraphImplementation<Integer,String> graph = journal.graph();
+ *      ... change the graph ...
+ *      journal.close();
+ *
+ *  The journal only sees changes made through the graph's methods;
+ *  changes made inside a data object (such as moving a PlacedData)
+ *  are logged only when setData is called with it.  Like the graph
+ *  itself, the journal expects the graph to be changed by one thread
+ *  at a time.
+ */
+public class GraphJournal<N,E> {
+    /**
+     *  Encodes and decodes node or edge data.
+     */
+    public interface Codec<T> {
+	/**
+	 *  Writes a value.
+	 *
+	 *  @param value : the value to write
+	 *  @param out   : where to write it
+	 */
+	public void write(T value, DataOutput out) throws IOException;
+
+	/**
+	 *  Reads a value written by write.
+	 *
+	 *  @param in : where to read it from
+	 *  @return the value read
+	 */
+	public T read(DataInput in) throws IOException;
+    }
+
+    /** A codec for Integer data. */
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+	    public void write(Integer value, DataOutput out) throws IOException {
+		out.writeInt(value);
+	    }
+
+	    public Integer read(DataInput in) throws IOException {
+		return in.readInt();
+	    }
+	};
+
+    /** A codec for String data. */
+    public static final Codec<String> STRING = new Codec<String>() {
+	    public void write(String value, DataOutput out) throws IOException {
+		out.writeUTF(value);
+	    }
+
+	    public String read(DataInput in) throws IOException {
+		return in.readUTF();
+	    }
+	};
+
+    /** A codec for the PlacedData<Integer> nodes of the GUI's graph. */
+    public static final Codec<PlacedData<Integer>> PLACED_INTEGER = new Codec<PlacedData<Integer>>() {
+	    public void write(PlacedData<Integer> value, DataOutput out) throws IOException {
+		out.writeInt(value.getData());
+		out.writeInt(value.getX());
+		out.writeInt(value.getY());
+	    }
+
+	    public PlacedData<Integer> read(DataInput in) throws IOException {
+		int data = in.readInt();
+		int x = in.readInt();
+		int y = in.readInt();
+		return new PlacedData<Integer>(data, x, y);
+	    }
+	};
+
+    /** How long the flusher waits between batches, in milliseconds. */
+    public static final long DEFAULT_FLUSH_INTERVAL = 10;
+    /** How many bytes of log trigger a checkpoint. */
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    /** The first bytes of a checkpoint file. */
+    private static final int CHECKPOINT_MAGIC = 0x47474a43;
+    /** The first bytes of a log file. */
+    private static final int LOG_MAGIC = 0x47474a4c;
+    /** The version of both formats. */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte ADD_NODE = 1;
+    private static final byte ADD_EDGE = 2;
+    private static final byte REMOVE_NODE = 3;
+    private static final byte REMOVE_EDGE = 4;
+    private static final byte SET_NODE_DATA = 5;
+    private static final byte SET_EDGE_DATA = 6;
+    private static final byte SET_TAIL = 7;
+    private static final byte SET_HEAD = 8;
+
+    /** The directory holding the journal. */
+    private final Path dir;
+    /** The graph being journaled. */
+    private final GraphImplementation<N,E> graph;
+    /** Encodes node data. */
+    private final Codec<N> nodeCodec;
+    /** Encodes edge data. */
+    private final Codec<E> edgeCodec;
+    /** How long the flusher waits between batches, in milliseconds. */
+    private final long flushInterval;
+    /** How many bytes of log trigger a checkpoint. */
+    private final long checkpointBytes;
+
+    /** Records appended and not yet handed to the flusher. */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /** Writes records into pending. */
+    private DataOutputStream out = new DataOutputStream(pending);
+    /** Batches and checkpoints handed to the flusher, in order. */
+    private final ArrayDeque<Task> tasks = new ArrayDeque<Task>();
+    /** The generation records are currently appended to. */
+    private long generation;
+    /** Bytes appended to the current generation's log. */
+    private long logBytes;
+    /** The number of records appended so far. */
+    private long appended;
+    /** The number of records known to be on disk. */
+    private long durable;
+    /** The first failure of the flusher, if any. */
+    private IOException failure;
+    /** Set when close() is called. */
+    private boolean closing;
+    /** The background thread writing the journal. */
+    private final Thread flusher;
+    /** Closes the journal if the program exits without doing so. */
+    private final Thread shutdownHook;
+    /** The open log file, and its generation. */
+    private FileChannel log;
+    private long logGeneration = -1;
+
+    private GraphJournal(Path dir, GraphImplementation<N,E> graph, Codec<N> nodeCodec, Codec<E> edgeCodec,
+			 long generation, long flushInterval, long checkpointBytes) {
+	this.dir = dir;
+	this.graph = graph;
+	this.nodeCodec = nodeCodec;
+	this.edgeCodec = edgeCodec;
+	this.generation = generation;
+	this.flushInterval = flushInterval;
+	this.checkpointBytes = checkpointBytes;
+	this.flusher = new Thread(new Runnable() {
+		public void run() {
+		    flushLoop();
+		}
+	    }, "GraphJournal flusher");
+	this.flusher.setDaemon(true);
+	this.shutdownHook = new Thread(new Runnable() {
+		public void run() {
+		    try {
+			close();
+		    } catch(IOException e) {
+			// nothing more can be done while exiting
+		    }
+		}
+	    });
+    }
+
+    /**
+     *  Opens the journal in a directory, recovering the graph it holds,
+     *  with the default flush interval and checkpoint threshold.  An
+     *  empty or missing directory holds an empty graph.
+     *
+     *  @param dir       : the journal's directory
+     *  @param nodeCodec : encodes node data
+     *  @param edgeCodec : encodes edge data
+     *  @param liveViews : true if the graph's accessors should return views
+     *  @return the open journal
+     *  @throws IOException if the journal cannot be read or written
+     */
+    public static <N,E> GraphJournal<N,E> open(Path dir, Codec<N> nodeCodec, Codec<E> edgeCodec,
+					       boolean liveViews) throws IOException {
+	return open(dir, nodeCodec, edgeCodec, liveViews, DEFAULT_FLUSH_INTERVAL, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     *  Opens the journal in a directory, recovering the graph it holds.
+     *  The recovered graph is checkpointed straight away, so its log
+     *  starts empty.
+     *  Performance: O(size of the newest checkpoint and the logs after it)
+     *
+     *  @param dir             : the journal's directory
+     *  @param nodeCodec       : encodes node data
+     *  @param edgeCodec       : encodes edge data
+     *  @param liveViews       : true if the graph's accessors should return views
+     *  @param flushInterval   : how long the flusher waits between batches, in milliseconds
+     *  @param checkpointBytes : how many bytes of log trigger a checkpoint
+     *  @return the open journal
+     *  @throws IOException if the journal cannot be read or written
+     */
+    public static <N,E> GraphJournal<N,E> open(Path dir, Codec<N> nodeCodec, Codec<E> edgeCodec, boolean liveViews,
+					       long flushInterval, long checkpointBytes) throws IOException {
+	Files.createDirectories(dir);
+	GraphImplementation<N,E> graph = new GraphImplementation<N,E>(liveViews);
+	long newest = -1;
+	for(long g : generations(dir, "checkpoint-")) {
+	    newest = g;
+	}
+	Map<Integer, Graph.Node<N,E>> nodeMap = new HashMap<Integer, Graph.Node<N,E>>();
+	Map<Integer, Graph.Edge<N,E>> edgeMap = new HashMap<Integer, Graph.Edge<N,E>>();
+	if(newest >= 0) {
+	    readCheckpoint(dir.resolve("checkpoint-" + newest), graph, nodeCodec, edgeCodec, nodeMap, edgeMap);
+	}
+	for(long g : generations(dir, "journal-")) {
+	    if(g >= newest) {
+		replay(dir.resolve("journal-" + g), graph, nodeCodec, edgeCodec, nodeMap, edgeMap);
+	    }
+	}
+	GraphJournal<N,E> journal = new GraphJournal<N,E>(dir, graph, nodeCodec, edgeCodec,
+							  newest, flushInterval, checkpointBytes);
+	graph.setJournal(journal);
+	journal.flusher.start();
+	Runtime.getRuntime().addShutdownHook(journal.shutdownHook);
+	// the replayed graph has new ids, so it must be checkpointed
+	// before any record naming them is logged
+	journal.checkpoint();
+	journal.sync();
+	return journal;
+    }
+
+    /**
+     *  Returns the graph being journaled.
+     *
+     *  @return the graph
+     */
+    public GraphImplementation<N,E> graph() {
+	return graph;
+    }
+
+    /**
+     *  Starts a new generation holding the graph as it is now.  The
+     *  graph is encoded on the calling thread; writing it out is left
+     *  to the flusher.
+     *  Performance: O(n + e)
+     */
+    public void checkpoint() {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try {
+	    DataOutputStream data = new DataOutputStream(bytes);
+	    data.writeInt(CHECKPOINT_MAGIC);
+	    data.writeByte(FORMAT_VERSION);
+	    writeVarint(data, graph.numNodes());
+	    for(Graph.Node<N,E> node : graph.getNodes()) {
+		writeVarint(data, graph.nodeId(node));
+		nodeCodec.write(node.getData(), data);
+	    }
+	    writeVarint(data, graph.numEdges());
+	    for(Graph.Edge<N,E> edge : graph.getEdges()) {
+		writeVarint(data, graph.edgeId(edge));
+		writeVarint(data, graph.nodeId(edge.getTail()));
+		writeVarint(data, graph.nodeId(edge.getHead()));
+		edgeCodec.write(edge.getData(), data);
+	    }
+	    data.flush();
+	} catch(IOException e) {
+	    throw new Error("Cannot encode graph.", e);
+	}
+	synchronized(this) {
+	    handOff();
+	    generation++;
+	    logBytes = 0;
+	    tasks.add(new Task(generation, bytes.toByteArray(), true, appended));
+	    notifyAll();
+	}
+    }
+
+    /**
+     *  Waits until every change made so far is on disk.
+     *
+     *  @throws IOException if the journal could not be written
+     */
+    public synchronized void sync() throws IOException {
+	long target = appended;
+	notifyAll();
+	while(durable < target && failure == null) {
+	    try {
+		wait();
+	    } catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new InterruptedIOException("Interrupted while syncing journal.");
+	    }
+	}
+	if(failure != null) {
+	    throw failure;
+	}
+    }
+
+    /**
+     *  Writes out every change made so far, stops logging changes to
+     *  the graph, and closes the journal.
+     *
+     *  @throws IOException if the journal could not be written
+     */
+    public void close() throws IOException {
+	synchronized(this) {
+	    if(closing) {
+		return;
+	    }
+	}
+	try {
+	    sync();
+	} finally {
+	    graph.setJournal(null);
+	    synchronized(this) {
+		closing = true;
+		notifyAll();
+	    }
+	    try {
+		flusher.join();
+	    } catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    try {
+		Runtime.getRuntime().removeShutdownHook(shutdownHook);
+	    } catch(IllegalStateException e) {
+		// already shutting down
+	    }
+	}
+    }
+
+    void logAddNode(int id, N data) {
+	try {
+	    synchronized(this) {
+		out.writeByte(ADD_NODE);
+		writeVarint(out, id);
+		nodeCodec.write(data, out);
+	    }
+	} catch(IOException e) {
+	    throw new Error("Cannot encode node data.", e);
+	}
+	appended();
+    }
+
+    void logAddEdge(int id, int tail, int head, E data) {
+	try {
+	    synchronized(this) {
+		out.writeByte(ADD_EDGE);
+		writeVarint(out, id);
+		writeVarint(out, tail);
+		writeVarint(out, head);
+		edgeCodec.write(data, out);
+	    }
+	} catch(IOException e) {
+	    throw new Error("Cannot encode edge data.", e);
+	}
+	appended();
+    }
+
+    void logRemoveNode(int id) {
+	logId(REMOVE_NODE, id);
+    }
+
+    void logRemoveEdge(int id) {
+	logId(REMOVE_EDGE, id);
+    }
+
+    void logSetNodeData(int id, N data) {
+	try {
+	    synchronized(this) {
+		out.writeByte(SET_NODE_DATA);
+		writeVarint(out, id);
+		nodeCodec.write(data, out);
+	    }
+	} catch(IOException e) {
+	    throw new Error("Cannot encode node data.", e);
+	}
+	appended();
+    }
+
+    void logSetEdgeData(int id, E data) {
+	try {
+	    synchronized(this) {
+		out.writeByte(SET_EDGE_DATA);
+		writeVarint(out, id);
+		edgeCodec.write(data, out);
+	    }
+	} catch(IOException e) {
+	    throw new Error("Cannot encode edge data.", e);
+	}
+	appended();
+    }
+
+    void logSetTail(int id, int tail) {
+	try {
+	    synchronized(this) {
+		out.writeByte(SET_TAIL);
+		writeVarint(out, id);
+		writeVarint(out, tail);
+	    }
+	} catch(IOException e) {
+	    throw new Error(e);
+	}
+	appended();
+    }
+
+    void logSetHead(int id, int head) {
+	try {
+	    synchronized(this) {
+		out.writeByte(SET_HEAD);
+		writeVarint(out, id);
+		writeVarint(out, head);
+	    }
+	} catch(IOException e) {
+	    throw new Error(e);
+	}
+	appended();
+    }
+
+    private void logId(byte op, int id) {
+	try {
+	    synchronized(this) {
+		out.writeByte(op);
+		writeVarint(out, id);
+	    }
+	} catch(IOException e) {
+	    throw new Error(e);
+	}
+	appended();
+    }
+
+    /**
+     *  Counts a record just appended, and checkpoints if the log has
+     *  grown past the threshold.
+     */
+    private void appended() {
+	boolean full;
+	synchronized(this) {
+	    appended++;
+	    full = (logBytes + pending.size() >= checkpointBytes);
+	}
+	if(full) {
+	    checkpoint();
+	}
+    }
+
+    /**
+     *  Hands the pending records to the flusher as a batch of the
+     *  current generation's log.  Called holding the lock.
+     */
+    private void handOff() {
+	if(pending.size() > 0) {
+	    byte[] batch = pending.toByteArray();
+	    logBytes += batch.length;
+	    tasks.add(new Task(generation, batch, false, appended));
+	    pending.reset();
+	}
+    }
+
+    /**
+     *  The flusher's loop: collect the batches and checkpoints handed
+     *  off since the last round, write them in order, and force them
+     *  to disk.
+     */
+    private void flushLoop() {
+	while(true) {
+	    List<Task> round;
+	    synchronized(this) {
+		if(!closing && tasks.isEmpty()) {
+		    try {
+			wait(flushInterval);
+		    } catch(InterruptedException e) {
+			// check closing below
+		    }
+		}
+		handOff();
+		if(closing && tasks.isEmpty()) {
+		    break;
+		}
+		round = new ArrayList<Task>(tasks);
+		tasks.clear();
+	    }
+	    long done = -1;
+	    try {
+		for(Task task : round) {
+		    if(task.checkpoint) {
+			writeCheckpoint(task);
+		    } else {
+			writeBatch(task);
+		    }
+		    done = task.upTo;
+		}
+		if(log != null) {
+		    log.force(false);
+		}
+	    } catch(IOException e) {
+		synchronized(this) {
+		    if(failure == null) {
+			failure = e;
+		    }
+		    notifyAll();
+		}
+	    }
+	    synchronized(this) {
+		if(done > durable && failure == null) {
+		    durable = done;
+		}
+		notifyAll();
+	    }
+	}
+	try {
+	    if(log != null) {
+		log.close();
+	    }
+	} catch(IOException e) {
+	    // the log was forced already
+	}
+    }
+
+    /**
+     *  Appends a batch to its generation's log, framed by its length and
+     *  checksum so that a batch torn by a crash is recognised and
+     *  dropped on recovery.
+     */
+    private void writeBatch(Task task) throws IOException {
+	if(task.generation != logGeneration) {
+	    openLog(task.generation);
+	}
+	CRC32 crc = new CRC32();
+	crc.update(task.bytes, 0, task.bytes.length);
+	ByteBuffer frame = ByteBuffer.allocate(8 + task.bytes.length);
+	frame.putInt(task.bytes.length);
+	frame.putInt((int)crc.getValue());
+	frame.put(task.bytes);
+	frame.flip();
+	while(frame.hasRemaining()) {
+	    log.write(frame);
+	}
+    }
+
+    /**
+     *  Writes a checkpoint to a temporary file, forces it, and renames it
+     *  into place, then starts its generation's log and deletes the
+     *  older generations.
+     */
+    private void writeCheckpoint(Task task) throws IOException {
+	if(log != null) {
+	    log.force(false);
+	}
+	Path tmp = dir.resolve("checkpoint-" + task.generation + ".tmp");
+	try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						   StandardOpenOption.TRUNCATE_EXISTING)) {
+	    ByteBuffer buffer = ByteBuffer.wrap(task.bytes);
+	    while(buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	    channel.force(true);
+	}
+	Files.move(tmp, dir.resolve("checkpoint-" + task.generation), StandardCopyOption.ATOMIC_MOVE);
+	openLog(task.generation);
+	log.force(true);
+	for(long g : generations(dir, "checkpoint-")) {
+	    if(g < task.generation) {
+		Files.deleteIfExists(dir.resolve("checkpoint-" + g));
+	    }
+	}
+	for(long g : generations(dir, "journal-")) {
+	    if(g < task.generation) {
+		Files.deleteIfExists(dir.resolve("journal-" + g));
+	    }
+	}
+    }
+
+    /**
+     *  Makes the given generation's log the open one, creating it with
+     *  a header if it does not exist.
+     */
+    private void openLog(long g) throws IOException {
+	if(log != null) {
+	    log.force(false);
+	    log.close();
+	}
+	log = FileChannel.open(dir.resolve("journal-" + g), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			       StandardOpenOption.APPEND);
+	logGeneration = g;
+	if(log.size() == 0) {
+	    ByteBuffer header = ByteBuffer.allocate(5);
+	    header.putInt(LOG_MAGIC);
+	    header.put((byte)FORMAT_VERSION);
+	    header.flip();
+	    while(header.hasRemaining()) {
+		log.write(header);
+	    }
+	}
+    }
+
+    /**
+     *  Returns the generations of the files in a directory whose names
+     *  are the given prefix followed by a number, in increasing order.
+     */
+    private static List<Long> generations(Path dir, String prefix) throws IOException {
+	List<Long> result = new ArrayList<Long>();
+	try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*")) {
+	    for(Path path : stream) {
+		String suffix = path.getFileName().toString().substring(prefix.length());
+		if(suffix.matches("[0-9]+")) {
+		    result.add(Long.parseLong(suffix));
+		}
+	    }
+	}
+	Collections.sort(result);
+	return result;
+    }
+
+    /**
+     *  Loads a checkpoint into an empty graph, recording which node and
+     *  edge each logged id now stands for.
+     */
+    private static <N,E> void readCheckpoint(Path path, GraphImplementation<N,E> graph,
+					     Codec<N> nodeCodec, Codec<E> edgeCodec,
+					     Map<Integer, Graph.Node<N,E>> nodeMap,
+					     Map<Integer, Graph.Edge<N,E>> edgeMap) throws IOException {
+	try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+	    if(in.readInt() != CHECKPOINT_MAGIC || in.readByte() != FORMAT_VERSION) {
+		throw new IOException("Not a graph checkpoint: " + path);
+	    }
+	    int numNodes = readVarint(in);
+	    for(int i = 0; i < numNodes; i++) {
+		int id = readVarint(in);
+		nodeMap.put(id, graph.addNode(nodeCodec.read(in)));
+	    }
+	    int numEdges = readVarint(in);
+	    for(int i = 0; i < numEdges; i++) {
+		int id = readVarint(in);
+		Graph.Node<N,E> tail = nodeMap.get(readVarint(in));
+		Graph.Node<N,E> head = nodeMap.get(readVarint(in));
+		if(tail == null || head == null) {
+		    throw new IOException("Checkpoint edge refers to a missing node: " + path);
+		}
+		edgeMap.put(id, graph.addEdge(edgeCodec.read(in), tail, head));
+	    }
+	}
+    }
+
+    /**
+     *  Replays a log onto the graph.  Replay stops at the first batch
+     *  that is incomplete or fails its checksum, which can only be the
+     *  last batch, torn by a crash before it was acknowledged.
+     */
+    private static <N,E> void replay(Path path, GraphImplementation<N,E> graph,
+				     Codec<N> nodeCodec, Codec<E> edgeCodec,
+				     Map<Integer, Graph.Node<N,E>> nodeMap,
+				     Map<Integer, Graph.Edge<N,E>> edgeMap) throws IOException {
+	try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+	    try {
+		if(in.readInt() != LOG_MAGIC || in.readByte() != FORMAT_VERSION) {
+		    throw new IOException("Not a graph journal: " + path);
+		}
+	    } catch(EOFException e) {
+		return;
+	    }
+	    while(true) {
+		byte[] batch;
+		try {
+		    int length = in.readInt();
+		    int checksum = in.readInt();
+		    if(length < 0) {
+			return;
+		    }
+		    batch = new byte[length];
+		    in.readFully(batch);
+		    CRC32 crc = new CRC32();
+		    crc.update(batch, 0, length);
+		    if((int)crc.getValue() != checksum) {
+			return;
+		    }
+		} catch(EOFException e) {
+		    return;
+		}
+		DataInputStream records = new DataInputStream(new ByteArrayInputStream(batch));
+		while(records.available() > 0) {
+		    apply(records, graph, nodeCodec, edgeCodec, nodeMap, edgeMap);
+		}
+	    }
+	}
+    }
+
+    /**
+     *  Applies one logged change to the graph.
+     *
+     *  @throws IOException if the record is unknown or refers to a node
+     *          or edge that does not exist at that point in the log
+     */
+    private static <N,E> void apply(DataInputStream in, GraphImplementation<N,E> graph,
+				    Codec<N> nodeCodec, Codec<E> edgeCodec,
+				    Map<Integer, Graph.Node<N,E>> nodeMap,
+				    Map<Integer, Graph.Edge<N,E>> edgeMap) throws IOException {
+	byte op = in.readByte();
+	int id = readVarint(in);
+	switch(op) {
+	case ADD_NODE:
+	    nodeMap.put(id, graph.addNode(nodeCodec.read(in)));
+	    break;
+	case ADD_EDGE:
+	    Graph.Node<N,E> tail = lookup(nodeMap, readVarint(in), "node");
+	    Graph.Node<N,E> head = lookup(nodeMap, readVarint(in), "node");
+	    edgeMap.put(id, graph.addEdge(edgeCodec.read(in), tail, head));
+	    break;
+	case REMOVE_NODE:
+	    graph.removeNode(lookup(nodeMap, id, "node"));
+	    nodeMap.remove(id);
+	    break;
+	case REMOVE_EDGE:
+	    graph.removeEdge(lookup(edgeMap, id, "edge"));
+	    edgeMap.remove(id);
+	    break;
+	case SET_NODE_DATA:
+	    lookup(nodeMap, id, "node").setData(nodeCodec.read(in));
+	    break;
+	case SET_EDGE_DATA:
+	    lookup(edgeMap, id, "edge").setData(edgeCodec.read(in));
+	    break;
+	case SET_TAIL:
+	    lookup(edgeMap, id, "edge").setTail(lookup(nodeMap, readVarint(in), "node"));
+	    break;
+	case SET_HEAD:
+	    lookup(edgeMap, id, "edge").setHead(lookup(nodeMap, readVarint(in), "node"));
+	    break;
+	default:
+	    throw new IOException("Unknown journal record " + op + ".");
+	}
+    }
+
+    /**
+     *  Returns the node or edge a logged id stands for.
+     *
+     *  @param kind : "node" or "edge", for the error message
+     *  @throws IOException if the id stands for nothing
+     */
+    private static <T> T lookup(Map<Integer, T> map, int id, String kind) throws IOException {
+	T found = map.get(id);
+	if(found == null) {
+	    throw new IOException("Journal refers to missing " + kind + " " + id + ".");
+	}
+	return found;
+    }
+
+    private static void writeVarint(DataOutput out, int value) throws IOException {
+	while((value & ~0x7F) != 0) {
+	    out.writeByte((value & 0x7F) | 0x80);
+	    value >>>= 7;
+	}
+	out.writeByte(value);
+    }
+
+    private static int readVarint(DataInput in) throws IOException {
+	int value = 0;
+	for(int shift = 0; shift < 35; shift += 7) {
+	    int b = in.readByte();
+	    value |= (b & 0x7F) << shift;
+	    if((b & 0x80) == 0) {
+		return value;
+	    }
+	}
+	throw new IOException("Malformed varint.");
+    }
+
+    /**
+     *  A batch of log records or a checkpoint, waiting for the flusher.
+     */
+    private static class Task {
+	/** The generation the bytes belong to. */
+	final long generation;
+	/** The encoded records or checkpoint. */
+	final byte[] bytes;
+	/** True for a checkpoint, false for a batch of records. */
+	final boolean checkpoint;
+	/** The number of records made durable once this task is written. */
+	final long upTo;
+
+	Task(long generation, byte[] bytes, boolean checkpoint, long upTo) {
+	    this.generation = generation;
+	    this.bytes = bytes;
+	    this.checkpoint = checkpoint;
+	    this.upTo = upTo;
+	}
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ *  Reads a graph written by GraphWriter.  The header's node and edge
+ *  counts are used to presize a GraphBuilder, and the tables are then
+ *  decoded record by record out of a fixed-size buffer that is refilled
+ *  from the channel as it empties, so no more than the buffer is ever
+ *  held besides the graph being built.
+ *
+ *  The header is not trusted: on a seekable channel the counts must
+ *  fit in the bytes that follow, and otherwise the builder is presized
+ *  to at most PRESIZE_LIMIT records and grows as records actually
+ *  arrive, so a corrupt header cannot make the reader allocate more
+ *  than the file could hold.
+ */
+public class GraphReader {
+    /** The fewest bytes a node or edge record can take: three one-byte varints. */
+    static final int MIN_RECORD_SIZE = 3;
+    /** The most records presized for when the input's length is unknown. */
+    static final int PRESIZE_LIMIT = 1 << 16;
+
+    /** The channel to read from. */
+    private final ReadableByteChannel channel;
+    /** Bytes read from the channel and not yet decoded. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(GraphWriter.BUFFER_SIZE);
+    /** Set once the channel has reported end of stream. */
+    private boolean eof;
+
+    /**
+     *  Create a reader on a channel.  The channel is not closed by the
+     *  reader.
+     *
+     *  @param channel : the channel to read from
+     */
+    public GraphReader(ReadableByteChannel channel) {
+	this.channel = channel;
+	buffer.flip();
+    }
+
+    /**
+     *  Reads a graph whose accessors return copies.
+     *
+     *  @return the graph read
+     *  @throws IOException if the channel cannot be read or does not
+     *          hold a graph
+     */
+    public GraphImplementation<PlacedData<Integer>, Integer> read() throws IOException {
+	return read(false);
+    }
+
+    /**
+     *  Reads a graph.
+     *  Performance: O(n + e)
+     *
+     *  @param liveViews : true if the graph's accessors should return views
+     *  @return the graph read
+     *  @throws IOException if the channel cannot be read or does not
+     *          hold a graph
+     */
+    public GraphImplementation<PlacedData<Integer>, Integer> read(boolean liveViews) throws IOException {
+	return readInto().build(liveViews);
+    }
+
+    /**
+     *  Reads a graph into a builder, so the caller can choose how to
+     *  build it.
+     *
+     *  @return a builder holding the graph read
+     *  @throws IOException if the channel cannot be read or does not
+     *          hold a graph
+     */
+    public GraphBuilder<PlacedData<Integer>, Integer> readInto() throws IOException {
+	for(int i = 0; i < GraphWriter.MAGIC.length; i++) {
+	    if(getByte() != GraphWriter.MAGIC[i]) {
+		throw new IOException("Not a graph file.");
+	    }
+	}
+	int version = getByte();
+	if(version != GraphWriter.FORMAT_VERSION) {
+	    throw new IOException("Unsupported graph file version " + version + ".");
+	}
+	int numNodes = getUnsigned();
+	int numEdges = getUnsigned();
+	long available = available();
+	if(available < 0) {
+	    available = (long)MIN_RECORD_SIZE * PRESIZE_LIMIT;
+	} else if((long)MIN_RECORD_SIZE * ((long)numNodes + numEdges) > available) {
+	    throw new IOException("Graph file claims " + numNodes + " nodes and " + numEdges
+				  + " edges but holds only " + available + " more bytes.");
+	}
+	GraphBuilder<PlacedData<Integer>, Integer> builder
+	    = new GraphBuilder<PlacedData<Integer>, Integer>((int)Math.min(numNodes, available / MIN_RECORD_SIZE),
+							     (int)Math.min(numEdges, available / MIN_RECORD_SIZE));
+	for(int v = 0; v < numNodes; v++) {
+	    int data = getSigned();
+	    int x = getSigned();
+	    int y = getSigned();
+	    builder.addNode(new PlacedData<Integer>(data, x, y));
+	}
+	for(int e = 0; e < numEdges; e++) {
+	    int tail = getUnsigned();
+	    int head = getUnsigned();
+	    if(tail >= numNodes || head >= numNodes) {
+		throw new IOException("Edge refers to a missing node.");
+	    }
+	    builder.addEdge(getSigned(), tail, head);
+	}
+	return builder;
+    }
+
+    private int getByte() throws IOException {
+	if(!buffer.hasRemaining()) {
+	    fill();
+	}
+	return buffer.get() & 0xFF;
+    }
+
+    /**
+     *  Returns the number of bytes left to decode, or -1 if the channel
+     *  cannot tell.
+     */
+    private long available() throws IOException {
+	if(!(channel instanceof SeekableByteChannel)) {
+	    return -1;
+	}
+	SeekableByteChannel seekable = (SeekableByteChannel)channel;
+	return Math.max(0, seekable.size() - seekable.position()) + buffer.remaining();
+    }
+
+    /**
+     *  Reads a varint holding all 32 bits of an int.  The fifth byte
+     *  may only carry the top four bits.
+     */
+    private int getVarint() throws IOException {
+	int value = 0;
+	for(int shift = 0; shift < 28; shift += 7) {
+	    int b = getByte();
+	    value |= (b & 0x7F) << shift;
+	    if((b & 0x80) == 0) {
+		return value;
+	    }
+	}
+	int b = getByte();
+	if((b & ~0x0F) != 0) {
+	    throw new IOException("Malformed varint.");
+	}
+	return value | b << 28;
+    }
+
+    /**
+     *  Reads an unsigned varint holding a count or an index, which
+     *  must not exceed Integer.MAX_VALUE.
+     */
+    private int getUnsigned() throws IOException {
+	int value = getVarint();
+	if(value < 0) {
+	    throw new IOException("Count or index out of range.");
+	}
+	return value;
+    }
+
+    /**
+     *  Reads a zigzag-encoded signed varint.
+     */
+    private int getSigned() throws IOException {
+	int value = getVarint();
+	return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     *  Refills the buffer from the channel.
+     *
+     *  @throws IOException at end of stream
+     */
+    private void fill() throws IOException {
+	buffer.compact();
+	int count = 0;
+	while(count == 0 && !eof) {
+	    count = channel.read(buffer);
+	    if(count < 0) {
+		eof = true;
+	    }
+	}
+	buffer.flip();
+	if(!buffer.hasRemaining()) {
+	    throw new IOException("Unexpected end of graph file.");
+	}
+    }
+}
@@ -0,0 +1,778 @@
+import java.util.*;
+
+/**
+ *  An immutable, read-only snapshot of a graph stored in compressed
+ *  sparse row (CSR) form.  Nodes and edges are numbered densely from
+ *  0, and the topology is held in a handful of int arrays rather than
+ *  in per-node sets, so reads touch contiguous memory.
+ *
+ *  Edges are numbered in order of their tail, so the outgoing edges of
+ *  node v are exactly the edge ids in [outStart(v), outEnd(v)).  The
+ *  incoming edges of v are inEdge(i) for i in [inStart(v), inEnd(v)).
+ *
+ *  The snapshot implements the Graph interface, so traversals and the
+ *  GUI can run against it unchanged; any attempt to modify it throws
+ *  an Error.
+ */
+public class GraphSnapshot<N,E> implements Graph<N,E> {
+    /** The number of nodes. */
+    private final int n;
+    /** The number of edges. */
+    private final int m;
+    /** The data of each node, indexed by node id. */
+    private final Object[] nodeData;
+    /** The data of each edge, indexed by edge id. */
+    private final Object[] edgeData;
+    /** The tail of each edge, indexed by edge id. */
+    private final int[] edgeTail;
+    /** The head of each edge, indexed by edge id. */
+    private final int[] edgeHead;
+    /** The outgoing edges of node v are the ids outOffsets[v] to outOffsets[v+1]-1. */
+    private final int[] outOffsets;
+    /** The incoming edges of node v are inEdges[inOffsets[v]] to inEdges[inOffsets[v+1]-1]. */
+    private final int[] inOffsets;
+    /** Edge ids grouped by head. */
+    private final int[] inEdges;
+    /** The tail of each entry of inEdges, kept alongside it for locality. */
+    private final int[] inSources;
+    /** The nodes this snapshot was taken from, or null. */
+    private final Graph.Node<N,E>[] sourceNodes;
+    /** The edges this snapshot was taken from, or null. */
+    private final Graph.Edge<N,E>[] sourceEdges;
+    /** Maps source nodes to their ids; built on first use. */
+    private IdentityHashMap<Graph.Node<N,E>, Integer> sourceIndex;
+
+    /**
+     *  Create a snapshot from already-sorted CSR arrays.  Use build()
+     *  to create one from an unsorted edge list.
+     */
+    private GraphSnapshot(Object[] nodeData, Graph.Node<N,E>[] sourceNodes,
+			  Object[] edgeData, Graph.Edge<N,E>[] sourceEdges,
+			  int[] edgeTail, int[] edgeHead,
+			  int[] outOffsets, int[] inOffsets, int[] inEdges) {
+	this.n = nodeData.length;
+	this.m = edgeData.length;
+	this.nodeData = nodeData;
+	this.sourceNodes = sourceNodes;
+	this.edgeData = edgeData;
+	this.sourceEdges = sourceEdges;
+	this.edgeTail = edgeTail;
+	this.edgeHead = edgeHead;
+	this.outOffsets = outOffsets;
+	this.inOffsets = inOffsets;
+	this.inEdges = inEdges;
+	this.inSources = new int[m];
+	for(int i = 0; i < m; i++) {
+	    inSources[i] = edgeTail[inEdges[i]];
+	}
+    }
+
+    /**
+     *  Builds a snapshot from an edge list.  The edges are sorted by
+     *  tail (and, for the incoming index, by head) with two counting
+     *  sorts, so the cost is O(n + e) regardless of input order.
+     *  Performance: O(n + e)
+     *
+     *  @param nodeData    : the data of each node, indexed by node id
+     *  @param sourceNodes : the original node for each id, or null
+     *  @param tails       : the tail id of each edge
+     *  @param heads       : the head id of each edge
+     *  @param edgeData    : the data of each edge
+     *  @param sourceEdges : the original edge for each entry, or null
+     *  @param m           : the number of edges in the arrays
+     *  @return the new snapshot
+     *  @throws Error if an edge refers to a node that does not exist
+     */
+    @SuppressWarnings("unchecked")
+    static <N,E> GraphSnapshot<N,E> build(Object[] nodeData, Graph.Node<N,E>[] sourceNodes,
+					  int[] tails, int[] heads, Object[] edgeData,
+					  Graph.Edge<N,E>[] sourceEdges, int m) {
+	int n = nodeData.length;
+	int[] outOffsets = new int[n + 1];
+	int[] inOffsets = new int[n + 1];
+	for(int i = 0; i < m; i++) {
+	    if(tails[i] < 0 || tails[i] >= n || heads[i] < 0 || heads[i] >= n) {
+		throw new Error("Edge does not belong to graph.");
+	    }
+	    outOffsets[tails[i] + 1]++;
+	    inOffsets[heads[i] + 1]++;
+	}
+	for(int v = 0; v < n; v++) {
+	    outOffsets[v + 1] += outOffsets[v];
+	    inOffsets[v + 1] += inOffsets[v];
+	}
+	int[] edgeTail = new int[m];
+	int[] edgeHead = new int[m];
+	Object[] sortedData = new Object[m];
+	Graph.Edge<N,E>[] sortedSources = (sourceEdges == null) ? null : GraphSnapshot.<N,E>newEdgeArray(m);
+	int[] cursor = Arrays.copyOf(outOffsets, n);
+	for(int i = 0; i < m; i++) {
+	    int e = cursor[tails[i]]++;
+	    edgeTail[e] = tails[i];
+	    edgeHead[e] = heads[i];
+	    sortedData[e] = edgeData[i];
+	    if(sortedSources != null) {
+		sortedSources[e] = sourceEdges[i];
+	    }
+	}
+	int[] inEdges = new int[m];
+	System.arraycopy(inOffsets, 0, cursor, 0, n);
+	for(int e = 0; e < m; e++) {
+	    inEdges[cursor[edgeHead[e]]++] = e;
+	}
+	return new GraphSnapshot<N,E>(nodeData, sourceNodes, sortedData, sortedSources,
+				      edgeTail, edgeHead, outOffsets, inOffsets, inEdges);
+    }
+
+    /**
+     *  Allocates an array of nodes.  Java cannot create an array of a
+     *  generic type, so the unchecked conversion is confined to here.
+     *
+     *  @param size : the length of the array
+     *  @return a new array of nulls
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <N,E> Graph.Node<N,E>[] newNodeArray(int size) {
+	return new Graph.Node[size];
+    }
+
+    /**
+     *  Allocates an array of edges, as newNodeArray does nodes.
+     *
+     *  @param size : the length of the array
+     *  @return a new array of nulls
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <N,E> Graph.Edge<N,E>[] newEdgeArray(int size) {
+	return new Graph.Edge[size];
+    }
+
+    /**
+     *  Takes a snapshot of any graph.  If the graph is already a
+     *  snapshot it is returned as is.
+     *  Performance: O(n + e)
+     *
+     *  @param graph : the graph to freeze
+     *  @return a snapshot of the graph
+     */
+    public static <N,E> GraphSnapshot<N,E> of(Graph<N,E> graph) {
+	if(graph instanceof GraphSnapshot) {
+	    return (GraphSnapshot<N,E>)graph;
+	}
+	if(graph instanceof GraphImplementation) {
+	    return ((GraphImplementation<N,E>)graph).snapshot();
+	}
+	Set<Graph.Node<N,E>> nodes = graph.getNodes();
+	Object[] nodeData = new Object[nodes.size()];
+	Graph.Node<N,E>[] sourceNodes = newNodeArray(nodes.size());
+	IdentityHashMap<Graph.Node<N,E>, Integer> index = new IdentityHashMap<Graph.Node<N,E>, Integer>();
+	for(Graph.Node<N,E> node : nodes) {
+	    int v = index.size();
+	    index.put(node, v);
+	    nodeData[v] = node.getData();
+	    sourceNodes[v] = node;
+	}
+	Set<Graph.Edge<N,E>> edges = graph.getEdges();
+	int m = edges.size();
+	int[] tails = new int[m];
+	int[] heads = new int[m];
+	Object[] edgeData = new Object[m];
+	Graph.Edge<N,E>[] sourceEdges = newEdgeArray(m);
+	int i = 0;
+	for(Graph.Edge<N,E> edge : edges) {
+	    tails[i] = index.get(edge.getTail());
+	    heads[i] = index.get(edge.getHead());
+	    edgeData[i] = edge.getData();
+	    sourceEdges[i] = edge;
+	    i++;
+	}
+	GraphSnapshot<N,E> snapshot = build(nodeData, sourceNodes, tails, heads, edgeData, sourceEdges, m);
+	snapshot.sourceIndex = index;
+	return snapshot;
+    }
+
+    /**
+     *  Returns the index of the first outgoing edge of a node.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the id of the first edge whose tail is v
+     */
+    public int outStart(int v) {
+	return outOffsets[v];
+    }
+
+    /**
+     *  Returns one past the index of the last outgoing edge of a node.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return one more than the id of the last edge whose tail is v
+     */
+    public int outEnd(int v) {
+	return outOffsets[v + 1];
+    }
+
+    /**
+     *  Returns the position of the first incoming edge of a node in
+     *  the incoming index.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the first position for v, to be passed to inEdge/inSource
+     */
+    public int inStart(int v) {
+	return inOffsets[v];
+    }
+
+    /**
+     *  Returns one past the position of the last incoming edge of a
+     *  node in the incoming index.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return one more than the last position for v
+     */
+    public int inEnd(int v) {
+	return inOffsets[v + 1];
+    }
+
+    /**
+     *  Returns the edge at a position of the incoming index.
+     *  Performance: O(1)
+     *
+     *  @param i : a position between inStart(v) and inEnd(v)
+     *  @return the id of the edge at that position
+     */
+    public int inEdge(int i) {
+	return inEdges[i];
+    }
+
+    /**
+     *  Returns the tail of the edge at a position of the incoming index.
+     *  Performance: O(1)
+     *
+     *  @param i : a position between inStart(v) and inEnd(v)
+     *  @return the id of the tail of the edge at that position
+     */
+    public int inSource(int i) {
+	return inSources[i];
+    }
+
+    /**
+     *  Returns the tail of an edge.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the id of the edge's tail
+     */
+    public int tail(int e) {
+	return edgeTail[e];
+    }
+
+    /**
+     *  Returns the head of an edge.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the id of the edge's head
+     */
+    public int head(int e) {
+	return edgeHead[e];
+    }
+
+    /**
+     *  Returns the data of a node.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the data associated with the node
+     */
+    @SuppressWarnings("unchecked")
+    public N nodeData(int v) {
+	return (N)nodeData[v];
+    }
+
+    /**
+     *  Returns the data of an edge.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the data associated with the edge
+     */
+    @SuppressWarnings("unchecked")
+    public E edgeData(int e) {
+	return (E)edgeData[e];
+    }
+
+    /**
+     *  Returns a node of this snapshot given its id.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the node
+     */
+    public Node<N,E> node(int v) {
+	return new SnapshotNode(v);
+    }
+
+    /**
+     *  Returns an edge of this snapshot given its id.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the edge
+     */
+    public Edge<N,E> edge(int e) {
+	return new SnapshotEdge(e);
+    }
+
+    /**
+     *  Returns the node of the original graph that a node id was taken
+     *  from, or the snapshot's own node if there is no original.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the original node
+     */
+    public Node<N,E> sourceNode(int v) {
+	return (sourceNodes == null) ? node(v) : sourceNodes[v];
+    }
+
+    /**
+     *  Returns the edge of the original graph that an edge id was taken
+     *  from, or the snapshot's own edge if there is no original.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the original edge
+     */
+    public Edge<N,E> sourceEdge(int e) {
+	return (sourceEdges == null) ? edge(e) : sourceEdges[e];
+    }
+
+    /**
+     *  Returns the id of a node, which may be either a node of this
+     *  snapshot or a node of the graph it was taken from.
+     *  Performance: O(1) expected; the first lookup of an original
+     *  node is O(n)
+     *
+     *  @param node : the node to look up
+     *  @return the node's id, or -1 if it does not belong to the snapshot
+     */
+    public int indexOf(Node<N,E> node) {
+	if(node instanceof GraphSnapshot.SnapshotNode && ((SnapshotNode)node).owner() == this) {
+	    return ((SnapshotNode)node).id;
+	}
+	if(sourceNodes == null) {
+	    return -1;
+	}
+	if(sourceIndex == null) {
+	    IdentityHashMap<Graph.Node<N,E>, Integer> index = new IdentityHashMap<Graph.Node<N,E>, Integer>(n);
+	    for(int v = 0; v < n; v++) {
+		index.put(sourceNodes[v], v);
+	    }
+	    sourceIndex = index;
+	}
+	Integer v = sourceIndex.get(node);
+	return (v == null) ? -1 : v;
+    }
+
+    /**
+     *  Get a read-only view of all of the nodes in the snapshot.
+     *  Performance: O(1)
+     *
+     *  @return the set of the nodes in the snapshot
+     */
+    public Set<Node<N,E>> getNodes() {
+	return new AbstractSet<Node<N,E>>() {
+	    public Iterator<Node<N,E>> iterator() {
+		return new IdIterator<Node<N,E>>(0, n) {
+		    Node<N,E> get(int i) { return node(i); }
+		};
+	    }
+	    public boolean contains(Object o) {
+		return (o instanceof GraphSnapshot.SnapshotNode)
+		    && ((GraphSnapshot<?,?>.SnapshotNode)o).owner() == GraphSnapshot.this;
+	    }
+	    public int size() {
+		return n;
+	    }
+	};
+    }
+
+    /**
+     *  Get a read-only view of all of the edges in the snapshot.
+     *  Performance: O(1)
+     *
+     *  @return the set of the edges in the snapshot
+     */
+    public Set<Edge<N,E>> getEdges() {
+	return edgeRange(0, m);
+    }
+
+    /**
+     *  Find a particular edge given its tail and head.
+     *  Performance: O(out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be found
+     *  @param head : the head ("to" node) of the edge to be found
+     *  @return the edge, or null if there is no such edge
+     */
+    public Edge<N,E> findEdge(Node<N,E> tail, Node<N,E> head) {
+	int t = indexOf(tail);
+	int h = indexOf(head);
+	if(t < 0 || h < 0) {
+	    return null;
+	}
+	for(int e = outOffsets[t]; e < outOffsets[t + 1]; e++) {
+	    if(edgeHead[e] == h) {
+		return edge(e);
+	    }
+	}
+	return null;
+    }
+
+    /**
+     *  Returns the number of nodes in the snapshot.
+     *  Performance: O(1)
+     *
+     *  @return the number of nodes in the snapshot
+     */
+    public int numNodes() {
+	return n;
+    }
+
+    /**
+     *  Returns the number of edges in the snapshot.
+     *  Performance: O(1)
+     *
+     *  @return the number of edges in the snapshot
+     */
+    public int numEdges() {
+	return m;
+    }
+
+    /**
+     *  Snapshots are read-only.
+     *
+     *  @throws Error always
+     */
+    public Node<N,E> addNode(N data) {
+	throw new Error("Snapshot is read-only.");
+    }
+
+    /**
+     *  Snapshots are read-only.
+     *
+     *  @throws Error always
+     */
+    public Edge<N,E> addEdge(E data, Node<N,E> tail, Node<N,E> head) {
+	throw new Error("Snapshot is read-only.");
+    }
+
+    /**
+     *  Snapshots are read-only.
+     *
+     *  @throws Error always
+     */
+    public void removeNode(Node<N,E> node) {
+	throw new Error("Snapshot is read-only.");
+    }
+
+    /**
+     *  Snapshots are read-only.
+     *
+     *  @throws Error always
+     */
+    public void removeEdge(Edge<N,E> edge) {
+	throw new Error("Snapshot is read-only.");
+    }
+
+    /**
+     *  Snapshots are read-only.
+     *
+     *  @throws Error always
+     */
+    public void removeEdge(Node<N,E> tail, Node<N,E> head) {
+	throw new Error("Snapshot is read-only.");
+    }
+
+    /**
+     *  Returns a string representation of the snapshot, in the same
+     *  form as GraphImplementation.toString().
+     *
+     *  @return a string representation of the snapshot
+     */
+    public String toString() {
+	StringBuilder builder = new StringBuilder();
+	builder.append("\n");
+	builder.append("Graph");
+	builder.append("\n");
+	for(int v = 0; v < n; v++) {
+	    builder.append("\n  Node: ");
+	    builder.append(nodeData[v].toString());
+	    for(int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+		builder.append("\n    To: ").append(nodeData[edgeHead[e]]).append(", ").append(edgeData[e]);
+	    }
+	}
+	builder.append("\n\n Edges: ");
+	for(int e = 0; e < m; e++) {
+	    builder.append("\n    ").append(nodeData[edgeHead[e]]).append(", ").append(edgeData[e]);
+	}
+	builder.append("\n");
+	return builder.toString();
+    }
+
+    /**
+     *  Verifies that the offset arrays are monotone and that every edge
+     *  refers to nodes of the snapshot.
+     *  Performance: O(n + e)
+     *
+     *  @return true if consistent, false otherwise
+     */
+    public boolean validateGraph() {
+	if(outOffsets[0] != 0 || outOffsets[n] != m || inOffsets[0] != 0 || inOffsets[n] != m) {
+	    return false;
+	}
+	for(int v = 0; v < n; v++) {
+	    if(outOffsets[v] > outOffsets[v + 1] || inOffsets[v] > inOffsets[v + 1]) {
+		return false;
+	    }
+	    for(int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+		if(edgeTail[e] != v || edgeHead[e] < 0 || edgeHead[e] >= n) {
+		    return false;
+		}
+	    }
+	    for(int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+		if(edgeHead[inEdges[i]] != v) {
+		    return false;
+		}
+	    }
+	}
+	return true;
+    }
+
+    /**
+     *  Returns a read-only set of the edges with ids in [from, to).
+     */
+    private Set<Edge<N,E>> edgeRange(final int from, final int to) {
+	return new AbstractSet<Edge<N,E>>() {
+	    public Iterator<Edge<N,E>> iterator() {
+		return new IdIterator<Edge<N,E>>(from, to) {
+		    Edge<N,E> get(int i) { return edge(i); }
+		};
+	    }
+	    public boolean contains(Object o) {
+		if(!(o instanceof GraphSnapshot.SnapshotEdge)
+		   || ((GraphSnapshot<?,?>.SnapshotEdge)o).owner() != GraphSnapshot.this) {
+		    return false;
+		}
+		int e = ((GraphSnapshot<?,?>.SnapshotEdge)o).id;
+		return from <= e && e < to;
+	    }
+	    public int size() {
+		return to - from;
+	    }
+	};
+    }
+
+    /**
+     *  Iterates over a range of ids, producing an object for each one.
+     */
+    private abstract static class IdIterator<T> implements Iterator<T> {
+	/** The next id to return. */
+	private int next;
+	/** One past the last id to return. */
+	private final int end;
+
+	IdIterator(int from, int to) {
+	    this.next = from;
+	    this.end = to;
+	}
+
+	abstract T get(int i);
+
+	public boolean hasNext() {
+	    return next < end;
+	}
+
+	public T next() {
+	    if(next >= end) {
+		throw new NoSuchElementException();
+	    }
+	    return get(next++);
+	}
+    }
+
+    /**
+     *  A node of the snapshot.  Only the id is stored; everything else
+     *  is read from the snapshot's arrays.
+     */
+    private class SnapshotNode implements Graph.Node<N,E> {
+	/** The node's id. */
+	private final int id;
+
+	SnapshotNode(int id) {
+	    this.id = id;
+	}
+
+	GraphSnapshot<N,E> owner() {
+	    return GraphSnapshot.this;
+	}
+
+	public N getData() {
+	    return nodeData(id);
+	}
+
+	/**
+	 *  Snapshots are read-only.
+	 *
+	 *  @throws Error always
+	 */
+	public void setData(N data) {
+	    throw new Error("Snapshot is read-only.");
+	}
+
+	/**
+	 *  Returns a read-only view of the edges leaving this node.
+	 *  Performance: O(1)
+	 *
+	 *  @return the set of edges leaving this node
+	 */
+	public Set<Edge<N,E>> getOutgoingEdges() {
+	    return edgeRange(outOffsets[id], outOffsets[id + 1]);
+	}
+
+	/**
+	 *  Returns a read-only view of the edges entering this node.
+	 *  Performance: O(1)
+	 *
+	 *  @return the set of edges entering this node
+	 */
+	public Set<Edge<N,E>> getIncomingEdges() {
+	    final int from = inOffsets[id];
+	    final int to = inOffsets[id + 1];
+	    return new AbstractSet<Edge<N,E>>() {
+		public Iterator<Edge<N,E>> iterator() {
+		    return new IdIterator<Edge<N,E>>(from, to) {
+			Edge<N,E> get(int i) { return edge(inEdges[i]); }
+		    };
+		}
+		public int size() {
+		    return to - from;
+		}
+	    };
+	}
+
+	/**
+	 *  Snapshot nodes are equal if they are the same node of the
+	 *  same snapshot.
+	 *  Performance: O(1)
+	 *
+	 *  @param that : the node to compare to this one
+	 *  @return true if that is the same node of this snapshot
+	 */
+	public boolean equals(Node<N,E> that) {
+	    return (that instanceof GraphSnapshot.SnapshotNode)
+		&& ((SnapshotNode)that).owner() == GraphSnapshot.this
+		&& ((SnapshotNode)that).id == id;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Node) && this.equals((Node<N,E>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return nodeData[id].toString();
+	}
+    }
+
+    /**
+     *  An edge of the snapshot.  Only the id is stored; everything else
+     *  is read from the snapshot's arrays.
+     */
+    private class SnapshotEdge implements Graph.Edge<N,E> {
+	/** The edge's id. */
+	private final int id;
+
+	SnapshotEdge(int id) {
+	    this.id = id;
+	}
+
+	GraphSnapshot<N,E> owner() {
+	    return GraphSnapshot.this;
+	}
+
+	public E getData() {
+	    return edgeData(id);
+	}
+
+	/**
+	 *  Snapshots are read-only.
+	 *
+	 *  @throws Error always
+	 */
+	public void setData(E data) {
+	    throw new Error("Snapshot is read-only.");
+	}
+
+	public Node<N,E> getTail() {
+	    return node(edgeTail[id]);
+	}
+
+	/**
+	 *  Snapshots are read-only.
+	 *
+	 *  @throws Error always
+	 */
+	public void setTail(Node<N,E> node) {
+	    throw new Error("Snapshot is read-only.");
+	}
+
+	public Node<N,E> getHead() {
+	    return node(edgeHead[id]);
+	}
+
+	/**
+	 *  Snapshots are read-only.
+	 *
+	 *  @throws Error always
+	 */
+	public void setHead(Node<N,E> node) {
+	    throw new Error("Snapshot is read-only.");
+	}
+
+	/**
+	 *  Snapshot edges are equal if they are the same edge of the
+	 *  same snapshot.
+	 *  Performance: O(1)
+	 *
+	 *  @param that : the edge to compare to this one
+	 *  @return true if that is the same edge of this snapshot
+	 */
+	public boolean equals(Edge<N,E> that) {
+	    return (that instanceof GraphSnapshot.SnapshotEdge)
+		&& ((SnapshotEdge)that).owner() == GraphSnapshot.this
+		&& ((SnapshotEdge)that).id == id;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Edge) && this.equals((Edge<N,E>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return edgeData[id].toString();
+	}
+    }
+}
@@ -1,25 +1,59 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class GraphTraverser<N,E> {
+  /**
+   *  Performs a depth-first traversal of a graph starting from the
+   *  given node.  As each node or edge is processed the appropriate
+   *  method in the processor is invoked: a node is pre-processed when
+   *  it is first reached, each of its outgoing edges is processed as it
+   *  is followed, and the node is post-processed only once every node
+   *  first reached through those edges has been post-processed, in true
+   *  post-order.  The path being explored is kept in an explicit stack
+   *  of frames, each a node and the position reached in its outgoing
+   *  edges, so memory grows with the depth of the search rather than
+   *  the number of edges, and long paths cannot overflow the call stack.
+   *
+   *  @param start  the starting node for the traversal.
+   *  @param processor the processing class to be applied to each node/edge.
+   *  @return true if the processor ever returns true, false otherwise
+   */
   public boolean depthFirstTraversal(Graph.Node<N,E> start, Graph.Processor<N,E> processor) {
-    LinkedList<Graph.Node<N,E>> stack = new LinkedList<Graph.Node<N,E>>();
-    stack.push(start);
+    ArrayDeque<Graph.Node<N,E>> nodes = new ArrayDeque<Graph.Node<N,E>>();
+    ArrayDeque<Iterator<Graph.Edge<N,E>>> edges = new ArrayDeque<Iterator<Graph.Edge<N,E>>>();
     Set<Graph.Node<N,E>> visited = new HashSet<Graph.Node<N,E>>();
-    while (! stack.isEmpty()) {
-      Graph.Node<N,E> node = stack.pop();
-      if (visited.contains(node)) continue;
-      visited.add(node);
-      if (processor.preProcessNode(node)) {
-        return true;
-      }
-      for (Graph.Edge<N,E> edge : node.getOutgoingEdges()) {
+    visited.add(start);
+    if (processor.preProcessNode(start)) {
+      return true;
+    }
+    nodes.push(start);
+    edges.push(start.getOutgoingEdges().iterator());
+    while (! nodes.isEmpty()) {
+      Iterator<Graph.Edge<N,E>> it = edges.peek();
+      if (it.hasNext()) {
+        Graph.Edge<N,E> edge = it.next();
         if (processor.processEdge(edge)) {
           return true;
         }
-        stack.push(edge.getHead());
-      }
-      if (processor.postProcessNode(node)) {
-        return true;
+        Graph.Node<N,E> head = edge.getHead();
+        if (visited.add(head)) {
+          if (processor.preProcessNode(head)) {
+            return true;
+          }
+          nodes.push(head);
+          edges.push(head.getOutgoingEdges().iterator());
+        }
+      } else {
+        edges.pop();
+        if (processor.postProcessNode(nodes.pop())) {
+          return true;
+        }
       }
     }
     return false;
@@ -35,7 +69,7 @@ public class GraphTraverser<N,E> {
    *  @return true if the processor ever returns true, false otherwise
    */
   public boolean breadthFirstTraversal(Graph.Node<N,E> start, Graph.Processor<N,E> processor) {
-    Queue<Graph.Node<N,E>> queue = new LinkedList<Graph.Node<N,E>>();
+    Queue<Graph.Node<N,E>> queue = new ArrayDeque<Graph.Node<N,E>>();
     Set<Graph.Node<N,E>> visited = new HashSet<Graph.Node<N,E>>();
     queue.add(start);
     while (! queue.isEmpty()) {
@@ -57,4 +91,430 @@ public class GraphTraverser<N,E> {
     }
     return false;
   }
+
+  /**
+   *  Returns the nodes reachable from the given node in breadth-first
+   *  order, as a lazy iterator.  A node's outgoing edges are not looked
+   *  at until the node after it is asked for, so reading k nodes
+   *  expands at most k of them.  The graph should not be changed while
+   *  the iterator is in use.
+   *
+   *  @param start  the starting node for the traversal.
+   *  @return an iterator over the reachable nodes, starting with start
+   */
+  public Iterator<Graph.Node<N,E>> breadthFirstIterator(Graph.Node<N,E> start) {
+    return new LazyIterator(start, false);
+  }
+
+  /**
+   *  Returns the nodes reachable from the given node in the depth-first
+   *  pre-order of depthFirstTraversal, as a lazy iterator.  Edges are
+   *  followed only as far as needed to find the next node, and only the
+   *  current path is kept.  The graph should not be changed while the
+   *  iterator is in use.
+   *
+   *  @param start  the starting node for the traversal.
+   *  @return an iterator over the reachable nodes, starting with start
+   */
+  public Iterator<Graph.Node<N,E>> depthFirstIterator(Graph.Node<N,E> start) {
+    return new LazyIterator(start, true);
+  }
+
+  /**
+   *  Returns the nodes reachable from the given node in breadth-first
+   *  order, as a lazy, ordered stream of distinct nodes.  Short-circuiting
+   *  operations such as findFirst, anyMatch and limit expand the graph
+   *  only as far as they read.  A parallel stream reads the traversal on
+   *  one thread and hands batches of nodes to the others, so it pays off
+   *  when the downstream work per node outweighs the traversal itself.
+   *
+   *  @param start  the starting node for the traversal.
+   *  @return a stream of the reachable nodes, starting with start
+   */
+  public Stream<Graph.Node<N,E>> breadthFirstStream(Graph.Node<N,E> start) {
+    return stream(breadthFirstIterator(start));
+  }
+
+  /**
+   *  Returns the nodes reachable from the given node in depth-first
+   *  pre-order, as a lazy, ordered stream of distinct nodes.  See
+   *  breadthFirstStream.
+   *
+   *  @param start  the starting node for the traversal.
+   *  @return a stream of the reachable nodes, starting with start
+   */
+  public Stream<Graph.Node<N,E>> depthFirstStream(Graph.Node<N,E> start) {
+    return stream(depthFirstIterator(start));
+  }
+
+  private Stream<Graph.Node<N,E>> stream(Iterator<Graph.Node<N,E>> iterator) {
+    Spliterator<Graph.Node<N,E>> spliterator = Spliterators.spliteratorUnknownSize(
+        iterator, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false);
+  }
+
+  /**
+   *  A traversal that advances only when asked for its next node.  The
+   *  breadth-first version queues the unvisited heads of the last node
+   *  returned; the depth-first version keeps a stack of the iterators
+   *  over the outgoing edges of the nodes on the current path.
+   */
+  private class LazyIterator implements Iterator<Graph.Node<N,E>> {
+    private final boolean depthFirst;
+    private final ArrayDeque<Graph.Node<N,E>> queue = new ArrayDeque<Graph.Node<N,E>>();
+    private final ArrayDeque<Iterator<Graph.Edge<N,E>>> path = new ArrayDeque<Iterator<Graph.Edge<N,E>>>();
+    private final Set<Graph.Node<N,E>> visited = new HashSet<Graph.Node<N,E>>();
+    /** The node last returned, whose edges have not been followed yet. */
+    private Graph.Node<N,E> unexpanded;
+    /** The next node to return, or null if not yet found. */
+    private Graph.Node<N,E> upcoming;
+
+    LazyIterator(Graph.Node<N,E> start, boolean depthFirst) {
+      this.depthFirst = depthFirst;
+      upcoming = start;
+      visited.add(start);
+    }
+
+    public boolean hasNext() {
+      if (upcoming == null) {
+        upcoming = advance();
+      }
+      return upcoming != null;
+    }
+
+    public Graph.Node<N,E> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      unexpanded = upcoming;
+      upcoming = null;
+      return unexpanded;
+    }
+
+    /** Expands the last node returned and finds the next one. */
+    private Graph.Node<N,E> advance() {
+      if (depthFirst) {
+        if (unexpanded != null) {
+          path.push(unexpanded.getOutgoingEdges().iterator());
+          unexpanded = null;
+        }
+        while (!path.isEmpty()) {
+          Iterator<Graph.Edge<N,E>> it = path.peek();
+          while (it.hasNext()) {
+            Graph.Node<N,E> head = it.next().getHead();
+            if (visited.add(head)) {
+              return head;
+            }
+          }
+          path.pop();
+        }
+        return null;
+      }
+      if (unexpanded != null) {
+        for (Graph.Edge<N,E> edge : unexpanded.getOutgoingEdges()) {
+          Graph.Node<N,E> head = edge.getHead();
+          if (visited.add(head)) {
+            queue.add(head);
+          }
+        }
+        unexpanded = null;
+      }
+      return queue.poll();
+    }
+  }
+
+  /**
+   *  Performs a parallel, level-synchronous breadth-first traversal of
+   *  a graph starting from the given node, on the common ForkJoinPool.
+   *
+   *  @param graph  the graph to traverse.
+   *  @param start  the starting node for the traversal.
+   *  @param processor the thread-safe processing class to be applied to each node/edge.
+   *  @return true if the processor ever returns true, false otherwise
+   */
+  public boolean parallelBreadthFirstTraversal(Graph<N,E> graph, Graph.Node<N,E> start,
+                                               Graph.Processor<N,E> processor) {
+    return parallelBreadthFirstTraversal(graph, start, processor, ForkJoinPool.commonPool());
+  }
+
+  /**
+   *  Performs a parallel, level-synchronous breadth-first traversal of
+   *  a graph starting from the given node.  The graph is frozen into a
+   *  GraphSnapshot on every call (unless it is one already; see the
+   *  GraphSnapshot overload for repeated traversals) and each frontier is
+   *  expanded across the pool, with visited nodes claimed in an atomic
+   *  bitset.  While the frontier is small, nodes are discovered top-down
+   *  by claiming the heads of the frontier's outgoing edges; once the
+   *  frontier's edges outnumber a fraction of the unexplored ones, each
+   *  unvisited node instead looks bottom-up through its incoming edges
+   *  for a parent in the frontier, which needs no contended claims and
+   *  stops at the first parent found.
+   *
+   *  The processor sees the same calls as in breadthFirstTraversal --
+   *  each reachable node is pre-processed, then each of its outgoing
+   *  edges, then the node is post-processed, and the nodes and edges
+   *  passed are those of the original graph -- but with relaxed
+   *  ordering: every node of one level is finished before any node of
+   *  the next level is started, while nodes within a level are
+   *  processed concurrently and in no particular order.  The processor
+   *  must therefore be thread-safe.  As soon as any call returns true
+   *  no further calls are started and true is returned, although calls
+   *  already under way on other threads are allowed to finish.
+   *
+   *  @param graph  the graph to traverse.
+   *  @param start  the starting node for the traversal.
+   *  @param processor the thread-safe processing class to be applied to each node/edge.
+   *  @param pool  the pool to run the traversal on.
+   *  @return true if the processor ever returns true, false otherwise
+   */
+  public boolean parallelBreadthFirstTraversal(Graph<N,E> graph, Graph.Node<N,E> start,
+                                               Graph.Processor<N,E> processor, ForkJoinPool pool) {
+    return parallelBreadthFirstTraversal(GraphSnapshot.of(graph), start, processor, pool);
+  }
+
+  /**
+   *  Performs a parallel breadth-first traversal of a snapshot, on the
+   *  common ForkJoinPool, without taking a new snapshot.
+   *
+   *  @param snapshot  the snapshot to traverse.
+   *  @param start  the starting node, of the snapshot or of the graph it was taken from.
+   *  @param processor the thread-safe processing class to be applied to each node/edge.
+   *  @return true if the processor ever returns true, false otherwise
+   */
+  public boolean parallelBreadthFirstTraversal(GraphSnapshot<N,E> snapshot, Graph.Node<N,E> start,
+                                               Graph.Processor<N,E> processor) {
+    return parallelBreadthFirstTraversal(snapshot, start, processor, ForkJoinPool.commonPool());
+  }
+
+  /**
+   *  Performs a parallel breadth-first traversal of a snapshot, as
+   *  parallelBreadthFirstTraversal(Graph, ...) does after freezing its
+   *  graph.  Taking a snapshot costs O(n + e), as much as a whole
+   *  traversal, so a caller that traverses an unchanged graph from
+   *  many starts should take one snapshot and pass it here each time.
+   *  The processor is passed the nodes and edges of the graph the
+   *  snapshot was taken from.
+   *
+   *  @param snapshot  the snapshot to traverse.
+   *  @param start  the starting node, of the snapshot or of the graph it was taken from.
+   *  @param processor the thread-safe processing class to be applied to each node/edge.
+   *  @param pool  the pool to run the traversal on.
+   *  @return true if the processor ever returns true, false otherwise
+   */
+  public boolean parallelBreadthFirstTraversal(GraphSnapshot<N,E> snapshot, Graph.Node<N,E> start,
+                                               Graph.Processor<N,E> processor, ForkJoinPool pool) {
+    int source = snapshot.indexOf(start);
+    if (source < 0) {
+      throw new Error("Node does not belong to graph.");
+    }
+    return new ParallelBFS(snapshot, processor, pool).run(source);
+  }
+
+  /**
+   *  The state of one parallel breadth-first traversal.
+   */
+  private class ParallelBFS {
+    /** Below this many nodes a task does its range itself. */
+    private static final int GRAIN = 256;
+    /** Go bottom-up once the frontier has more than 1/ALPHA of the unexplored edges. */
+    private static final int ALPHA = 14;
+    /** Go back top-down once the frontier has fewer than 1/BETA of the nodes. */
+    private static final int BETA = 24;
+
+    private final GraphSnapshot<N,E> snapshot;
+    private final Graph.Processor<N,E> processor;
+    private final ForkJoinPool pool;
+    private final int n;
+    /** One bit per node, set once the node has been claimed. */
+    private final AtomicLongArray visited;
+    /** One bit per node of the current frontier, for bottom-up steps. */
+    private final long[] frontierBits;
+    /** Set when the processor asks to stop. */
+    private final AtomicBoolean stop = new AtomicBoolean();
+    /** The current frontier. */
+    private int[] frontier;
+    private int frontierSize;
+    /** The next frontier, filled by the tasks. */
+    private int[] next;
+    private final AtomicInteger nextSize = new AtomicInteger();
+
+    ParallelBFS(GraphSnapshot<N,E> snapshot, Graph.Processor<N,E> processor, ForkJoinPool pool) {
+      this.snapshot = snapshot;
+      this.processor = processor;
+      this.pool = pool;
+      this.n = snapshot.numNodes();
+      this.visited = new AtomicLongArray((n + 63) >>> 6);
+      this.frontierBits = new long[(n + 63) >>> 6];
+      this.frontier = new int[n];
+      this.next = new int[n];
+    }
+
+    boolean run(int source) {
+      claim(source);
+      frontier[0] = source;
+      frontierSize = 1;
+      long unexplored = snapshot.numEdges() - degree(source);
+      boolean bottomUp = false;
+      while (frontierSize > 0 && !stop.get()) {
+        long frontierEdges = 0;
+        for (int i = 0; i < frontierSize; i++) {
+          frontierEdges += degree(frontier[i]);
+        }
+        if (!bottomUp && frontierEdges > unexplored / ALPHA) {
+          bottomUp = true;
+        } else if (bottomUp && frontierSize < n / BETA) {
+          bottomUp = false;
+        }
+        nextSize.set(0);
+        if (bottomUp) {
+          pool.invoke(new ProcessTask(0, frontierSize, false));
+          if (stop.get()) {
+            break;
+          }
+          Arrays.fill(frontierBits, 0L);
+          for (int i = 0; i < frontierSize; i++) {
+            frontierBits[frontier[i] >>> 6] |= 1L << frontier[i];
+          }
+          pool.invoke(new BottomUpTask(0, n));
+        } else {
+          pool.invoke(new ProcessTask(0, frontierSize, true));
+        }
+        int[] swap = frontier;
+        frontier = next;
+        next = swap;
+        frontierSize = nextSize.get();
+        for (int i = 0; i < frontierSize; i++) {
+          unexplored -= degree(frontier[i]);
+        }
+      }
+      return stop.get();
+    }
+
+    private int degree(int v) {
+      return snapshot.outEnd(v) - snapshot.outStart(v);
+    }
+
+    /** Sets a node's visited bit, returning true if it was clear. */
+    private boolean claim(int v) {
+      int word = v >>> 6;
+      long bit = 1L << v;
+      while (true) {
+        long old = visited.get(word);
+        if ((old & bit) != 0) {
+          return false;
+        }
+        if (visited.compareAndSet(word, old, old | bit)) {
+          return true;
+        }
+      }
+    }
+
+    /** Collects discovered nodes and adds them to next a block at a time. */
+    private class Discovered {
+      private final int[] buffer = new int[64];
+      private int size;
+
+      void add(int v) {
+        if (size == buffer.length) {
+          flush();
+        }
+        buffer[size++] = v;
+      }
+
+      void flush() {
+        int at = nextSize.getAndAdd(size);
+        System.arraycopy(buffer, 0, next, at, size);
+        size = 0;
+      }
+    }
+
+    /**
+     *  Processes a range of the frontier: each node, its outgoing edges,
+     *  and (when going top-down) the claiming of their heads.
+     */
+    private class ProcessTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private final int lo, hi;
+      private final boolean discover;
+
+      ProcessTask(int lo, int hi, boolean discover) {
+        this.lo = lo;
+        this.hi = hi;
+        this.discover = discover;
+      }
+
+      protected void compute() {
+        if (hi - lo > GRAIN) {
+          int mid = (lo + hi) >>> 1;
+          invokeAll(new ProcessTask(lo, mid, discover), new ProcessTask(mid, hi, discover));
+          return;
+        }
+        Discovered found = new Discovered();
+        for (int i = lo; i < hi && !stop.get(); i++) {
+          int v = frontier[i];
+          if (processor.preProcessNode(snapshot.sourceNode(v))) {
+            stop.set(true);
+            break;
+          }
+          for (int e = snapshot.outStart(v); e < snapshot.outEnd(v); e++) {
+            if (stop.get()) {
+              break;
+            }
+            if (processor.processEdge(snapshot.sourceEdge(e))) {
+              stop.set(true);
+              break;
+            }
+            if (discover && claim(snapshot.head(e))) {
+              found.add(snapshot.head(e));
+            }
+          }
+          if (stop.get() || processor.postProcessNode(snapshot.sourceNode(v))) {
+            stop.set(true);
+            break;
+          }
+        }
+        found.flush();
+      }
+    }
+
+    /**
+     *  Discovers, in a range of node ids, the unvisited nodes with an
+     *  incoming edge from the frontier.
+     */
+    private class BottomUpTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private final int lo, hi;
+
+      BottomUpTask(int lo, int hi) {
+        this.lo = lo;
+        this.hi = hi;
+      }
+
+      protected void compute() {
+        if (hi - lo > 64 * GRAIN) {
+          // split on word boundaries
+          int mid = ((lo + hi) >>> 1) & ~63;
+          invokeAll(new BottomUpTask(lo, mid), new BottomUpTask(mid, hi));
+          return;
+        }
+        Discovered found = new Discovered();
+        for (int v = lo; v < hi; v++) {
+          if ((visited.get(v >>> 6) & (1L << v)) != 0) {
+            continue;
+          }
+          for (int i = snapshot.inStart(v); i < snapshot.inEnd(v); i++) {
+            int u = snapshot.inSource(i);
+            if ((frontierBits[u >>> 6] & (1L << u)) != 0) {
+              claim(v);
+              found.add(v);
+              break;
+            }
+          }
+        }
+        found.flush();
+      }
+    }
+  }
 }
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+/**
+ *  Writes a graph of the kind the GUI edits (nodes carrying
+ *  PlacedData<Integer>, edges carrying Integer weights) in the compact
+ *  binary graph format read by GraphReader.
+ *
+ *  The format is a header followed by a node table and an edge table:
+ *
+ *      "GGUI"  version byte  node count  edge count
+ *      per node:  data  x  y
+ *      per edge:  tail index  head index  weight
+ *
+ *  Counts and indices are unsigned varints (seven bits per byte, high
+ *  bit set on all but the last byte); data, coordinates and weights are
+ *  zigzag-encoded signed varints, so small values of either sign take
+ *  one byte.  A node's index is its position in the node table.  Colors
+ *  are not stored.
+ *
+ *  Records are encoded straight into a fixed-size buffer that is
+ *  flushed to the channel whenever it fills, so writing takes the same
+ *  memory however large the graph is.
+ */
+public class GraphWriter {
+    /** The first four bytes of every graph file. */
+    static final byte[] MAGIC = { 'G', 'G', 'U', 'I' };
+    /** The version of the format written. */
+    static final int FORMAT_VERSION = 1;
+    /** The size of the I/O buffer. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** The channel to write to. */
+    private final WritableByteChannel channel;
+    /** Encoded bytes waiting to be written. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     *  Create a writer on a channel.  The channel is not closed by the
+     *  writer.
+     *
+     *  @param channel : the channel to write to
+     */
+    public GraphWriter(WritableByteChannel channel) {
+	this.channel = channel;
+    }
+
+    /**
+     *  Writes a graph to the channel.
+     *  Performance: O(n + e)
+     *
+     *  @param graph : the graph to write
+     *  @throws IOException if the channel cannot be written
+     */
+    public void write(Graph<PlacedData<Integer>, Integer> graph) throws IOException {
+	buffer.clear();
+	buffer.put(MAGIC);
+	buffer.put((byte)FORMAT_VERSION);
+	putVarint(graph.numNodes());
+	putVarint(graph.numEdges());
+	NodeIndex index = new NodeIndex(graph);
+	for(Graph.Node<PlacedData<Integer>, Integer> node : graph.getNodes()) {
+	    index.assign(node);
+	    PlacedData<Integer> data = node.getData();
+	    putSigned(data.getData());
+	    putSigned(data.getX());
+	    putSigned(data.getY());
+	}
+	for(Graph.Edge<PlacedData<Integer>, Integer> edge : graph.getEdges()) {
+	    putVarint(index.get(edge.getTail()));
+	    putVarint(index.get(edge.getHead()));
+	    putSigned(edge.getData());
+	}
+	flush();
+    }
+
+    /**
+     *  Writes an unsigned varint.
+     */
+    private void putVarint(int value) throws IOException {
+	if(buffer.remaining() < 5) {
+	    flush();
+	}
+	while((value & ~0x7F) != 0) {
+	    buffer.put((byte)((value & 0x7F) | 0x80));
+	    value >>>= 7;
+	}
+	buffer.put((byte)value);
+    }
+
+    /**
+     *  Writes a signed value as a zigzag varint.
+     */
+    private void putSigned(int value) throws IOException {
+	putVarint((value << 1) ^ (value >> 31));
+    }
+
+    private void flush() throws IOException {
+	buffer.flip();
+	while(buffer.hasRemaining()) {
+	    channel.write(buffer);
+	}
+	buffer.clear();
+    }
+
+    /**
+     *  Numbers the nodes of a graph in the order they are written.  For
+     *  a GraphImplementation the numbers are kept in an array indexed
+     *  by node id; for any other graph, in a hash map.
+     */
+    private static class NodeIndex {
+	private final GraphImplementation<PlacedData<Integer>, Integer> implementation;
+	private final int[] byId;
+	private final Map<Graph.Node<PlacedData<Integer>, Integer>, Integer> byNode;
+	private int next;
+
+	NodeIndex(Graph<PlacedData<Integer>, Integer> graph) {
+	    if(graph instanceof GraphImplementation) {
+		implementation = (GraphImplementation<PlacedData<Integer>, Integer>)graph;
+		byId = new int[implementation.nodeIdBound()];
+		byNode = null;
+	    } else {
+		implementation = null;
+		byId = null;
+		byNode = new HashMap<Graph.Node<PlacedData<Integer>, Integer>, Integer>();
+	    }
+	}
+
+	void assign(Graph.Node<PlacedData<Integer>, Integer> node) {
+	    if(byId != null) {
+		byId[implementation.nodeId(node)] = next++;
+	    } else {
+		byNode.put(node, next++);
+	    }
+	}
+
+	int get(Graph.Node<PlacedData<Integer>, Integer> node) {
+	    return (byId != null) ? byId[implementation.nodeId(node)] : byNode.get(node);
+	}
+    }
+}
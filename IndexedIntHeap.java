@@ -0,0 +1,217 @@
+import java.util.*;
+
+/**
+ *  A binary min-heap of the ints 0 to capacity-1, each with a long key.
+ *  Every id's place in the heap is kept in an array, so contains,
+ *  decreaseKey and remove find an entry in O(1) before sifting it.  No
+ *  objects are created after construction, and clear() costs only the
+ *  number of entries left, so one heap can serve many searches.
+ */
+public class IndexedIntHeap {
+    /** The ids in the heap, in heap order. */
+    private final int[] heap;
+    /** The place of each id in heap, or -1 if it is not in the heap. */
+    private final int[] position;
+    /** The key of each id in the heap. */
+    private final long[] key;
+    /** The number of ids in the heap. */
+    private int size;
+
+    /**
+     *  Create an empty heap for the ids 0 to capacity-1.
+     *  Performance: O(capacity)
+     *
+     *  @param capacity : one more than the largest id
+     */
+    public IndexedIntHeap(int capacity) {
+	heap = new int[capacity];
+	position = new int[capacity];
+	key = new long[capacity];
+	Arrays.fill(position, -1);
+    }
+
+    /**
+     *  Returns the number of ids in the heap.
+     *  Performance: O(1)
+     *
+     *  @return the number of ids
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     *  Is the heap empty?
+     *  Performance: O(1)
+     *
+     *  @return true if there are no ids in the heap
+     */
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    /**
+     *  Is an id in the heap?
+     *  Performance: O(1)
+     *
+     *  @param id : the id
+     *  @return true if the id is in the heap
+     */
+    public boolean contains(int id) {
+	return position[id] >= 0;
+    }
+
+    /**
+     *  Returns the key of an id in the heap.
+     *  Performance: O(1)
+     *
+     *  @param id : an id in the heap
+     *  @return its key
+     */
+    public long key(int id) {
+	return key[id];
+    }
+
+    /**
+     *  Adds an id, or lowers its key if it is already in the heap with a
+     *  larger one.
+     *  Performance: O(log size)
+     *
+     *  @param id  : the id
+     *  @param k   : its key
+     *  @return true if the heap changed
+     */
+    public boolean offer(int id, long k) {
+	int at = position[id];
+	if(at < 0) {
+	    key[id] = k;
+	    heap[size] = id;
+	    position[id] = size;
+	    siftUp(size++);
+	    return true;
+	}
+	if(k < key[id]) {
+	    key[id] = k;
+	    siftUp(at);
+	    return true;
+	}
+	return false;
+    }
+
+    /**
+     *  Lowers the key of an id in the heap.
+     *  Performance: O(log size)
+     *
+     *  @param id : an id in the heap
+     *  @param k  : its new key, no larger than its current one
+     *  @throws Error if the id is not in the heap or k is larger
+     */
+    public void decreaseKey(int id, long k) {
+	if(position[id] < 0 || k > key[id]) {
+	    throw new Error("Key cannot be decreased.");
+	}
+	key[id] = k;
+	siftUp(position[id]);
+    }
+
+    /**
+     *  Returns the id with the smallest key, without removing it.
+     *  Performance: O(1)
+     *
+     *  @return the id
+     *  @throws Error if the heap is empty
+     */
+    public int peek() {
+	if(size == 0) {
+	    throw new Error("Heap is empty.");
+	}
+	return heap[0];
+    }
+
+    /**
+     *  Removes and returns the id with the smallest key.
+     *  Performance: O(log size)
+     *
+     *  @return the id
+     *  @throws Error if the heap is empty
+     */
+    public int poll() {
+	int id = peek();
+	remove(id);
+	return id;
+    }
+
+    /**
+     *  Removes an id from the heap if it is there.
+     *  Performance: O(log size)
+     *
+     *  @param id : the id
+     */
+    public void remove(int id) {
+	int at = position[id];
+	if(at < 0) {
+	    return;
+	}
+	position[id] = -1;
+	size--;
+	if(at == size) {
+	    return;
+	}
+	int last = heap[size];
+	heap[at] = last;
+	position[last] = at;
+	siftDown(at);
+	siftUp(position[last]);
+    }
+
+    /**
+     *  Removes every id.
+     *  Performance: O(size)
+     */
+    public void clear() {
+	for(int i = 0; i < size; i++) {
+	    position[heap[i]] = -1;
+	}
+	size = 0;
+    }
+
+    private void siftUp(int at) {
+	int id = heap[at];
+	long k = key[id];
+	while(at > 0) {
+	    int parent = (at - 1) >>> 1;
+	    int p = heap[parent];
+	    if(key[p] <= k) {
+		break;
+	    }
+	    heap[at] = p;
+	    position[p] = at;
+	    at = parent;
+	}
+	heap[at] = id;
+	position[id] = at;
+    }
+
+    private void siftDown(int at) {
+	int id = heap[at];
+	long k = key[id];
+	int half = size >>> 1;
+	while(at < half) {
+	    int child = 2 * at + 1;
+	    int c = heap[child];
+	    int right = child + 1;
+	    if(right < size && key[heap[right]] < key[c]) {
+		child = right;
+		c = heap[child];
+	    }
+	    if(k <= key[c]) {
+		break;
+	    }
+	    heap[at] = c;
+	    position[c] = at;
+	    at = child;
+	}
+	heap[at] = id;
+	position[id] = at;
+    }
+}
@@ -0,0 +1,923 @@
+import java.util.*;
+
+/**
+ *  A directed graph specialized for int node values and int edge
+ *  weights.  Nodes and edges are identified by int ids and every field
+ *  lives in a growable primitive array, so adding, removing, finding
+ *  and iterating edges never boxes a value or allocates an object once
+ *  the arrays have grown large enough.
+ *
+ *  The edges of each node are threaded through doubly-linked lists kept
+ *  in the edge arrays.  To walk the outgoing edges of v:
+ *
+ *      for(int e = g.firstOutgoing(v); e != -1; e = g.nextOutgoing(e)) {
+ *          int w = g.head(e);
+ *          ...
+ *      }
+ *
+ *  The ids of removed nodes and edges are reused by later additions.
+ *  asGraph() returns a Graph view for callers that expect Graph<N,E>;
+ *  each id carries a stamp that changes when the id is freed, so a
+ *  view's handle to a removed node or edge never turns into a handle to
+ *  whatever reuses its id.
+ */
+public class IntGraph {
+    /** Marks the end of an edge list. */
+    public static final int NONE = -1;
+
+    /** The value of each node. */
+    private int[] nodeValue;
+    /** The first outgoing edge of each node, or NONE. */
+    private int[] firstOut;
+    /** The first incoming edge of each node, or NONE. */
+    private int[] firstIn;
+    /** The number of outgoing edges of each node. */
+    private int[] outDegree;
+    /** The number of incoming edges of each node. */
+    private int[] inDegree;
+    /** Whether each node id is currently in use. */
+    private boolean[] nodeLive;
+    /** The number of times each node id has been freed. */
+    private int[] nodeStamp;
+    /** One more than the largest node id ever handed out. */
+    private int nodeBound;
+    /** Node ids that have been removed and may be reused. */
+    private int[] freeNodes = new int[4];
+    /** The number of entries in freeNodes. */
+    private int numFreeNodes;
+    /** The number of live nodes. */
+    private int numNodes;
+
+    /** The tail of each edge, or NONE if the edge id is not in use. */
+    private int[] edgeTail;
+    /** The head of each edge. */
+    private int[] edgeHead;
+    /** The weight of each edge. */
+    private int[] edgeWeight;
+    /** The number of times each edge id has been freed. */
+    private int[] edgeStamp;
+    /** The next edge with the same tail, or NONE. */
+    private int[] nextOut;
+    /** The previous edge with the same tail, or NONE. */
+    private int[] prevOut;
+    /** The next edge with the same head, or NONE. */
+    private int[] nextIn;
+    /** The previous edge with the same head, or NONE. */
+    private int[] prevIn;
+    /** One more than the largest edge id ever handed out. */
+    private int edgeBound;
+    /** Edge ids that have been removed and may be reused. */
+    private int[] freeEdges = new int[4];
+    /** The number of entries in freeEdges. */
+    private int numFreeEdges;
+    /** The number of live edges. */
+    private int numEdges;
+
+    /** The Graph view of this graph, created on first use. */
+    private GraphView view;
+
+    /**
+     *  Create an empty graph.
+     */
+    public IntGraph() {
+	this(16, 16);
+    }
+
+    /**
+     *  Create an empty graph with room for the given number of nodes and
+     *  edges before any array has to grow.
+     *
+     *  @param nodeCapacity : the expected number of nodes
+     *  @param edgeCapacity : the expected number of edges
+     */
+    public IntGraph(int nodeCapacity, int edgeCapacity) {
+	nodeCapacity = Math.max(nodeCapacity, 1);
+	edgeCapacity = Math.max(edgeCapacity, 1);
+	nodeValue = new int[nodeCapacity];
+	firstOut = new int[nodeCapacity];
+	firstIn = new int[nodeCapacity];
+	outDegree = new int[nodeCapacity];
+	inDegree = new int[nodeCapacity];
+	nodeLive = new boolean[nodeCapacity];
+	nodeStamp = new int[nodeCapacity];
+	edgeTail = new int[edgeCapacity];
+	edgeHead = new int[edgeCapacity];
+	edgeWeight = new int[edgeCapacity];
+	edgeStamp = new int[edgeCapacity];
+	nextOut = new int[edgeCapacity];
+	prevOut = new int[edgeCapacity];
+	nextIn = new int[edgeCapacity];
+	prevIn = new int[edgeCapacity];
+    }
+
+    /**
+     *  Returns the number of nodes in the graph.
+     *  Performance: O(1)
+     *
+     *  @return the number of nodes
+     */
+    public int numNodes() {
+	return numNodes;
+    }
+
+    /**
+     *  Returns the number of edges in the graph.
+     *  Performance: O(1)
+     *
+     *  @return the number of edges
+     */
+    public int numEdges() {
+	return numEdges;
+    }
+
+    /**
+     *  Returns one more than the largest node id in use, which is the
+     *  size an array indexed by node id must have.
+     *  Performance: O(1)
+     *
+     *  @return the bound on node ids
+     */
+    public int nodeBound() {
+	return nodeBound;
+    }
+
+    /**
+     *  Returns one more than the largest edge id in use, which is the
+     *  size an array indexed by edge id must have.
+     *  Performance: O(1)
+     *
+     *  @return the bound on edge ids
+     */
+    public int edgeBound() {
+	return edgeBound;
+    }
+
+    /**
+     *  Tells whether a node id is in use.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return true if v is a node of this graph
+     */
+    public boolean containsNode(int v) {
+	return v >= 0 && v < nodeBound && nodeLive[v];
+    }
+
+    /**
+     *  Tells whether an edge id is in use.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return true if e is an edge of this graph
+     */
+    public boolean containsEdge(int e) {
+	return e >= 0 && e < edgeBound && edgeTail[e] != NONE;
+    }
+
+    /**
+     *  Adds a node to the graph.  The new node will have degree 0.
+     *  Performance: O(1) amortized
+     *
+     *  @param value : the value to be associated with the node
+     *  @return the id of the new node
+     */
+    public int addNode(int value) {
+	int v;
+	if(numFreeNodes > 0) {
+	    v = freeNodes[--numFreeNodes];
+	} else {
+	    if(nodeBound == nodeValue.length) {
+		growNodes(2 * nodeBound);
+	    }
+	    v = nodeBound++;
+	}
+	nodeValue[v] = value;
+	firstOut[v] = NONE;
+	firstIn[v] = NONE;
+	outDegree[v] = 0;
+	inDegree[v] = 0;
+	nodeLive[v] = true;
+	numNodes++;
+	return v;
+    }
+
+    /**
+     *  Removes a node and all its incident edges from the graph.
+     *  Performance: O(degree)
+     *
+     *  @param v : the node to be removed
+     *  @throws Error if the node does not belong to this graph
+     */
+    public void removeNode(int v) {
+	checkNode(v);
+	while(firstOut[v] != NONE) {
+	    removeEdge(firstOut[v]);
+	}
+	while(firstIn[v] != NONE) {
+	    removeEdge(firstIn[v]);
+	}
+	nodeLive[v] = false;
+	nodeStamp[v]++;
+	if(numFreeNodes == freeNodes.length) {
+	    freeNodes = Arrays.copyOf(freeNodes, 2 * numFreeNodes);
+	}
+	freeNodes[numFreeNodes++] = v;
+	numNodes--;
+    }
+
+    /**
+     *  Adds an edge to the graph.
+     *  Performance: O(1) amortized
+     *
+     *  @param tail   : the tail ("from" node) of the edge to be added
+     *  @param head   : the head ("to" node) of the edge to be added
+     *  @param weight : the weight of the edge
+     *  @return the id of the new edge
+     *  @throws Error if either node does not belong to this graph
+     */
+    public int addEdge(int tail, int head, int weight) {
+	checkNode(tail);
+	checkNode(head);
+	int e;
+	if(numFreeEdges > 0) {
+	    e = freeEdges[--numFreeEdges];
+	} else {
+	    if(edgeBound == edgeTail.length) {
+		growEdges(2 * edgeBound);
+	    }
+	    e = edgeBound++;
+	}
+	edgeWeight[e] = weight;
+	linkOut(e, tail);
+	linkIn(e, head);
+	numEdges++;
+	return e;
+    }
+
+    /**
+     *  Removes an edge from the graph.
+     *  Performance: O(1)
+     *
+     *  @param e : the edge to be removed
+     *  @throws Error if the edge does not belong to this graph
+     */
+    public void removeEdge(int e) {
+	checkEdge(e);
+	unlinkOut(e);
+	unlinkIn(e);
+	edgeTail[e] = NONE;
+	edgeStamp[e]++;
+	if(numFreeEdges == freeEdges.length) {
+	    freeEdges = Arrays.copyOf(freeEdges, 2 * numFreeEdges);
+	}
+	freeEdges[numFreeEdges++] = e;
+	numEdges--;
+    }
+
+    /**
+     *  Removes every edge from tail to head.
+     *  Performance: O(out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edges to be removed
+     *  @param head : the head ("to" node) of the edges to be removed
+     *  @return the number of edges removed
+     *  @throws Error if either node does not belong to this graph
+     */
+    public int removeEdge(int tail, int head) {
+	checkNode(tail);
+	checkNode(head);
+	int removed = 0;
+	int e = firstOut[tail];
+	while(e != NONE) {
+	    int next = nextOut[e];
+	    if(edgeHead[e] == head) {
+		removeEdge(e);
+		removed++;
+	    }
+	    e = next;
+	}
+	return removed;
+    }
+
+    /**
+     *  Finds an edge given its tail and head.
+     *  Performance: O(out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be found
+     *  @param head : the head ("to" node) of the edge to be found
+     *  @return the id of the edge, or NONE if there is no such edge
+     */
+    public int findEdge(int tail, int head) {
+	if(!containsNode(tail)) {
+	    return NONE;
+	}
+	for(int e = firstOut[tail]; e != NONE; e = nextOut[e]) {
+	    if(edgeHead[e] == head) {
+		return e;
+	    }
+	}
+	return NONE;
+    }
+
+    /**
+     *  Returns the first outgoing edge of a node.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the id of an edge whose tail is v, or NONE
+     */
+    public int firstOutgoing(int v) {
+	return firstOut[v];
+    }
+
+    /**
+     *  Returns the outgoing edge after e in its tail's list.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the next edge with the same tail as e, or NONE
+     */
+    public int nextOutgoing(int e) {
+	return nextOut[e];
+    }
+
+    /**
+     *  Returns the first incoming edge of a node.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the id of an edge whose head is v, or NONE
+     */
+    public int firstIncoming(int v) {
+	return firstIn[v];
+    }
+
+    /**
+     *  Returns the incoming edge after e in its head's list.
+     *  Performance: O(1)
+     *
+     *  @param e : an edge id
+     *  @return the next edge with the same head as e, or NONE
+     */
+    public int nextIncoming(int e) {
+	return nextIn[e];
+    }
+
+    /** @return the number of edges leaving node v */
+    public int outDegree(int v) {
+	return outDegree[v];
+    }
+
+    /** @return the number of edges entering node v */
+    public int inDegree(int v) {
+	return inDegree[v];
+    }
+
+    /** @return the value associated with node v */
+    public int nodeValue(int v) {
+	return nodeValue[v];
+    }
+
+    /** Sets the value associated with node v. */
+    public void setNodeValue(int v, int value) {
+	checkNode(v);
+	nodeValue[v] = value;
+    }
+
+    /** @return the tail ("from" node) of edge e */
+    public int tail(int e) {
+	return edgeTail[e];
+    }
+
+    /** @return the head ("to" node) of edge e */
+    public int head(int e) {
+	return edgeHead[e];
+    }
+
+    /** @return the weight of edge e */
+    public int weight(int e) {
+	return edgeWeight[e];
+    }
+
+    /** Sets the weight of edge e. */
+    public void setWeight(int e, int weight) {
+	checkEdge(e);
+	edgeWeight[e] = weight;
+    }
+
+    /**
+     *  Moves an edge to a new tail.
+     *  Performance: O(1)
+     *
+     *  @param e    : the edge to be moved
+     *  @param tail : the new tail of the edge
+     */
+    public void setTail(int e, int tail) {
+	checkEdge(e);
+	checkNode(tail);
+	unlinkOut(e);
+	linkOut(e, tail);
+    }
+
+    /**
+     *  Moves an edge to a new head.
+     *  Performance: O(1)
+     *
+     *  @param e    : the edge to be moved
+     *  @param head : the new head of the edge
+     */
+    public void setHead(int e, int head) {
+	checkEdge(e);
+	checkNode(head);
+	unlinkIn(e);
+	linkIn(e, head);
+    }
+
+    /**
+     *  Returns a view of this graph as a Graph<Integer,Integer>, whose
+     *  node data are the node values and whose edge data are the edge
+     *  weights.  Changes made through the view are made to this graph.
+     *  The view hands out the same object for a node every time, so
+     *  nodes can be compared by identity, but allocates a small object
+     *  for each edge it hands out, so hot loops should use the int
+     *  methods instead.  A node or edge handed out stops belonging to
+     *  the view once it is removed: using it throws an Error even after
+     *  its id is reused.
+     *
+     *  @return the Graph view of this graph
+     */
+    public Graph<Integer,Integer> asGraph() {
+	if(view == null) {
+	    view = new GraphView();
+	}
+	return view;
+    }
+
+    /**
+     *  Returns a string representation of the graph, in the same form
+     *  as GraphImplementation.toString().
+     *
+     *  @return a string representation of the graph
+     */
+    public String toString() {
+	StringBuilder builder = new StringBuilder();
+	builder.append("\n");
+	builder.append("Graph");
+	builder.append("\n");
+	for(int v = 0; v < nodeBound; v++) {
+	    if(!nodeLive[v]) continue;
+	    builder.append("\n  Node: ").append(nodeValue[v]);
+	    for(int e = firstOut[v]; e != NONE; e = nextOut[e]) {
+		builder.append("\n    To: ").append(nodeValue[edgeHead[e]]).append(", ").append(edgeWeight[e]);
+	    }
+	}
+	builder.append("\n\n Edges: ");
+	for(int e = 0; e < edgeBound; e++) {
+	    if(edgeTail[e] == NONE) continue;
+	    builder.append("\n    ").append(nodeValue[edgeHead[e]]).append(", ").append(edgeWeight[e]);
+	}
+	builder.append("\n");
+	return builder.toString();
+    }
+
+    /**
+     *  Verifies that every edge list is properly linked, that every edge
+     *  joins two live nodes, and that the counts agree.
+     *  Performance: O(n + e)
+     *
+     *  @return true if consistent, false otherwise
+     */
+    public boolean validateGraph() {
+	int outs = 0;
+	int ins = 0;
+	for(int v = 0; v < nodeBound; v++) {
+	    if(!nodeLive[v]) continue;
+	    int count = 0;
+	    int prev = NONE;
+	    for(int e = firstOut[v]; e != NONE; e = nextOut[e]) {
+		if(edgeTail[e] != v || prevOut[e] != prev || !containsNode(edgeHead[e])) {
+		    return false;
+		}
+		prev = e;
+		count++;
+	    }
+	    if(count != outDegree[v]) {
+		return false;
+	    }
+	    outs += count;
+	    count = 0;
+	    prev = NONE;
+	    for(int e = firstIn[v]; e != NONE; e = nextIn[e]) {
+		if(edgeHead[e] != v || prevIn[e] != prev || !containsNode(edgeTail[e])) {
+		    return false;
+		}
+		prev = e;
+		count++;
+	    }
+	    if(count != inDegree[v]) {
+		return false;
+	    }
+	    ins += count;
+	}
+	return outs == numEdges && ins == numEdges;
+    }
+
+    private void checkNode(int v) {
+	if(!containsNode(v)) {
+	    throw new Error("Node does not belong to graph.");
+	}
+    }
+
+    private void checkEdge(int e) {
+	if(!containsEdge(e)) {
+	    throw new Error("Edge does not belong to graph.");
+	}
+    }
+
+    private void linkOut(int e, int tail) {
+	edgeTail[e] = tail;
+	prevOut[e] = NONE;
+	nextOut[e] = firstOut[tail];
+	if(firstOut[tail] != NONE) {
+	    prevOut[firstOut[tail]] = e;
+	}
+	firstOut[tail] = e;
+	outDegree[tail]++;
+    }
+
+    private void linkIn(int e, int head) {
+	edgeHead[e] = head;
+	prevIn[e] = NONE;
+	nextIn[e] = firstIn[head];
+	if(firstIn[head] != NONE) {
+	    prevIn[firstIn[head]] = e;
+	}
+	firstIn[head] = e;
+	inDegree[head]++;
+    }
+
+    private void unlinkOut(int e) {
+	int tail = edgeTail[e];
+	if(prevOut[e] != NONE) {
+	    nextOut[prevOut[e]] = nextOut[e];
+	} else {
+	    firstOut[tail] = nextOut[e];
+	}
+	if(nextOut[e] != NONE) {
+	    prevOut[nextOut[e]] = prevOut[e];
+	}
+	outDegree[tail]--;
+    }
+
+    private void unlinkIn(int e) {
+	int head = edgeHead[e];
+	if(prevIn[e] != NONE) {
+	    nextIn[prevIn[e]] = nextIn[e];
+	} else {
+	    firstIn[head] = nextIn[e];
+	}
+	if(nextIn[e] != NONE) {
+	    prevIn[nextIn[e]] = prevIn[e];
+	}
+	inDegree[head]--;
+    }
+
+    private void growNodes(int capacity) {
+	nodeValue = Arrays.copyOf(nodeValue, capacity);
+	firstOut = Arrays.copyOf(firstOut, capacity);
+	firstIn = Arrays.copyOf(firstIn, capacity);
+	outDegree = Arrays.copyOf(outDegree, capacity);
+	inDegree = Arrays.copyOf(inDegree, capacity);
+	nodeLive = Arrays.copyOf(nodeLive, capacity);
+	nodeStamp = Arrays.copyOf(nodeStamp, capacity);
+    }
+
+    private void growEdges(int capacity) {
+	edgeTail = Arrays.copyOf(edgeTail, capacity);
+	edgeHead = Arrays.copyOf(edgeHead, capacity);
+	edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+	edgeStamp = Arrays.copyOf(edgeStamp, capacity);
+	nextOut = Arrays.copyOf(nextOut, capacity);
+	prevOut = Arrays.copyOf(prevOut, capacity);
+	nextIn = Arrays.copyOf(nextIn, capacity);
+	prevIn = Arrays.copyOf(prevIn, capacity);
+    }
+
+    /**
+     *  Presents an IntGraph through the Graph interface.
+     */
+    private class GraphView implements Graph<Integer,Integer> {
+	/** The node object of each id, created on first use. */
+	private IntNode[] nodes = new IntNode[0];
+
+	/** @return the one node object for the current use of an id */
+	IntNode node(int v) {
+	    if(v >= nodes.length) {
+		nodes = Arrays.copyOf(nodes, Math.max(v + 1, 2 * nodes.length));
+	    }
+	    if(nodes[v] == null || nodes[v].stamp != nodeStamp[v]) {
+		nodes[v] = new IntNode(v);
+	    }
+	    return nodes[v];
+	}
+
+	public Set<Node<Integer,Integer>> getNodes() {
+	    return new AbstractSet<Node<Integer,Integer>>() {
+		public Iterator<Node<Integer,Integer>> iterator() {
+		    return new Iterator<Node<Integer,Integer>>() {
+			private int next = advance(0);
+
+			private int advance(int v) {
+			    while(v < nodeBound && !nodeLive[v]) {
+				v++;
+			    }
+			    return v;
+			}
+
+			public boolean hasNext() {
+			    return next < nodeBound;
+			}
+
+			public Node<Integer,Integer> next() {
+			    if(next >= nodeBound) {
+				throw new NoSuchElementException();
+			    }
+			    Node<Integer,Integer> node = node(next);
+			    next = advance(next + 1);
+			    return node;
+			}
+		    };
+		}
+
+		public int size() {
+		    return numNodes;
+		}
+	    };
+	}
+
+	public Set<Edge<Integer,Integer>> getEdges() {
+	    return new AbstractSet<Edge<Integer,Integer>>() {
+		public Iterator<Edge<Integer,Integer>> iterator() {
+		    return new Iterator<Edge<Integer,Integer>>() {
+			private int next = advance(0);
+
+			private int advance(int e) {
+			    while(e < edgeBound && edgeTail[e] == NONE) {
+				e++;
+			    }
+			    return e;
+			}
+
+			public boolean hasNext() {
+			    return next < edgeBound;
+			}
+
+			public Edge<Integer,Integer> next() {
+			    if(next >= edgeBound) {
+				throw new NoSuchElementException();
+			    }
+			    Edge<Integer,Integer> edge = new IntEdge(next);
+			    next = advance(next + 1);
+			    return edge;
+			}
+		    };
+		}
+
+		public int size() {
+		    return numEdges;
+		}
+	    };
+	}
+
+	public Edge<Integer,Integer> findEdge(Node<Integer,Integer> tail, Node<Integer,Integer> head) {
+	    int e = IntGraph.this.findEdge(id(tail), id(head));
+	    return (e == NONE) ? null : new IntEdge(e);
+	}
+
+	public int numNodes() {
+	    return numNodes;
+	}
+
+	public int numEdges() {
+	    return numEdges;
+	}
+
+	public Node<Integer,Integer> addNode(Integer data) {
+	    return node(IntGraph.this.addNode(data));
+	}
+
+	public Edge<Integer,Integer> addEdge(Integer data, Node<Integer,Integer> tail, Node<Integer,Integer> head) {
+	    return new IntEdge(IntGraph.this.addEdge(id(tail), id(head), data));
+	}
+
+	public void removeNode(Node<Integer,Integer> node) {
+	    IntGraph.this.removeNode(id(node));
+	}
+
+	public void removeEdge(Edge<Integer,Integer> edge) {
+	    IntGraph.this.removeEdge(id(edge));
+	}
+
+	public void removeEdge(Node<Integer,Integer> tail, Node<Integer,Integer> head) {
+	    IntGraph.this.removeEdge(id(tail), id(head));
+	}
+
+	public boolean validateGraph() {
+	    return IntGraph.this.validateGraph();
+	}
+
+	public String toString() {
+	    return IntGraph.this.toString();
+	}
+
+	/** @return the id of a live node of this view, or NONE */
+	private int id(Node<Integer,Integer> node) {
+	    if(node instanceof IntGraph.IntNode && ((IntNode)node).owner() == IntGraph.this
+	       && ((IntNode)node).live()) {
+		return ((IntNode)node).id;
+	    }
+	    return NONE;
+	}
+
+	/** @return the id of a live edge of this view, or NONE */
+	private int id(Edge<Integer,Integer> edge) {
+	    if(edge instanceof IntGraph.IntEdge && ((IntEdge)edge).owner() == IntGraph.this
+	       && ((IntEdge)edge).live()) {
+		return ((IntEdge)edge).id;
+	    }
+	    return NONE;
+	}
+
+	/**
+	 *  The edges of one node's outgoing or incoming list.
+	 */
+	private Set<Edge<Integer,Integer>> edgeList(final int v, final boolean outgoing) {
+	    return new AbstractSet<Edge<Integer,Integer>>() {
+		public Iterator<Edge<Integer,Integer>> iterator() {
+		    return new Iterator<Edge<Integer,Integer>>() {
+			private int next = outgoing ? firstOut[v] : firstIn[v];
+
+			public boolean hasNext() {
+			    return next != NONE;
+			}
+
+			public Edge<Integer,Integer> next() {
+			    if(next == NONE) {
+				throw new NoSuchElementException();
+			    }
+			    Edge<Integer,Integer> edge = new IntEdge(next);
+			    next = outgoing ? nextOut[next] : nextIn[next];
+			    return edge;
+			}
+		    };
+		}
+
+		public int size() {
+		    return outgoing ? outDegree[v] : inDegree[v];
+		}
+	    };
+	}
+    }
+
+    /**
+     *  A node of the Graph view.  Two IntNodes are equal if they have
+     *  the same id and stamp in the same IntGraph.
+     */
+    private class IntNode implements Graph.Node<Integer,Integer> {
+	/** The id of the node. */
+	private final int id;
+	/** The stamp of the id when the node was handed out. */
+	private final int stamp;
+
+	IntNode(int id) {
+	    this.id = id;
+	    this.stamp = nodeStamp[id];
+	}
+
+	IntGraph owner() {
+	    return IntGraph.this;
+	}
+
+	/** @return true if the node has not been removed */
+	boolean live() {
+	    return nodeLive[id] && nodeStamp[id] == stamp;
+	}
+
+	/** @return the id of the node, if it has not been removed */
+	private int check() {
+	    if(!live()) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	    return id;
+	}
+
+	public Integer getData() {
+	    return nodeValue[check()];
+	}
+
+	public void setData(Integer data) {
+	    setNodeValue(check(), data);
+	}
+
+	public Set<Graph.Edge<Integer,Integer>> getOutgoingEdges() {
+	    return view.edgeList(check(), true);
+	}
+
+	public Set<Graph.Edge<Integer,Integer>> getIncomingEdges() {
+	    return view.edgeList(check(), false);
+	}
+
+	public boolean equals(Graph.Node<Integer,Integer> that) {
+	    return (that instanceof IntGraph.IntNode) && ((IntNode)that).owner() == IntGraph.this
+		&& ((IntNode)that).id == id && ((IntNode)that).stamp == stamp;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Graph.Node) && this.equals((Graph.Node<Integer,Integer>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return live() ? Integer.toString(nodeValue[id]) : "removed";
+	}
+    }
+
+    /**
+     *  An edge of the Graph view.  Two IntEdges are equal if they have
+     *  the same id and stamp in the same IntGraph.
+     */
+    private class IntEdge implements Graph.Edge<Integer,Integer> {
+	/** The id of the edge. */
+	private final int id;
+	/** The stamp of the id when the edge was handed out. */
+	private final int stamp;
+
+	IntEdge(int id) {
+	    this.id = id;
+	    this.stamp = edgeStamp[id];
+	}
+
+	IntGraph owner() {
+	    return IntGraph.this;
+	}
+
+	/** @return true if the edge has not been removed */
+	boolean live() {
+	    return edgeTail[id] != NONE && edgeStamp[id] == stamp;
+	}
+
+	/** @return the id of the edge, if it has not been removed */
+	private int check() {
+	    if(!live()) {
+		throw new Error("Edge does not belong to graph.");
+	    }
+	    return id;
+	}
+
+	public Integer getData() {
+	    return edgeWeight[check()];
+	}
+
+	public void setData(Integer data) {
+	    setWeight(check(), data);
+	}
+
+	public Graph.Node<Integer,Integer> getTail() {
+	    return view.node(edgeTail[check()]);
+	}
+
+	public void setTail(Graph.Node<Integer,Integer> node) {
+	    IntGraph.this.setTail(check(), view.id(node));
+	}
+
+	public Graph.Node<Integer,Integer> getHead() {
+	    return view.node(edgeHead[check()]);
+	}
+
+	public void setHead(Graph.Node<Integer,Integer> node) {
+	    IntGraph.this.setHead(check(), view.id(node));
+	}
+
+	public boolean equals(Graph.Edge<Integer,Integer> that) {
+	    return (that instanceof IntGraph.IntEdge) && ((IntEdge)that).owner() == IntGraph.this
+		&& ((IntEdge)that).id == id && ((IntEdge)that).stamp == stamp;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Graph.Edge) && this.equals((Graph.Edge<Integer,Integer>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return live() ? Integer.toString(edgeWeight[id]) : "removed";
+	}
+    }
+}
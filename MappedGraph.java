@@ -0,0 +1,736 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ *  A read-only graph with int node values and int edge weights whose
+ *  topology lives in a memory-mapped file rather than on the heap.  The
+ *  operating system pages the file in as it is read, so the graph may
+ *  be far larger than the heap, and opening a graph that was written
+ *  earlier only maps the file and reads it through once to check it;
+ *  nothing is rebuilt.
+ *
+ *  The file holds a 16-byte header (magic number, format version,
+ *  number of nodes n, number of edges m) followed by int sections, in
+ *  little-endian order, in the same compressed sparse row layout as
+ *  GraphSnapshot:
+ *
+ *      nodeValue[n]  outOffsets[n+1]  edgeTail[m]  edgeHead[m]
+ *      edgeWeight[m]  inOffsets[n+1]  inEdges[m]
+ *
+ *  Each section is mapped on its own, so a section may not exceed 2GB
+ *  (about 500 million edges).
+ *
+ *  A graph can be written from a Graph on the heap, or from an
+ *  EdgeSource that produces its edges on demand, such as GraphBuilder
+ *  or EdgeListImporter.  The second way sorts the edges into place
+ *  inside the mapped file itself, so neither the graph nor its edge
+ *  list need ever fit in the heap.
+ *
+ *  The primitive accessors (outStart, head, weight, ...) read the file
+ *  directly.  The Graph interface hands out small node and edge objects
+ *  on demand, so GraphTraverser can walk the graph as is.
+ */
+public class MappedGraph implements Graph<Integer,Integer> {
+    /**
+     *  Produces the edges of a graph to be written, without the graph
+     *  being held anywhere.
+     */
+    public interface EdgeSource {
+	/**
+	 *  Passes every edge to the sink.  It is called twice, and must
+	 *  produce the same edges in the same order both times.
+	 *
+	 *  @param sink : receives the edges
+	 *  @throws IOException if the edges cannot be read
+	 */
+	void edges(EdgeSink sink) throws IOException;
+    }
+
+    /**
+     *  Receives edges one at a time.
+     */
+    public interface EdgeSink {
+	/**
+	 *  @param tail   : the id of the tail ("from" node)
+	 *  @param head   : the id of the head ("to" node)
+	 *  @param weight : the weight of the edge
+	 */
+	void edge(int tail, int head, int weight);
+    }
+
+    /** "GGRM" */
+    private static final int MAGIC = 0x4747524D;
+    /** The version of the file format written by this class. */
+    private static final int FORMAT_VERSION = 1;
+    /** The size of the header in bytes. */
+    private static final int HEADER_BYTES = 16;
+
+    /** The number of nodes. */
+    private final int n;
+    /** The number of edges. */
+    private final int m;
+    private final IntBuffer nodeValue;
+    private final IntBuffer outOffsets;
+    private final IntBuffer edgeTail;
+    private final IntBuffer edgeHead;
+    private final IntBuffer edgeWeight;
+    private final IntBuffer inOffsets;
+    private final IntBuffer inEdges;
+
+    /**
+     *  Maps a graph file written by write() and checks it.
+     *
+     *  @param corrupt : the message for a file whose sections do not
+     *                   agree, or null to describe the disagreement
+     */
+    private MappedGraph(FileChannel channel, String corrupt) throws IOException {
+	ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	while(header.hasRemaining()) {
+	    if(channel.read(header, header.position()) < 0) {
+		throw new IOException("Truncated graph file header.");
+	    }
+	}
+	header.flip();
+	if(header.getInt() != MAGIC) {
+	    throw new IOException("Not a graph file.");
+	}
+	int version = header.getInt();
+	if(version != FORMAT_VERSION) {
+	    throw new IOException("Unsupported graph file version " + version + ".");
+	}
+	n = header.getInt();
+	m = header.getInt();
+	if(n < 0 || m < 0 || 4L * (n + 1L) > Integer.MAX_VALUE || 4L * m > Integer.MAX_VALUE) {
+	    throw new IOException("Graph file claims " + n + " nodes and " + m + " edges.");
+	}
+	if(channel.size() != fileSize(n, m)) {
+	    throw new IOException("Graph file has the wrong size.");
+	}
+	long position = HEADER_BYTES;
+	nodeValue = map(channel, position, n);
+	position += 4L * n;
+	outOffsets = map(channel, position, n + 1);
+	position += 4L * (n + 1);
+	edgeTail = map(channel, position, m);
+	position += 4L * m;
+	edgeHead = map(channel, position, m);
+	position += 4L * m;
+	edgeWeight = map(channel, position, m);
+	position += 4L * m;
+	inOffsets = map(channel, position, n + 1);
+	position += 4L * (n + 1);
+	inEdges = map(channel, position, m);
+	String problem = problem();
+	if(problem != null) {
+	    throw new IOException((corrupt != null) ? corrupt : problem);
+	}
+    }
+
+    private static IntBuffer map(FileChannel channel, long position, int count) throws IOException {
+	return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count)
+	    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static long fileSize(int n, int m) {
+	return HEADER_BYTES + 4L * (3L * n + 2 + 4L * m);
+    }
+
+    /**
+     *  Opens a graph file written by write().  The file is read through
+     *  once, as validateGraph() does, so that a truncated or damaged
+     *  file is rejected here rather than by an out-of-range index later;
+     *  after that it is paged in as it is used.
+     *  Performance: O(n + e)
+     *
+     *  @param file : the graph file
+     *  @return the mapped graph
+     *  @throws IOException if the file cannot be read, is not a graph
+     *          file, or its sections do not agree
+     */
+    public static MappedGraph open(Path file) throws IOException {
+	return open(file, null);
+    }
+
+    private static MappedGraph open(Path file, String corrupt) throws IOException {
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    return new MappedGraph(channel, corrupt);
+	}
+    }
+
+    /**
+     *  Writes a graph to a file in the mapped format, streaming it out
+     *  through a fixed-size buffer, and then opens the file.
+     *  Performance: O(n + e)
+     *
+     *  @param file       : the file to write; it is replaced if it exists
+     *  @param graph      : the graph to write
+     *  @param nodeValue  : gives the int value to store for each node's data
+     *  @param edgeWeight : gives the int weight to store for each edge's data
+     *  @return the graph mapped from the new file
+     *  @throws IOException if the file cannot be written
+     */
+    public static <N,E> MappedGraph write(Path file, Graph<N,E> graph,
+					  ToIntFunction<? super N> nodeValue,
+					  ToIntFunction<? super E> edgeWeight) throws IOException {
+	GraphSnapshot<N,E> snapshot = GraphSnapshot.of(graph);
+	final int n = snapshot.numNodes();
+	final int m = snapshot.numEdges();
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						    StandardOpenOption.TRUNCATE_EXISTING)) {
+	    IntSink out = new IntSink(channel);
+	    out.put(MAGIC);
+	    out.put(FORMAT_VERSION);
+	    out.put(n);
+	    out.put(m);
+	    for(int v = 0; v < n; v++) {
+		out.put(nodeValue.applyAsInt(snapshot.nodeData(v)));
+	    }
+	    for(int v = 0; v < n; v++) {
+		out.put(snapshot.outStart(v));
+	    }
+	    out.put(m);
+	    for(int e = 0; e < m; e++) {
+		out.put(snapshot.tail(e));
+	    }
+	    for(int e = 0; e < m; e++) {
+		out.put(snapshot.head(e));
+	    }
+	    for(int e = 0; e < m; e++) {
+		out.put(edgeWeight.applyAsInt(snapshot.edgeData(e)));
+	    }
+	    for(int v = 0; v < n; v++) {
+		out.put(snapshot.inStart(v));
+	    }
+	    out.put(m);
+	    for(int i = 0; i < m; i++) {
+		out.put(snapshot.inEdge(i));
+	    }
+	    out.flush();
+	    channel.force(false);
+	}
+	return open(file);
+    }
+
+    /**
+     *  Writes a graph given as node values and an EdgeSource to a file
+     *  in the mapped format, and then opens the file.  The file is
+     *  mapped as it is written: a first pass over the edges counts the
+     *  degrees into the offset sections, and a second pass places each
+     *  edge at its tail's next free slot, so only the file, never the
+     *  heap, holds the edges.  Edges keep their source order among
+     *  those with the same tail.  The second pass writes all over the
+     *  file, so it runs fastest when the file fits in memory.
+     *  Performance: O(n + e)
+     *
+     *  @param file      : the file to write; it is replaced if it exists
+     *  @param n         : the number of nodes, whose ids are 0 to n - 1
+     *  @param m         : the number of edges the source produces
+     *  @param nodeValue : gives the int value to store for each node id
+     *  @param source    : produces the edges
+     *  @return the graph mapped from the new file
+     *  @throws IOException if the file cannot be written, an edge
+     *          refers to a node that does not exist, the source does not
+     *          produce the same m edges on both passes, or a section
+     *          would exceed 2GB
+     */
+    public static MappedGraph write(Path file, int n, final int m, IntUnaryOperator nodeValue,
+				    EdgeSource source) throws IOException {
+	if(n < 0 || m < 0 || 4L * (n + 1) > Integer.MAX_VALUE || 4L * m > Integer.MAX_VALUE) {
+	    throw new IOException("Graph too large for the mapped format: " + n + " nodes, " + m + " edges.");
+	}
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+	    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+	    header.order(ByteOrder.LITTLE_ENDIAN);
+	    long position = HEADER_BYTES;
+	    MappedByteBuffer values = mapForWrite(channel, position, n);
+	    position += 4L * n;
+	    MappedByteBuffer outs = mapForWrite(channel, position, n + 1);
+	    position += 4L * (n + 1);
+	    MappedByteBuffer tails = mapForWrite(channel, position, m);
+	    position += 4L * m;
+	    MappedByteBuffer heads = mapForWrite(channel, position, m);
+	    position += 4L * m;
+	    MappedByteBuffer weights = mapForWrite(channel, position, m);
+	    position += 4L * m;
+	    MappedByteBuffer ins = mapForWrite(channel, position, n + 1);
+	    position += 4L * (n + 1);
+	    MappedByteBuffer inIndex = mapForWrite(channel, position, m);
+
+	    IntBuffer value = values.asIntBuffer();
+	    for(int v = 0; v < n; v++) {
+		value.put(v, nodeValue.applyAsInt(v));
+	    }
+	    final IntBuffer out = outs.asIntBuffer();
+	    final IntBuffer in = ins.asIntBuffer();
+	    final IntBuffer tail = tails.asIntBuffer();
+	    final IntBuffer head = heads.asIntBuffer();
+	    final IntBuffer weight = weights.asIntBuffer();
+	    final IntBuffer inEdge = inIndex.asIntBuffer();
+	    final int nodes = n;
+	    final long[] count = new long[1];
+	    final int[] bad = { -1, -1 };
+
+	    // first pass: count each node's degrees into the slot after it
+	    source.edges(new EdgeSink() {
+		    public void edge(int t, int h, int w) {
+			if(t < 0 || t >= nodes || h < 0 || h >= nodes) {
+			    bad[0] = t;
+			    bad[1] = h;
+			    return;
+			}
+			out.put(t + 1, out.get(t + 1) + 1);
+			in.put(h + 1, in.get(h + 1) + 1);
+			count[0]++;
+		    }
+		});
+	    if(bad[0] != -1 || bad[1] != -1) {
+		throw new IOException("Edge from " + bad[0] + " to " + bad[1] + " refers to a node that does not exist.");
+	    }
+	    if(count[0] != m) {
+		throw new IOException("Expected " + m + " edges but found " + count[0] + ".");
+	    }
+	    for(int v = 0; v < n; v++) {
+		out.put(v + 1, out.get(v + 1) + out.get(v));
+		in.put(v + 1, in.get(v + 1) + in.get(v));
+	    }
+
+	    // second pass: each node's offset is its next free slot until
+	    // the pass is over, when it has become the next node's offset
+	    count[0] = 0;
+	    source.edges(new EdgeSink() {
+		    public void edge(int t, int h, int w) {
+			if(count[0]++ >= m || t < 0 || t >= nodes || h < 0 || h >= nodes) {
+			    return;
+			}
+			int e = out.get(t);
+			int i = in.get(h);
+			if(e >= m || i >= m) {
+			    return;  // a different edge list; open will notice
+			}
+			out.put(t, e + 1);
+			tail.put(e, t);
+			head.put(e, h);
+			weight.put(e, w);
+			in.put(h, i + 1);
+			inEdge.put(i, e);
+		    }
+		});
+	    if(count[0] != m) {
+		throw new IOException("Expected " + m + " edges but found " + count[0] + ".");
+	    }
+	    for(int v = n; v > 0; v--) {
+		out.put(v, out.get(v - 1));
+		in.put(v, in.get(v - 1));
+	    }
+	    out.put(0, 0);
+	    in.put(0, 0);
+
+	    header.putInt(MAGIC);
+	    header.putInt(FORMAT_VERSION);
+	    header.putInt(n);
+	    header.putInt(m);
+	    for(MappedByteBuffer section : new MappedByteBuffer[] { values, outs, tails, heads, weights, ins, inIndex, header }) {
+		section.force();
+	    }
+	}
+	return open(file, "Edge source produced different edges on its two passes.");
+    }
+
+    private static MappedByteBuffer mapForWrite(FileChannel channel, long position, int count) throws IOException {
+	MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, 4L * count);
+	buffer.order(ByteOrder.LITTLE_ENDIAN);
+	return buffer;
+    }
+
+    /**
+     *  Writes ints to a channel through a fixed-size buffer.
+     */
+    private static class IntSink {
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+	IntSink(FileChannel channel) {
+	    this.channel = channel;
+	}
+
+	void put(int value) throws IOException {
+	    if(buffer.remaining() < 4) {
+		flush();
+	    }
+	    buffer.putInt(value);
+	}
+
+	void flush() throws IOException {
+	    buffer.flip();
+	    while(buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	    buffer.clear();
+	}
+    }
+
+    /** @return the id of the first edge leaving node v */
+    public int outStart(int v) {
+	return outOffsets.get(v);
+    }
+
+    /** @return one more than the id of the last edge leaving node v */
+    public int outEnd(int v) {
+	return outOffsets.get(v + 1);
+    }
+
+    /** @return the first position in the incoming index for node v */
+    public int inStart(int v) {
+	return inOffsets.get(v);
+    }
+
+    /** @return one more than the last position in the incoming index for node v */
+    public int inEnd(int v) {
+	return inOffsets.get(v + 1);
+    }
+
+    /** @return the id of the edge at position i of the incoming index */
+    public int inEdge(int i) {
+	return inEdges.get(i);
+    }
+
+    /** @return the tail ("from" node) of edge e */
+    public int tail(int e) {
+	return edgeTail.get(e);
+    }
+
+    /** @return the head ("to" node) of edge e */
+    public int head(int e) {
+	return edgeHead.get(e);
+    }
+
+    /** @return the weight of edge e */
+    public int weight(int e) {
+	return edgeWeight.get(e);
+    }
+
+    /** @return the value of node v */
+    public int nodeValue(int v) {
+	return nodeValue.get(v);
+    }
+
+    /**
+     *  Returns a node of the graph given its id.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the node
+     */
+    public Node<Integer,Integer> node(int v) {
+	return new MappedNode(v);
+    }
+
+    /**
+     *  Returns the id of a node of this graph.
+     *
+     *  @param node : the node
+     *  @return the node's id, or -1 if it is not a node of this graph
+     */
+    public int indexOf(Node<Integer,Integer> node) {
+	if(node instanceof MappedGraph.MappedNode && ((MappedNode)node).owner() == this) {
+	    return ((MappedNode)node).id;
+	}
+	return -1;
+    }
+
+    public Set<Node<Integer,Integer>> getNodes() {
+	return new AbstractSet<Node<Integer,Integer>>() {
+	    public Iterator<Node<Integer,Integer>> iterator() {
+		return new RangeIterator<Node<Integer,Integer>>(0, n) {
+		    Node<Integer,Integer> get(int i) { return new MappedNode(i); }
+		};
+	    }
+	    public int size() {
+		return n;
+	    }
+	};
+    }
+
+    public Set<Edge<Integer,Integer>> getEdges() {
+	return edgeRange(0, m, false);
+    }
+
+    /**
+     *  Find a particular edge given its tail and head.
+     *  Performance: O(out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be found
+     *  @param head : the head ("to" node) of the edge to be found
+     *  @return the edge, or null if there is no such edge
+     */
+    public Edge<Integer,Integer> findEdge(Node<Integer,Integer> tail, Node<Integer,Integer> head) {
+	int t = indexOf(tail);
+	int h = indexOf(head);
+	if(t < 0 || h < 0) {
+	    return null;
+	}
+	for(int e = outStart(t); e < outEnd(t); e++) {
+	    if(edgeHead.get(e) == h) {
+		return new MappedEdge(e);
+	    }
+	}
+	return null;
+    }
+
+    public int numNodes() {
+	return n;
+    }
+
+    public int numEdges() {
+	return m;
+    }
+
+    public Node<Integer,Integer> addNode(Integer data) {
+	throw new Error("Mapped graph is read-only.");
+    }
+
+    public Edge<Integer,Integer> addEdge(Integer data, Node<Integer,Integer> tail, Node<Integer,Integer> head) {
+	throw new Error("Mapped graph is read-only.");
+    }
+
+    public void removeNode(Node<Integer,Integer> node) {
+	throw new Error("Mapped graph is read-only.");
+    }
+
+    public void removeEdge(Edge<Integer,Integer> edge) {
+	throw new Error("Mapped graph is read-only.");
+    }
+
+    public void removeEdge(Node<Integer,Integer> tail, Node<Integer,Integer> head) {
+	throw new Error("Mapped graph is read-only.");
+    }
+
+    /**
+     *  Returns a short description of the graph.  The full listing of a
+     *  graph too big for the heap would not fit in a string either.
+     *
+     *  @return a string describing the graph
+     */
+    public String toString() {
+	return "\nGraph (mapped): " + n + " nodes, " + m + " edges\n";
+    }
+
+    /**
+     *  Verifies that the offset sections start at 0, never decrease and
+     *  end at m, and that they agree with the tail, head and incoming
+     *  edge sections.  open() has already done this once.
+     *  Performance: O(n + e)
+     *
+     *  @return true if consistent, false otherwise
+     */
+    public boolean validateGraph() {
+	return problem() == null;
+    }
+
+    /**
+     *  Checks the sections against each other, reading each index only
+     *  after the values it is checked against are known to be in range.
+     *
+     *  @return a description of the first inconsistency, or null
+     */
+    private String problem() {
+	String offsets = offsetProblem(outOffsets, "Outgoing");
+	if(offsets == null) {
+	    offsets = offsetProblem(inOffsets, "Incoming");
+	}
+	if(offsets != null) {
+	    return offsets;
+	}
+	for(int v = 0; v < n; v++) {
+	    for(int e = outStart(v); e < outEnd(v); e++) {
+		if(edgeTail.get(e) != v) {
+		    return "Edge " + e + " is not listed under its tail.";
+		}
+		if(edgeHead.get(e) < 0 || edgeHead.get(e) >= n) {
+		    return "Edge refers to a missing node.";
+		}
+	    }
+	    for(int i = inStart(v); i < inEnd(v); i++) {
+		int e = inEdges.get(i);
+		if(e < 0 || e >= m || edgeHead.get(e) != v) {
+		    return "Incoming edge " + i + " is not an edge into its node.";
+		}
+	    }
+	}
+	return null;
+    }
+
+    /**
+     *  @return a description of what is wrong with an offset section, or null
+     */
+    private String offsetProblem(IntBuffer offsets, String kind) {
+	if(offsets.get(0) != 0 || offsets.get(n) != m) {
+	    return kind + " offsets do not run from 0 to " + m + ".";
+	}
+	for(int v = 0; v < n; v++) {
+	    if(offsets.get(v) > offsets.get(v + 1)) {
+		return kind + " offsets decrease at node " + v + ".";
+	    }
+	}
+	return null;
+    }
+
+    /**
+     *  The edges with ids (or, if indirect, incoming index positions)
+     *  in [from, to).
+     */
+    private Set<Edge<Integer,Integer>> edgeRange(final int from, final int to, final boolean indirect) {
+	return new AbstractSet<Edge<Integer,Integer>>() {
+	    public Iterator<Edge<Integer,Integer>> iterator() {
+		return new RangeIterator<Edge<Integer,Integer>>(from, to) {
+		    Edge<Integer,Integer> get(int i) { return new MappedEdge(indirect ? inEdges.get(i) : i); }
+		};
+	    }
+	    public int size() {
+		return to - from;
+	    }
+	};
+    }
+
+    /**
+     *  Iterates over a range of ints, producing an object for each one.
+     */
+    private abstract static class RangeIterator<T> implements Iterator<T> {
+	private int next;
+	private final int end;
+
+	RangeIterator(int from, int to) {
+	    this.next = from;
+	    this.end = to;
+	}
+
+	abstract T get(int i);
+
+	public boolean hasNext() {
+	    return next < end;
+	}
+
+	public T next() {
+	    if(next >= end) {
+		throw new NoSuchElementException();
+	    }
+	    return get(next++);
+	}
+    }
+
+    /**
+     *  A node of the mapped graph; only its id is held on the heap.
+     */
+    private class MappedNode implements Graph.Node<Integer,Integer> {
+	private final int id;
+
+	MappedNode(int id) {
+	    this.id = id;
+	}
+
+	MappedGraph owner() {
+	    return MappedGraph.this;
+	}
+
+	public Integer getData() {
+	    return nodeValue.get(id);
+	}
+
+	public void setData(Integer data) {
+	    throw new Error("Mapped graph is read-only.");
+	}
+
+	public Set<Graph.Edge<Integer,Integer>> getOutgoingEdges() {
+	    return edgeRange(outStart(id), outEnd(id), false);
+	}
+
+	public Set<Graph.Edge<Integer,Integer>> getIncomingEdges() {
+	    return edgeRange(inStart(id), inEnd(id), true);
+	}
+
+	public boolean equals(Graph.Node<Integer,Integer> that) {
+	    return (that instanceof MappedGraph.MappedNode) && ((MappedNode)that).owner() == MappedGraph.this
+		&& ((MappedNode)that).id == id;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Graph.Node) && this.equals((Graph.Node<Integer,Integer>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return Integer.toString(nodeValue.get(id));
+	}
+    }
+
+    /**
+     *  An edge of the mapped graph; only its id is held on the heap.
+     */
+    private class MappedEdge implements Graph.Edge<Integer,Integer> {
+	private final int id;
+
+	MappedEdge(int id) {
+	    this.id = id;
+	}
+
+	MappedGraph owner() {
+	    return MappedGraph.this;
+	}
+
+	public Integer getData() {
+	    return edgeWeight.get(id);
+	}
+
+	public void setData(Integer data) {
+	    throw new Error("Mapped graph is read-only.");
+	}
+
+	public Graph.Node<Integer,Integer> getTail() {
+	    return new MappedNode(edgeTail.get(id));
+	}
+
+	public void setTail(Graph.Node<Integer,Integer> node) {
+	    throw new Error("Mapped graph is read-only.");
+	}
+
+	public Graph.Node<Integer,Integer> getHead() {
+	    return new MappedNode(edgeHead.get(id));
+	}
+
+	public void setHead(Graph.Node<Integer,Integer> node) {
+	    throw new Error("Mapped graph is read-only.");
+	}
+
+	public boolean equals(Graph.Edge<Integer,Integer> that) {
+	    return (that instanceof MappedGraph.MappedEdge) && ((MappedEdge)that).owner() == MappedGraph.this
+		&& ((MappedEdge)that).id == id;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Graph.Edge) && this.equals((Graph.Edge<Integer,Integer>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return Integer.toString(edgeWeight.get(id));
+	}
+    }
+}
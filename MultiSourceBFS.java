@@ -0,0 +1,203 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ *  Runs breadth-first searches from many sources over a GraphSnapshot at
+ *  once.  Sources are taken 64 at a time, and each node gets one long
+ *  per batch whose bit i says whether source i has reached it, so a
+ *  single scan of a node's outgoing edges advances all 64 searches
+ *  together: a node's bits are propagated to each head with one AND-NOT
+ *  and one OR.  Batches are independent and run in parallel.
+ *
+ *  Typical use:
+ *
+ *      MultiSourceBFS<String,Integer> bfs = new MultiSourceBFS<String,Integer>(graph.snapshot());
+ *      int[][] hops = bfs.distances(sources);
+ *      // hops[i][v] is the number of edges from sources[i] to v, or -1
+ */
+public class MultiSourceBFS<N,E> {
+    /** The number of sources searched together. */
+    public static final int BATCH = 64;
+
+    /** The graph searched. */
+    private final GraphSnapshot<N,E> snapshot;
+
+    /**
+     *  Create a search over a snapshot.
+     *
+     *  @param snapshot : the graph to search
+     */
+    public MultiSourceBFS(GraphSnapshot<N,E> snapshot) {
+	this.snapshot = snapshot;
+    }
+
+    /**
+     *  Returns the hop distance from each source to every node.
+     *  Performance: O(ceil(k/64) * (levels * n + e)), divided among the
+     *  available cores
+     *
+     *  @param sources : the ids of the source nodes
+     *  @return an array whose i-th row holds, for every node id, the
+     *          number of edges on a shortest path from sources[i], or -1
+     *          if the node cannot be reached
+     */
+    public int[][] distances(int[] sources) {
+	int[][] result = new int[sources.length][];
+	for(int i = 0; i < sources.length; i++) {
+	    result[i] = new int[snapshot.numNodes()];
+	    Arrays.fill(result[i], -1);
+	}
+	run(sources, result, null);
+	return result;
+    }
+
+    /**
+     *  Returns the hop distance from each source node to every node.
+     *
+     *  @param sources : the source nodes, of the snapshot or of the
+     *                   graph it was taken from
+     *  @return as for distances(int[])
+     *  @throws Error if a source does not belong to the snapshot
+     */
+    public int[][] distances(List<? extends Graph.Node<N,E>> sources) {
+	return distances(indices(sources));
+    }
+
+    /**
+     *  Returns the set of nodes reachable from each source.  This skips
+     *  recording distances, so it needs no per-source int arrays.
+     *  Performance: O(ceil(k/64) * (levels * n + e)), divided among the
+     *  available cores
+     *
+     *  @param sources : the ids of the source nodes
+     *  @return an array whose i-th set holds the ids of the nodes
+     *          reachable from sources[i], including sources[i] itself
+     */
+    public BitSet[] reachable(int[] sources) {
+	BitSet[] result = new BitSet[sources.length];
+	for(int i = 0; i < sources.length; i++) {
+	    result[i] = new BitSet(snapshot.numNodes());
+	}
+	run(sources, null, result);
+	return result;
+    }
+
+    /**
+     *  Returns the set of nodes reachable from each source node.
+     *
+     *  @param sources : the source nodes, of the snapshot or of the
+     *                   graph it was taken from
+     *  @return as for reachable(int[])
+     *  @throws Error if a source does not belong to the snapshot
+     */
+    public BitSet[] reachable(List<? extends Graph.Node<N,E>> sources) {
+	return reachable(indices(sources));
+    }
+
+    private int[] indices(List<? extends Graph.Node<N,E>> sources) {
+	int[] ids = new int[sources.size()];
+	for(int i = 0; i < ids.length; i++) {
+	    ids[i] = snapshot.indexOf(sources.get(i));
+	    if(ids[i] < 0) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	}
+	return ids;
+    }
+
+    /**
+     *  Splits the sources into batches and searches them in parallel,
+     *  filling in whichever of the result arrays is given.
+     */
+    private void run(final int[] sources, final int[][] distances, final BitSet[] reachable) {
+	for(int s : sources) {
+	    if(s < 0 || s >= snapshot.numNodes()) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	}
+	List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	for(int first = 0; first < sources.length; first += BATCH) {
+	    final int from = first;
+	    final int to = Math.min(first + BATCH, sources.length);
+	    tasks.add(new Callable<Void>() {
+		    public Void call() {
+			search(sources, from, to, distances, reachable);
+			return null;
+		    }
+		});
+	}
+	if(tasks.size() == 1) {
+	    search(sources, 0, sources.length, distances, reachable);
+	    return;
+	}
+	for(Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+	    try {
+		future.get();
+	    } catch(ExecutionException e) {
+		throw new Error(e.getCause());
+	    } catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new Error(e);
+	    }
+	}
+    }
+
+    /**
+     *  Searches from sources[from] to sources[to - 1] together, source
+     *  from + i owning bit i.
+     */
+    private void search(int[] sources, int from, int to, int[][] distances, BitSet[] reachable) {
+	int n = snapshot.numNodes();
+	long[] seen = new long[n];
+	long[] visit = new long[n];
+	long[] visitNext = new long[n];
+	for(int i = from; i < to; i++) {
+	    int s = sources[i];
+	    long bit = 1L << (i - from);
+	    seen[s] |= bit;
+	    visit[s] |= bit;
+	    record(s, bit, 0, from, distances, reachable);
+	}
+	boolean active = true;
+	for(int level = 1; active; level++) {
+	    active = false;
+	    for(int v = 0; v < n; v++) {
+		long frontier = visit[v];
+		if(frontier == 0) {
+		    continue;
+		}
+		for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+		    int w = snapshot.head(e);
+		    long fresh = frontier & ~seen[w];
+		    if(fresh != 0) {
+			seen[w] |= fresh;
+			visitNext[w] |= fresh;
+			record(w, fresh, level, from, distances, reachable);
+			active = true;
+		    }
+		}
+	    }
+	    long[] swap = visit;
+	    visit = visitNext;
+	    visitNext = swap;
+	    Arrays.fill(visitNext, 0L);
+	}
+    }
+
+    /**
+     *  Notes that the sources whose bits are set have reached node w at
+     *  the given distance.
+     */
+    private static void record(int w, long bits, int level, int from, int[][] distances, BitSet[] reachable) {
+	while(bits != 0) {
+	    int i = from + Long.numberOfTrailingZeros(bits);
+	    if(distances != null) {
+		distances[i][w] = level;
+	    }
+	    if(reachable != null) {
+		reachable[i].set(w);
+	    }
+	    bits &= bits - 1;
+	}
+    }
+}
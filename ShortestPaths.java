@@ -0,0 +1,277 @@
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ *  Dijkstra's shortest paths over a GraphSnapshot whose edges carry
+ *  non-negative integer weights.  Weights are read out of the edge data
+ *  once, into an int array, when the engine is created.  Each query
+ *  runs on an IndexedIntHeap and on distance and parent arrays that are
+ *  allocated once and reused: every entry is stamped with the query
+ *  that wrote it, so starting a query costs nothing and a query that
+ *  settles only a few nodes touches only those.  Queries allocate
+ *  nothing.
+ *
+ *  Three kinds of query are offered: single-pair (stops as soon as the
+ *  target is settled), single-source (settles everything reachable),
+ *  and k-nearest (stops after k nodes are settled).  After a query,
+ *  distanceTo, parentEdge and pathTo describe the nodes it settled.
+ *
+ *  An engine is not thread-safe; give each thread its own.
+ */
+public class ShortestPaths<N,E> {
+    /** The graph searched. */
+    private final GraphSnapshot<N,E> snapshot;
+    /** The weight of each edge. */
+    private final int[] weight;
+    /** The tentative or settled distance of each node reached. */
+    private final long[] distance;
+    /** The last edge on the best path to each node reached, or -1 for the source. */
+    private final int[] parent;
+    /** The query that last reached each node. */
+    private final int[] reached;
+    /** The query that last settled each node. */
+    private final int[] settled;
+    /** The nodes reached but not settled. */
+    private final IndexedIntHeap heap;
+    /** The number of the current query. */
+    private int query;
+
+    /**
+     *  Create an engine for a snapshot whose edge data are the weights.
+     *
+     *  @param snapshot : the graph to search
+     *  @return the engine
+     *  @throws Error if an edge has a negative or null weight
+     */
+    public static <N> ShortestPaths<N,Integer> of(GraphSnapshot<N,Integer> snapshot) {
+	return new ShortestPaths<N,Integer>(snapshot, new ToIntFunction<Integer>() {
+		public int applyAsInt(Integer data) {
+		    if(data == null) {
+			throw new Error("Edge has no weight.");
+		    }
+		    return data;
+		}
+	    });
+    }
+
+    /**
+     *  Create an engine for a snapshot.
+     *  Performance: O(n + e)
+     *
+     *  @param snapshot : the graph to search
+     *  @param weigher  : gives the weight of an edge from its data
+     *  @throws Error if an edge has a negative weight
+     */
+    public ShortestPaths(GraphSnapshot<N,E> snapshot, ToIntFunction<? super E> weigher) {
+	this.snapshot = snapshot;
+	int n = snapshot.numNodes();
+	int m = snapshot.numEdges();
+	this.weight = new int[m];
+	for(int e = 0; e < m; e++) {
+	    weight[e] = weigher.applyAsInt(snapshot.edgeData(e));
+	    if(weight[e] < 0) {
+		throw new Error("Negative edge weight.");
+	    }
+	}
+	this.distance = new long[n];
+	this.parent = new int[n];
+	this.reached = new int[n];
+	this.settled = new int[n];
+	this.heap = new IndexedIntHeap(n);
+    }
+
+    /**
+     *  Returns the snapshot this engine searches.
+     *
+     *  @return the snapshot
+     */
+    public GraphSnapshot<N,E> snapshot() {
+	return snapshot;
+    }
+
+    /**
+     *  Finds a shortest path from source to target, settling only the
+     *  nodes closer to source than target.
+     *  Performance: O((n' + e') log n') for the n' nodes and e' edges seen
+     *
+     *  @param source : the id of the starting node
+     *  @param target : the id of the node sought
+     *  @return the length of the path, or -1 if there is none
+     *  @throws Error if either id is not that of a node
+     */
+    public long distance(int source, int target) {
+	if(target < 0 || target >= distance.length) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	start(source);
+	while(!heap.isEmpty()) {
+	    int v = settleNext();
+	    if(v == target) {
+		return distance[v];
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     *  Finds shortest paths from source to every node it can reach.
+     *  Performance: O((n + e) log n)
+     *
+     *  @param source : the id of the starting node
+     *  @return the number of nodes settled
+     */
+    public int fromSource(int source) {
+	start(source);
+	int count = 0;
+	while(!heap.isEmpty()) {
+	    settleNext();
+	    count++;
+	}
+	return count;
+    }
+
+    /**
+     *  Finds the k nodes nearest to source (source itself first), in
+     *  order of distance.
+     *  Performance: O((k + e') log n) for the e' edges leaving them; the
+     *  heap holds every node those edges reach, not just k
+     *
+     *  @param source  : the id of the starting node
+     *  @param k       : the number of nodes wanted
+     *  @param nearest : filled with the ids of the nodes found; must
+     *                   have room for k
+     *  @return the number of nodes found, less than k only if fewer are
+     *          reachable
+     */
+    public int nearest(int source, int k, int[] nearest) {
+	start(source);
+	int count = 0;
+	while(count < k && !heap.isEmpty()) {
+	    nearest[count++] = settleNext();
+	}
+	return count;
+    }
+
+    /**
+     *  Returns the distance to a node settled by the last query.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return its distance from the source, or -1 if the last query did
+     *          not settle it
+     */
+    public long distanceTo(int v) {
+	return (settled[v] == query) ? distance[v] : -1;
+    }
+
+    /**
+     *  Returns the last edge on the shortest path found to a node
+     *  settled by the last query.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the edge id, or -1 if v is the source or was not settled
+     */
+    public int parentEdge(int v) {
+	return (settled[v] == query) ? parent[v] : -1;
+    }
+
+    /**
+     *  Returns the edges of the shortest path found to a node settled by
+     *  the last query, from the source onward.
+     *  Performance: O(length of the path)
+     *
+     *  @param v : a node id
+     *  @return the edge ids, or null if the last query did not settle v
+     */
+    public int[] pathTo(int v) {
+	if(settled[v] != query) {
+	    return null;
+	}
+	int length = 0;
+	for(int w = v; parent[w] >= 0; w = snapshot.tail(parent[w])) {
+	    length++;
+	}
+	int[] path = new int[length];
+	for(int w = v; parent[w] >= 0; w = snapshot.tail(parent[w])) {
+	    path[--length] = parent[w];
+	}
+	return path;
+    }
+
+    /**
+     *  Finds a shortest path between two nodes.
+     *
+     *  @param source : the starting node, of the snapshot or of the
+     *                  graph it was taken from
+     *  @param target : the node sought
+     *  @return the edges of the path, of the graph the snapshot was
+     *          taken from, or null if there is no path
+     *  @throws Error if either node does not belong to the snapshot
+     */
+    public List<Graph.Edge<N,E>> shortestPath(Graph.Node<N,E> source, Graph.Node<N,E> target) {
+	int t = indexOf(target);
+	if(distance(indexOf(source), t) < 0) {
+	    return null;
+	}
+	List<Graph.Edge<N,E>> edges = new ArrayList<Graph.Edge<N,E>>();
+	for(int e : pathTo(t)) {
+	    edges.add(snapshot.sourceEdge(e));
+	}
+	return edges;
+    }
+
+    private int indexOf(Graph.Node<N,E> node) {
+	int v = snapshot.indexOf(node);
+	if(v < 0) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	return v;
+    }
+
+    /**
+     *  Begins a new query from a source.
+     */
+    private void start(int source) {
+	if(source < 0 || source >= distance.length) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	heap.clear();
+	query++;
+	if(query == 0) {
+	    // the stamps have wrapped around; forget them all
+	    Arrays.fill(reached, 0);
+	    Arrays.fill(settled, 0);
+	    query = 1;
+	}
+	reached[source] = query;
+	distance[source] = 0;
+	parent[source] = -1;
+	heap.offer(source, 0);
+    }
+
+    /**
+     *  Settles the nearest unsettled node and relaxes its edges.
+     *
+     *  @return the node settled
+     */
+    private int settleNext() {
+	int v = heap.poll();
+	settled[v] = query;
+	long d = distance[v];
+	for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+	    int w = snapshot.head(e);
+	    if(settled[w] == query) {
+		continue;
+	    }
+	    long candidate = d + weight[e];
+	    if(reached[w] != query || candidate < distance[w]) {
+		reached[w] = query;
+		distance[w] = candidate;
+		parent[w] = e;
+		heap.offer(w, candidate);
+	    }
+	}
+	return v;
+    }
+}
@@ -0,0 +1,592 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  The strongly connected components of a graph: the largest sets of
+ *  nodes in which every node can reach every other.  Each node of the
+ *  graph's snapshot gets a component number, and the components are
+ *  numbered in reverse topological order, so that every edge between
+ *  two components goes from a higher number to a lower one.
+ *
+ *  of() uses Tarjan's algorithm; parallel() first trims away the nodes
+ *  with no incoming or no outgoing edges left (each its own component)
+ *  and then splits the rest with forward-backward reachability: the
+ *  nodes that a pivot both reaches and is reached from form its
+ *  component, and the nodes reached only forward, only backward, or
+ *  not at all hold the other components and are split in parallel.
+ *  Both keep their searches in explicit stacks and queues rather than
+ *  on the call stack, so chains of millions of nodes are no problem.
+ *
+ *  On top of the components, isAcyclic() detects cycles,
+ *  topologicalOrder() sorts an acyclic graph, and condensation() builds
+ *  the DAG of components as a graph of its own.
+ */
+public class StronglyConnectedComponents<N,E> {
+    /** Parts smaller than this are finished by Tarjan's algorithm on one thread. */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 10;
+
+    /** The graph whose components these are. */
+    private final GraphSnapshot<N,E> snapshot;
+    /** The component of each node. */
+    private final int[] component;
+    /** The number of components. */
+    private final int numComponents;
+    /** The nodes of each component, built when first asked for. */
+    private int[][] members;
+
+    private StronglyConnectedComponents(GraphSnapshot<N,E> snapshot, int[] component, int numComponents) {
+	this.snapshot = snapshot;
+	this.component = component;
+	this.numComponents = numComponents;
+    }
+
+    /**
+     *  Finds the strongly connected components of a graph with Tarjan's
+     *  algorithm.
+     *  Performance: O(n + e)
+     *
+     *  @param graph : the graph, which is frozen with GraphSnapshot.of
+     *  @return the components
+     */
+    public static <N,E> StronglyConnectedComponents<N,E> of(Graph<N,E> graph) {
+	GraphSnapshot<N,E> snapshot = GraphSnapshot.of(graph);
+	int n = snapshot.numNodes();
+	int[] component = new int[n];
+	int[] all = new int[n];
+	for(int v = 0; v < n; v++) {
+	    all[v] = v;
+	}
+	int count = new Tarjan(snapshot, null, 0, null).run(all, component, new AtomicInteger());
+	return new StronglyConnectedComponents<N,E>(snapshot, component, count);
+    }
+
+    /**
+     *  Finds the strongly connected components of a graph by trimming
+     *  and parallel forward-backward reachability, on the common pool.
+     *  Performance: O(n + e) expected per level of splitting, divided
+     *  among the available cores
+     *
+     *  @param graph : the graph, which is frozen with GraphSnapshot.of
+     *  @return the components
+     */
+    public static <N,E> StronglyConnectedComponents<N,E> parallel(Graph<N,E> graph) {
+	GraphSnapshot<N,E> snapshot = GraphSnapshot.of(graph);
+	int n = snapshot.numNodes();
+	int[] component = new int[n];
+	AtomicInteger counter = new AtomicInteger();
+	int[] rest = trim(snapshot, component, counter);
+	if(rest.length > 0) {
+	    int[] part = new int[n];
+	    ForkJoinPool.commonPool().invoke(new SplitTask(snapshot, rest, 1, part, component, counter,
+							   new AtomicInteger(1), new byte[n], new int[n]));
+	}
+	int count = counter.get();
+	renumber(snapshot, component, count);
+	return new StronglyConnectedComponents<N,E>(snapshot, component, count);
+    }
+
+    /**
+     *  Returns the snapshot the components are numbered over.
+     *
+     *  @return the snapshot
+     */
+    public GraphSnapshot<N,E> snapshot() {
+	return snapshot;
+    }
+
+    /**
+     *  Returns the number of components.
+     *  Performance: O(1)
+     *
+     *  @return the number of components
+     */
+    public int numComponents() {
+	return numComponents;
+    }
+
+    /**
+     *  Returns the component of a node.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the component number
+     */
+    public int componentOf(int v) {
+	return component[v];
+    }
+
+    /**
+     *  Returns the component of a node.
+     *  Performance: O(1) expected
+     *
+     *  @param node : a node of the snapshot or of the graph it was taken from
+     *  @return the component number
+     *  @throws Error if the node does not belong to the snapshot
+     */
+    public int componentOf(Graph.Node<N,E> node) {
+	int v = snapshot.indexOf(node);
+	if(v < 0) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	return component[v];
+    }
+
+    /**
+     *  Returns the nodes of a component.
+     *  Performance: O(1), after O(n) the first time
+     *
+     *  @param c : a component number
+     *  @return the ids of its nodes; the array must not be changed
+     */
+    public int[] members(int c) {
+	if(members == null) {
+	    members = group(component, numComponents);
+	}
+	return members[c];
+    }
+
+    /**
+     *  Returns the component numbers of every node.
+     *  Performance: O(1)
+     *
+     *  @return the component of each node id; the array must not be changed
+     */
+    int[] components() {
+	return component;
+    }
+
+    /**
+     *  Is the graph free of cycles?  It is if every component is a single
+     *  node and no edge is a self-loop.
+     *  Performance: O(e)
+     *
+     *  @return true if the graph has no cycle
+     */
+    public boolean isAcyclic() {
+	if(numComponents != snapshot.numNodes()) {
+	    return false;
+	}
+	for(int e = 0; e < snapshot.numEdges(); e++) {
+	    if(snapshot.tail(e) == snapshot.head(e)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     *  Returns the nodes of an acyclic graph in topological order: every
+     *  edge goes from a node earlier in the order to one later in it.
+     *  Performance: O(n + e)
+     *
+     *  @return the node ids in topological order
+     *  @throws Error if the graph has a cycle
+     */
+    public int[] topologicalOrder() {
+	if(!isAcyclic()) {
+	    throw new Error("Graph has a cycle.");
+	}
+	// each node is its own component, numbered in reverse topological order
+	int[] order = new int[numComponents];
+	for(int v = 0; v < order.length; v++) {
+	    order[numComponents - 1 - component[v]] = v;
+	}
+	return order;
+    }
+
+    /**
+     *  Builds the condensation of the graph: a DAG with one node per
+     *  component, in component order, whose data is the list of the
+     *  component's nodes (of the graph the snapshot was taken from), and
+     *  one edge for each pair of components joined by an edge, whose
+     *  data is the number of edges joining them.
+     *  Performance: O(n + e)
+     *
+     *  @return the condensation
+     */
+    public GraphImplementation<List<Graph.Node<N,E>>, Integer> condensation() {
+	GraphBuilder<List<Graph.Node<N,E>>, Integer> builder
+	    = new GraphBuilder<List<Graph.Node<N,E>>, Integer>(numComponents, numComponents);
+	for(int c = 0; c < numComponents; c++) {
+	    int[] nodes = members(c);
+	    List<Graph.Node<N,E>> list = new ArrayList<Graph.Node<N,E>>(nodes.length);
+	    for(int v : nodes) {
+		list.add(snapshot.sourceNode(v));
+	    }
+	    builder.addNode(list);
+	}
+	int[] lastSeen = new int[numComponents];
+	Arrays.fill(lastSeen, -1);
+	int[] joins = new int[numComponents];
+	int[] found = new int[numComponents];
+	for(int c = 0; c < numComponents; c++) {
+	    int count = 0;
+	    for(int v : members(c)) {
+		for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+		    int d = component[snapshot.head(e)];
+		    if(d == c) {
+			continue;
+		    }
+		    if(lastSeen[d] != c) {
+			lastSeen[d] = c;
+			joins[d] = 0;
+			found[count++] = d;
+		    }
+		    joins[d]++;
+		}
+	    }
+	    for(int i = 0; i < count; i++) {
+		builder.addEdge(joins[found[i]], c, found[i]);
+	    }
+	}
+	return builder.build();
+    }
+
+    /**
+     *  Groups the indices of an array by their values, which run from 0
+     *  to count - 1.
+     */
+    static int[][] group(int[] values, int count) {
+	int[] size = new int[count];
+	for(int value : values) {
+	    size[value]++;
+	}
+	int[][] groups = new int[count][];
+	for(int g = 0; g < count; g++) {
+	    groups[g] = new int[size[g]];
+	    size[g] = 0;
+	}
+	for(int i = 0; i < values.length; i++) {
+	    groups[values[i]][size[values[i]]++] = i;
+	}
+	return groups;
+    }
+
+    /**
+     *  Repeatedly removes the nodes with no incoming or no outgoing edge
+     *  from another remaining node, making each its own component.
+     *
+     *  @return the nodes left
+     */
+    private static int[] trim(GraphSnapshot<?,?> snapshot, int[] component, AtomicInteger counter) {
+	int n = snapshot.numNodes();
+	int[] in = new int[n];
+	int[] out = new int[n];
+	for(int e = 0; e < snapshot.numEdges(); e++) {
+	    if(snapshot.tail(e) != snapshot.head(e)) {
+		out[snapshot.tail(e)]++;
+		in[snapshot.head(e)]++;
+	    }
+	}
+	boolean[] trimmed = new boolean[n];
+	int[] queue = new int[n];
+	int tail = 0;
+	for(int v = 0; v < n; v++) {
+	    if(in[v] == 0 || out[v] == 0) {
+		trimmed[v] = true;
+		queue[tail++] = v;
+	    }
+	}
+	for(int head = 0; head < tail; head++) {
+	    int v = queue[head];
+	    component[v] = counter.getAndIncrement();
+	    for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+		int w = snapshot.head(e);
+		if(w != v && !trimmed[w] && --in[w] == 0) {
+		    trimmed[w] = true;
+		    queue[tail++] = w;
+		}
+	    }
+	    for(int i = snapshot.inStart(v), end = snapshot.inEnd(v); i < end; i++) {
+		int u = snapshot.inSource(i);
+		if(u != v && !trimmed[u] && --out[u] == 0) {
+		    trimmed[u] = true;
+		    queue[tail++] = u;
+		}
+	    }
+	}
+	int[] rest = new int[n - tail];
+	int k = 0;
+	for(int v = 0; v < n; v++) {
+	    if(!trimmed[v]) {
+		rest[k++] = v;
+	    }
+	}
+	return rest;
+    }
+
+    /**
+     *  Renumbers components found in no particular order so that every
+     *  edge between two components goes from a higher number to a lower
+     *  one, by numbering them in the post-order of a depth-first search
+     *  of the condensation.
+     */
+    private static void renumber(GraphSnapshot<?,?> snapshot, int[] component, int count) {
+	int[][] members = group(component, count);
+	int[] number = new int[count];
+	Arrays.fill(number, -1);
+	int[] frameComponent = new int[count];
+	int[] frameMember = new int[count];
+	int[] frameEdge = new int[count];
+	int next = 0;
+	boolean[] started = new boolean[count];
+	for(int root = 0; root < count; root++) {
+	    if(started[root]) {
+		continue;
+	    }
+	    started[root] = true;
+	    int top = 0;
+	    frameComponent[0] = root;
+	    frameMember[0] = 0;
+	    frameEdge[0] = -1;
+	    while(top >= 0) {
+		int c = frameComponent[top];
+		int[] nodes = members[c];
+		int d = -1;
+		// advance this frame's cursor to the next edge leaving c
+		while(d < 0 && frameMember[top] < nodes.length) {
+		    int v = nodes[frameMember[top]];
+		    int e = (frameEdge[top] < 0) ? snapshot.outStart(v) : frameEdge[top];
+		    if(e < snapshot.outEnd(v)) {
+			frameEdge[top] = e + 1;
+			int w = component[snapshot.head(e)];
+			if(!started[w]) {
+			    d = w;
+			}
+		    } else {
+			frameMember[top]++;
+			frameEdge[top] = -1;
+		    }
+		}
+		if(d >= 0) {
+		    started[d] = true;
+		    top++;
+		    frameComponent[top] = d;
+		    frameMember[top] = 0;
+		    frameEdge[top] = -1;
+		} else {
+		    number[c] = next++;
+		    top--;
+		}
+	    }
+	}
+	for(int v = 0; v < component.length; v++) {
+	    component[v] = number[component[v]];
+	}
+    }
+
+    /**
+     *  Tarjan's algorithm over the nodes of one part of a snapshot, kept
+     *  in explicit frames rather than recursion.  Components are
+     *  completed, and numbered, in reverse topological order.
+     */
+    private static class Tarjan {
+	private final GraphSnapshot<?,?> snapshot;
+	/** The part of each node, or null to search the whole graph. */
+	private final int[] part;
+	/** The part searched. */
+	private final int partId;
+	/** The position of each node of the part among its nodes. */
+	private final int[] local;
+
+	Tarjan(GraphSnapshot<?,?> snapshot, int[] part, int partId, int[] local) {
+	    this.snapshot = snapshot;
+	    this.part = part;
+	    this.partId = partId;
+	    this.local = local;
+	}
+
+	/**
+	 *  Numbers the components among the given nodes, taking numbers
+	 *  from counter.
+	 *
+	 *  @return the number of components found
+	 */
+	int run(int[] nodes, int[] component, AtomicInteger counter) {
+	    int size = nodes.length;
+	    // positions in nodes, so the arrays below fit the part
+	    if(part != null) {
+		for(int i = 0; i < size; i++) {
+		    local[nodes[i]] = i;
+		}
+	    }
+	    int[] index = new int[size];
+	    int[] low = new int[size];
+	    Arrays.fill(index, -1);
+	    int[] stack = new int[size];
+	    int stackSize = 0;
+	    boolean[] onStack = new boolean[size];
+	    int[] frameNode = new int[size];
+	    int[] frameEdge = new int[size];
+	    int nextIndex = 0;
+	    int found = 0;
+	    for(int r = 0; r < size; r++) {
+		if(index[r] >= 0) {
+		    continue;
+		}
+		int top = 0;
+		frameNode[0] = r;
+		frameEdge[0] = snapshot.outStart(nodes[r]);
+		index[r] = low[r] = nextIndex++;
+		stack[stackSize++] = r;
+		onStack[r] = true;
+		while(top >= 0) {
+		    int v = frameNode[top];
+		    int e = frameEdge[top];
+		    if(e < snapshot.outEnd(nodes[v])) {
+			frameEdge[top] = e + 1;
+			int head = snapshot.head(e);
+			int w;
+			if(part == null) {
+			    w = head;
+			} else if(part[head] != partId) {
+			    continue;
+			} else {
+			    w = local[head];
+			}
+			if(index[w] < 0) {
+			    index[w] = low[w] = nextIndex++;
+			    stack[stackSize++] = w;
+			    onStack[w] = true;
+			    top++;
+			    frameNode[top] = w;
+			    frameEdge[top] = snapshot.outStart(nodes[w]);
+			} else if(onStack[w]) {
+			    low[v] = Math.min(low[v], index[w]);
+			}
+			continue;
+		    }
+		    // v is finished
+		    if(low[v] == index[v]) {
+			int c = counter.getAndIncrement();
+			int w;
+			do {
+			    w = stack[--stackSize];
+			    onStack[w] = false;
+			    component[nodes[w]] = c;
+			} while(w != v);
+			found++;
+		    }
+		    top--;
+		    if(top >= 0) {
+			int parent = frameNode[top];
+			low[parent] = Math.min(low[parent], low[v]);
+		    }
+		}
+	    }
+	    return found;
+	}
+    }
+
+    /**
+     *  Splits one part of the graph, known to be a union of components,
+     *  by forward-backward reachability from a pivot, and forks the
+     *  three parts left over.
+     */
+    private static class SplitTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	/** Flag bits for the reachability searches. */
+	private static final byte FORWARD = 1, BACKWARD = 2;
+
+	private final GraphSnapshot<?,?> snapshot;
+	/** The nodes of the part. */
+	private final int[] nodes;
+	/** The number of the part. */
+	private final int partId;
+	/** The part of each node; each task writes only its own nodes. */
+	private final int[] part;
+	private final int[] component;
+	private final AtomicInteger counter;
+	private final AtomicInteger parts;
+	/** Search flags of each node; each task writes only its own nodes. */
+	private final byte[] flags;
+	/** Scratch positions for Tarjan; each task writes only its own nodes. */
+	private final int[] local;
+
+	SplitTask(GraphSnapshot<?,?> snapshot, int[] nodes, int partId, int[] part, int[] component,
+		  AtomicInteger counter, AtomicInteger parts, byte[] flags, int[] local) {
+	    this.snapshot = snapshot;
+	    this.nodes = nodes;
+	    this.partId = partId;
+	    this.part = part;
+	    this.component = component;
+	    this.counter = counter;
+	    this.parts = parts;
+	    this.flags = flags;
+	    this.local = local;
+	    for(int v : nodes) {
+		part[v] = partId;
+	    }
+	}
+
+	protected void compute() {
+	    if(nodes.length < SEQUENTIAL_THRESHOLD) {
+		new Tarjan(snapshot, part, partId, local).run(nodes, component, counter);
+		return;
+	    }
+	    int pivot = nodes[ThreadLocalRandom.current().nextInt(nodes.length)];
+	    search(pivot, FORWARD);
+	    search(pivot, BACKWARD);
+	    int[] sizes = new int[3];
+	    for(int v : nodes) {
+		int f = flags[v];
+		if(f != (FORWARD | BACKWARD)) {
+		    sizes[f]++;
+		}
+	    }
+	    int[][] rest = { new int[sizes[0]], new int[sizes[FORWARD]], new int[sizes[BACKWARD]] };
+	    Arrays.fill(sizes, 0);
+	    int c = counter.getAndIncrement();
+	    for(int v : nodes) {
+		int f = flags[v];
+		flags[v] = 0;
+		if(f == (FORWARD | BACKWARD)) {
+		    component[v] = c;
+		    part[v] = 0;
+		} else {
+		    rest[f][sizes[f]++] = v;
+		}
+	    }
+	    List<SplitTask> tasks = new ArrayList<SplitTask>(3);
+	    for(int[] group : rest) {
+		if(group.length > 0) {
+		    tasks.add(new SplitTask(snapshot, group, parts.incrementAndGet(), part, component,
+					    counter, parts, flags, local));
+		}
+	    }
+	    invokeAll(tasks);
+	}
+
+	/**
+	 *  Flags the nodes of the part reachable from the pivot (forward) or
+	 *  reaching it (backward), by breadth-first search within the part.
+	 */
+	private void search(int pivot, byte direction) {
+	    int[] queue = new int[nodes.length];
+	    int tail = 0;
+	    flags[pivot] |= direction;
+	    queue[tail++] = pivot;
+	    for(int head = 0; head < tail; head++) {
+		int v = queue[head];
+		if(direction == FORWARD) {
+		    for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+			int w = snapshot.head(e);
+			if(part[w] == partId && (flags[w] & direction) == 0) {
+			    flags[w] |= direction;
+			    queue[tail++] = w;
+			}
+		    }
+		} else {
+		    for(int i = snapshot.inStart(v), end = snapshot.inEnd(v); i < end; i++) {
+			int u = snapshot.inSource(i);
+			if(part[u] == partId && (flags[u] & direction) == 0) {
+			    flags[u] |= direction;
+			    queue[tail++] = u;
+			}
+		    }
+		}
+	    }
+	}
+    }
+}
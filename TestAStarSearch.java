@@ -0,0 +1,99 @@
+import java.util.*;
+
+/**
+ *  Tests AStarSearch against ShortestPaths on random graphs of placed
+ *  nodes, including graphs whose weights are far below the distances
+ *  between their nodes on screen, where an unscaled euclidean()
+ *  heuristic would overestimate.
+ */
+public class TestAStarSearch {
+    /** The number of random graphs to try. */
+    private static final int GRAPHS = 40;
+    /** The number of node pairs to query on each graph. */
+    private static final int QUERIES = 50;
+
+    /** Create random graphs and compare A* with Dijkstra on them. */
+    public void execute() {
+	Random random = new Random(212);
+	int failures = 0;
+	for(int g = 0; g < GRAPHS; g++) {
+	    // every other graph has weights far below its pixel distances
+	    int maxWeight = (g % 2 == 0) ? 5 : 2000;
+	    GraphSnapshot<PlacedData<Integer>, Integer> snapshot = randomGraph(random, 150, 600, maxWeight);
+	    ShortestPaths<PlacedData<Integer>, Integer> dijkstra = ShortestPaths.of(snapshot);
+	    AStarSearch<PlacedData<Integer>, Integer> astar = AStarSearch.of(snapshot);
+	    for(int q = 0; q < QUERIES; q++) {
+		int source = random.nextInt(snapshot.numNodes());
+		int target = random.nextInt(snapshot.numNodes());
+		long expected = dijkstra.distance(source, target);
+		long found = astar.distance(source, target);
+		if(found != expected || !isPath(snapshot, astar.path(), source, target, expected)) {
+		    System.out.println("From " + source + " to " + target + ": A* found " + found
+				       + ", Dijkstra " + expected + ".");
+		    failures++;
+		}
+	    }
+	}
+	if(failures == 0) {
+	    System.out.println("A*: all " + GRAPHS * QUERIES + " queries match Dijkstra.");
+	} else {
+	    System.out.println("A*: " + failures + " queries differ.");
+	}
+
+	// a heavy direct edge beside a light detour, far apart on screen
+	GraphBuilder<PlacedData<Integer>, Integer> builder = new GraphBuilder<PlacedData<Integer>, Integer>();
+	int a = builder.addNode(new PlacedData<Integer>(0, 0, 0));
+	int b = builder.addNode(new PlacedData<Integer>(1, 100, 0));
+	int c = builder.addNode(new PlacedData<Integer>(2, 50, 1));
+	builder.addEdge(100, a, b);
+	builder.addEdge(1, a, c);
+	builder.addEdge(1, c, b);
+	GraphSnapshot<PlacedData<Integer>, Integer> detour = builder.buildSnapshot();
+	System.out.println("Detour: A* " + AStarSearch.of(detour).distance(a, b)
+			   + ", A* at scale 0 " + AStarSearch.of(detour, 0).distance(a, b)
+			   + ", Dijkstra " + ShortestPaths.of(detour).distance(a, b) + ".");
+    }
+
+    /**
+     *  Builds a random graph of placed nodes with random weights.
+     */
+    private static GraphSnapshot<PlacedData<Integer>, Integer> randomGraph(Random random, int n, int m,
+									  int maxWeight) {
+	GraphBuilder<PlacedData<Integer>, Integer> builder = new GraphBuilder<PlacedData<Integer>, Integer>(n, m);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(new PlacedData<Integer>(v, random.nextInt(800), random.nextInt(600)));
+	}
+	for(int e = 0; e < m; e++) {
+	    builder.addEdge(random.nextInt(maxWeight), random.nextInt(n), random.nextInt(n));
+	}
+	return builder.buildSnapshot();
+    }
+
+    /**
+     *  Is a list of edge ids a path from source to target of the given
+     *  length?  A length of -1 means there should be no path at all.
+     */
+    private static boolean isPath(GraphSnapshot<PlacedData<Integer>, Integer> snapshot, int[] path,
+				  int source, int target, long length) {
+	if(length < 0) {
+	    return path == null;
+	}
+	if(path == null) {
+	    return false;
+	}
+	int at = source;
+	long total = 0;
+	for(int e : path) {
+	    if(snapshot.tail(e) != at) {
+		return false;
+	    }
+	    total += snapshot.edgeData(e);
+	    at = snapshot.head(e);
+	}
+	return at == target && total == length;
+    }
+
+    public static void main(String[] args) {
+	new TestAStarSearch().execute();
+    }
+}
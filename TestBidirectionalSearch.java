@@ -0,0 +1,96 @@
+import java.util.*;
+
+/**
+ *  Tests BidirectionalSearch on random graphs: weighted distances must
+ *  match ShortestPaths, hop counts must match MultiSourceBFS, and the
+ *  paths returned must be real paths of the length found.
+ */
+public class TestBidirectionalSearch {
+    /** The number of random graphs to try. */
+    private static final int GRAPHS = 40;
+    /** The number of node pairs to query on each graph. */
+    private static final int QUERIES = 50;
+
+    /** Create random graphs and compare the bidirectional searches with one-way ones. */
+    public void execute() {
+	Random random = new Random(212);
+	int failures = 0;
+	for(int g = 0; g < GRAPHS; g++) {
+	    GraphSnapshot<Integer, Integer> snapshot = randomGraph(random, 1 + random.nextInt(200),
+								   random.nextInt(800), (g % 2 == 0) ? 5 : 2000);
+	    int n = snapshot.numNodes();
+	    ShortestPaths<Integer, Integer> dijkstra = ShortestPaths.of(snapshot);
+	    BidirectionalSearch<Integer, Integer> search = BidirectionalSearch.of(snapshot);
+	    int[] sources = new int[QUERIES];
+	    for(int q = 0; q < QUERIES; q++) {
+		sources[q] = random.nextInt(n);
+	    }
+	    int[][] hops = new MultiSourceBFS<Integer, Integer>(snapshot).distances(sources);
+	    for(int q = 0; q < QUERIES; q++) {
+		int source = sources[q];
+		int target = random.nextInt(n);
+		long expected = dijkstra.distance(source, target);
+		long found = search.distance(source, target);
+		if(found != expected || !isPath(snapshot, search.path(), source, target, expected, false)) {
+		    System.out.println("From " + source + " to " + target + ": bidirectional found " + found
+				       + ", Dijkstra " + expected + ".");
+		    failures++;
+		}
+		long fewest = search.hops(source, target);
+		if(fewest != hops[q][target] || !isPath(snapshot, search.path(), source, target, fewest, true)) {
+		    System.out.println("From " + source + " to " + target + ": bidirectional BFS found " + fewest
+				       + " hops, MultiSourceBFS " + hops[q][target] + ".");
+		    failures++;
+		}
+	    }
+	}
+	if(failures == 0) {
+	    System.out.println("Bidirectional: all " + GRAPHS * QUERIES + " queries match.");
+	} else {
+	    System.out.println("Bidirectional: " + failures + " queries differ.");
+	}
+    }
+
+    /**
+     *  Builds a random graph with random weights from 0 to maxWeight - 1.
+     */
+    private static GraphSnapshot<Integer, Integer> randomGraph(Random random, int n, int m, int maxWeight) {
+	GraphBuilder<Integer, Integer> builder = new GraphBuilder<Integer, Integer>(n, m);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	for(int e = 0; e < m; e++) {
+	    builder.addEdge(random.nextInt(maxWeight), random.nextInt(n), random.nextInt(n));
+	}
+	return builder.buildSnapshot();
+    }
+
+    /**
+     *  Is a list of edge ids a path from source to target of the given
+     *  length, in edges or in weight?  A length of -1 means there should
+     *  be no path at all.
+     */
+    private static boolean isPath(GraphSnapshot<Integer, Integer> snapshot, int[] path,
+				  int source, int target, long length, boolean countHops) {
+	if(length < 0) {
+	    return path == null;
+	}
+	if(path == null) {
+	    return false;
+	}
+	int at = source;
+	long total = 0;
+	for(int e : path) {
+	    if(snapshot.tail(e) != at) {
+		return false;
+	    }
+	    total += countHops ? 1 : snapshot.edgeData(e);
+	    at = snapshot.head(e);
+	}
+	return at == target && total == length;
+    }
+
+    public static void main(String[] args) {
+	new TestBidirectionalSearch().execute();
+    }
+}
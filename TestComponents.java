@@ -0,0 +1,176 @@
+import java.util.*;
+
+/**
+ *  Tests StronglyConnectedComponents: of() and parallel() must find the
+ *  same components on random graphs large enough for parallel() to
+ *  split them, both must number the components in reverse topological
+ *  order, and on small graphs the components must be exactly the sets
+ *  of mutually reachable nodes.
+ */
+public class TestComponents {
+    /** Create random graphs and compare the two algorithms on them. */
+    public void execute() {
+	Random random = new Random(212);
+	int failures = 0;
+	for(int g = 0; g < 12; g++) {
+	    GraphSnapshot<Integer, Integer> snapshot = cycles(random, 20000, 1 + g % 4);
+	    StronglyConnectedComponents<Integer, Integer> tarjan = StronglyConnectedComponents.of(snapshot);
+	    StronglyConnectedComponents<Integer, Integer> split = StronglyConnectedComponents.parallel(snapshot);
+	    if(!samePartition(tarjan, split, snapshot.numNodes())
+	       || !reverseTopological(tarjan) || !reverseTopological(split)) {
+		System.out.println("Graph " + g + ": of() found " + tarjan.numComponents()
+				   + " components, parallel() " + split.numComponents() + ".");
+		failures++;
+	    }
+	}
+	for(int g = 0; g < 200; g++) {
+	    GraphSnapshot<Integer, Integer> snapshot = randomGraph(random, 1 + random.nextInt(30), random.nextInt(60));
+	    if(!mutuallyReachable(StronglyConnectedComponents.of(snapshot), snapshot)
+	       || !mutuallyReachable(StronglyConnectedComponents.parallel(snapshot), snapshot)) {
+		System.out.println("Small graph " + g + ": components are not the mutually reachable sets.");
+		failures++;
+	    }
+	}
+
+	// one cycle through a million nodes, to exercise the explicit stacks
+	int n = 1 << 20;
+	GraphBuilder<Integer, Integer> builder = new GraphBuilder<Integer, Integer>(n, n);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	for(int v = 0; v < n; v++) {
+	    builder.addEdge(1, v, (v + 1) % n);
+	}
+	GraphSnapshot<Integer, Integer> ring = builder.buildSnapshot();
+	if(StronglyConnectedComponents.of(ring).numComponents() != 1
+	   || StronglyConnectedComponents.parallel(ring).numComponents() != 1) {
+	    System.out.println("Long ring: not one component.");
+	    failures++;
+	}
+
+	if(failures == 0) {
+	    System.out.println("Components: of() and parallel() agree.");
+	} else {
+	    System.out.println("Components: " + failures + " graphs failed.");
+	}
+    }
+
+    /**
+     *  Builds rings of random sizes, joined by edges that only go from a
+     *  ring to a later one, plus a few edges anywhere, which may merge
+     *  rings.
+     *
+     *  @param stray : the number of unrestricted edges per thousand nodes
+     */
+    private static GraphSnapshot<Integer, Integer> cycles(Random random, int n, int stray) {
+	GraphBuilder<Integer, Integer> builder = new GraphBuilder<Integer, Integer>(n, 3 * n);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	int start = 0;
+	while(start < n) {
+	    int end = Math.min(n, start + 1 + random.nextInt(200));
+	    for(int v = start; v < end; v++) {
+		builder.addEdge(1, v, (v + 1 < end) ? v + 1 : start);
+		if(end < n) {
+		    builder.addEdge(1, v, end + random.nextInt(n - end));
+		}
+	    }
+	    start = end;
+	}
+	for(int i = 0; i < stray * n / 1000; i++) {
+	    builder.addEdge(1, random.nextInt(n), random.nextInt(n));
+	}
+	return builder.buildSnapshot();
+    }
+
+    private static GraphSnapshot<Integer, Integer> randomGraph(Random random, int n, int m) {
+	GraphBuilder<Integer, Integer> builder = new GraphBuilder<Integer, Integer>(n, m);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	for(int e = 0; e < m; e++) {
+	    builder.addEdge(1, random.nextInt(n), random.nextInt(n));
+	}
+	return builder.buildSnapshot();
+    }
+
+    /**
+     *  Do two numberings put the same nodes together?
+     */
+    private static boolean samePartition(StronglyConnectedComponents<?,?> a, StronglyConnectedComponents<?,?> b,
+					 int n) {
+	if(a.numComponents() != b.numComponents()) {
+	    return false;
+	}
+	int[] match = new int[a.numComponents()];
+	Arrays.fill(match, -1);
+	for(int v = 0; v < n; v++) {
+	    int c = a.componentOf(v);
+	    if(match[c] < 0) {
+		match[c] = b.componentOf(v);
+	    } else if(match[c] != b.componentOf(v)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     *  Does every edge between two components go from a higher number
+     *  to a lower one?
+     */
+    private static boolean reverseTopological(StronglyConnectedComponents<Integer, Integer> components) {
+	GraphSnapshot<Integer, Integer> snapshot = components.snapshot();
+	for(int e = 0; e < snapshot.numEdges(); e++) {
+	    if(components.componentOf(snapshot.tail(e)) < components.componentOf(snapshot.head(e))) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     *  Are two nodes in the same component exactly when each reaches the
+     *  other?
+     */
+    private static boolean mutuallyReachable(StronglyConnectedComponents<Integer, Integer> components,
+					     GraphSnapshot<Integer, Integer> snapshot) {
+	int n = snapshot.numNodes();
+	boolean[][] reaches = new boolean[n][];
+	for(int v = 0; v < n; v++) {
+	    reaches[v] = reachable(snapshot, v);
+	}
+	for(int u = 0; u < n; u++) {
+	    for(int v = 0; v < n; v++) {
+		boolean together = components.componentOf(u) == components.componentOf(v);
+		if(together != (reaches[u][v] && reaches[v][u])) {
+		    return false;
+		}
+	    }
+	}
+	return reverseTopological(components);
+    }
+
+    private static boolean[] reachable(GraphSnapshot<Integer, Integer> snapshot, int source) {
+	boolean[] seen = new boolean[snapshot.numNodes()];
+	ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+	seen[source] = true;
+	queue.add(source);
+	while(!queue.isEmpty()) {
+	    int v = queue.remove();
+	    for(int e = snapshot.outStart(v); e < snapshot.outEnd(v); e++) {
+		int w = snapshot.head(e);
+		if(!seen[w]) {
+		    seen[w] = true;
+		    queue.add(w);
+		}
+	    }
+	}
+	return seen;
+    }
+
+    public static void main(String[] args) {
+	new TestComponents().execute();
+    }
+}
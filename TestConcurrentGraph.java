@@ -0,0 +1,196 @@
+import java.util.*;
+
+/**
+ *  Tests ConcurrentGraphImplementation by mutating one graph from
+ *  several threads at once, then checking that the graph is consistent
+ *  and holds exactly the nodes and edges the threads left behind.
+ */
+public class TestConcurrentGraph {
+    /** The number of writer threads. */
+    private static final int THREADS = 8;
+    /** The number of operations each writer performs. */
+    private static final int OPERATIONS = 20000;
+    /** The number of shared nodes every writer attaches edges to. */
+    private static final int SHARED = 16;
+
+    /** Run the writers and check what they leave behind. */
+    public void execute() {
+	final ConcurrentGraphImplementation<Integer,Integer> g = new ConcurrentGraphImplementation<Integer,Integer>(4);
+	final List<Graph.Node<Integer,Integer>> shared = new ArrayList<Graph.Node<Integer,Integer>>();
+	for(int i = 0; i < SHARED; i++) {
+	    shared.add(g.addNode(-i));
+	}
+
+	// each writer adds, moves and removes its own nodes and edges,
+	// which all touch the shared nodes, so they contend on the same
+	// stripes and adjacency sets while their results stay countable
+	final Writer[] writers = new Writer[THREADS];
+	for(int t = 0; t < THREADS; t++) {
+	    writers[t] = new Writer(g, shared, t);
+	}
+	run(writers);
+	int nodes = SHARED;
+	int edges = 0;
+	boolean kept = true;
+	for(Writer writer : writers) {
+	    nodes += writer.nodes.size();
+	    edges += writer.edges.size();
+	    for(Graph.Edge<Integer,Integer> edge : writer.edges) {
+		kept &= g.getEdges().contains(edge) && edge.getTail().getOutgoingEdges().contains(edge)
+		    && edge.getHead().getIncomingEdges().contains(edge);
+	    }
+	}
+	System.out.println("Writers: valid " + consistent(g) + ", " + g.numNodes() + " of " + nodes + " nodes, "
+			   + g.numEdges() + " of " + edges + " edges, all kept " + kept + ".");
+
+	// now the writers race to remove the shared nodes while others
+	// keep attaching edges to them
+	final Runnable[] racers = new Runnable[THREADS];
+	for(int t = 0; t < THREADS; t++) {
+	    final Random random = new Random(t);
+	    final boolean remover = (t % 2 == 0);
+	    racers[t] = new Runnable() {
+		    public void run() {
+			for(int i = 0; i < OPERATIONS; i++) {
+			    Graph.Node<Integer,Integer> node = shared.get(random.nextInt(SHARED));
+			    try {
+				if(remover) {
+				    g.removeNode(node);
+				} else {
+				    g.addEdge(i, node, shared.get(random.nextInt(SHARED)));
+				}
+			    } catch(Error e) {
+				// the node was already removed
+			    }
+			}
+		    }
+		};
+	}
+	run(racers);
+	boolean detached = true;
+	for(Graph.Edge<Integer,Integer> edge : g.getEdges()) {
+	    detached &= edge.getTail().getData() > 0 && edge.getHead().getData() > 0;
+	}
+	System.out.println("Racers: valid " + consistent(g) + ", " + g.numNodes() + " of " + (nodes - SHARED)
+			   + " nodes, no edge left on a removed node " + detached + ".");
+    }
+
+    /**
+     *  Is the graph valid, and do its counts agree with its node and
+     *  edge sets and with the total in- and out-degree?
+     */
+    private static boolean consistent(ConcurrentGraphImplementation<Integer,Integer> g) {
+	int outs = 0;
+	int ins = 0;
+	for(Graph.Node<Integer,Integer> node : g.getNodes()) {
+	    outs += node.getOutgoingEdges().size();
+	    ins += node.getIncomingEdges().size();
+	}
+	return g.validateGraph() && g.numNodes() == g.getNodes().size() && g.numEdges() == g.getEdges().size()
+	    && outs == g.numEdges() && ins == g.numEdges();
+    }
+
+    /**
+     *  Runs each task on its own thread and waits for all of them.
+     */
+    private static void run(Runnable[] tasks) {
+	Thread[] threads = new Thread[tasks.length];
+	for(int t = 0; t < tasks.length; t++) {
+	    threads[t] = new Thread(tasks[t]);
+	    threads[t].start();
+	}
+	for(Thread thread : threads) {
+	    try {
+		thread.join();
+	    } catch(InterruptedException e) {
+		throw new Error(e);
+	    }
+	}
+    }
+
+    /**
+     *  A writer that remembers the nodes and edges it has added and not
+     *  yet removed.  Its nodes have positive data; the shared nodes do
+     *  not.
+     */
+    private static class Writer implements Runnable {
+	/** The graph to mutate. */
+	private final Graph<Integer,Integer> g;
+	/** The nodes no writer removes. */
+	private final List<Graph.Node<Integer,Integer>> shared;
+	/** The source of this writer's choices. */
+	private final Random random;
+	/** This writer's live nodes. */
+	final List<Graph.Node<Integer,Integer>> nodes = new ArrayList<Graph.Node<Integer,Integer>>();
+	/** This writer's live edges. */
+	final List<Graph.Edge<Integer,Integer>> edges = new ArrayList<Graph.Edge<Integer,Integer>>();
+
+	Writer(Graph<Integer,Integer> g, List<Graph.Node<Integer,Integer>> shared, int seed) {
+	    this.g = g;
+	    this.shared = shared;
+	    this.random = new Random(seed);
+	}
+
+	/** @return one of the shared nodes or of this writer's nodes */
+	private Graph.Node<Integer,Integer> pick() {
+	    if(nodes.isEmpty() || random.nextBoolean()) {
+		return shared.get(random.nextInt(shared.size()));
+	    }
+	    return nodes.get(random.nextInt(nodes.size()));
+	}
+
+	/** Removes and returns a random element of a list in O(1). */
+	private <T> T takeAny(List<T> list) {
+	    int i = random.nextInt(list.size());
+	    T taken = list.get(i);
+	    list.set(i, list.get(list.size() - 1));
+	    list.remove(list.size() - 1);
+	    return taken;
+	}
+
+	public void run() {
+	    for(int i = 0; i < OPERATIONS; i++) {
+		int op = random.nextInt(10);
+		if(op < 2 || nodes.isEmpty()) {
+		    nodes.add(g.addNode(1 + random.nextInt(1000)));
+		} else if(op < 5 || edges.isEmpty()) {
+		    edges.add(g.addEdge(i, pick(), pick()));
+		} else if(op < 6) {
+		    g.removeEdge(takeAny(edges));
+		} else if(op < 7) {
+		    edges.get(random.nextInt(edges.size())).setTail(pick());
+		} else if(op < 8) {
+		    edges.get(random.nextInt(edges.size())).setHead(pick());
+		} else if(op < 9) {
+		    Graph.Node<Integer,Integer> node = takeAny(nodes);
+		    g.removeNode(node);
+		    // removing the node took its edges with it
+		    for(int e = edges.size() - 1; e >= 0; e--) {
+			Graph.Edge<Integer,Integer> edge = edges.get(e);
+			if(edge.getTail() == node || edge.getHead() == node) {
+			    edges.set(e, edges.get(edges.size() - 1));
+			    edges.remove(edges.size() - 1);
+			}
+		    }
+		} else {
+		    // only this writer's edges can leave this writer's nodes,
+		    // but other writers' edges can join two shared ones
+		    Graph.Node<Integer,Integer> tail = nodes.get(random.nextInt(nodes.size()));
+		    Graph.Node<Integer,Integer> head = pick();
+		    g.removeEdge(tail, head);
+		    for(int e = edges.size() - 1; e >= 0; e--) {
+			Graph.Edge<Integer,Integer> edge = edges.get(e);
+			if(edge.getTail() == tail && edge.getHead() == head) {
+			    edges.set(e, edges.get(edges.size() - 1));
+			    edges.remove(edges.size() - 1);
+			}
+		    }
+		}
+	    }
+	}
+    }
+
+    public static void main(String[] args) {
+	new TestConcurrentGraph().execute();
+    }
+}
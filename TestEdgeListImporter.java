@@ -0,0 +1,126 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ *  Tests EdgeListImporter.  An edge list must import to the same edges
+ *  however the file is cut into chunks, both onto the heap with load()
+ *  and into a MappedGraph file with importMapped(); a malformed line or
+ *  a stray huge id must be rejected with an IOException.
+ */
+public class TestEdgeListImporter {
+    /** Chunk sizes to import with, down to one byte so a boundary falls after every line. */
+    private static final long[] CHUNK_SIZES = { 1, 2, 3, 5, 8, 13, 64, 1000, 1 << 20 };
+
+    /** Import edge lists and compare the graphs found with the lists. */
+    public void execute() throws IOException {
+	Path dir = Files.createTempDirectory("edgelist");
+	try {
+	    importChunks(dir);
+	    strayId(dir);
+	} finally {
+	    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+		for(Path path : stream) {
+		    Files.delete(path);
+		}
+	    }
+	    Files.delete(dir);
+	}
+    }
+
+    /**
+     *  Imports an edge list with comments, blank lines, tabs and CRLF
+     *  line ends at every chunk size, and compares the edges found with
+     *  the edges written.
+     */
+    private void importChunks(Path dir) throws IOException {
+	Random random = new Random(212);
+	StringBuilder text = new StringBuilder("# an edge list\n\n");
+	List<String> expected = new ArrayList<String>();
+	for(int e = 0; e < 2000; e++) {
+	    int tail = random.nextInt(500);
+	    int head = random.nextInt(500);
+	    int weight = random.nextInt(2001) - 1000;
+	    expected.add(tail + " " + head + " " + weight);
+	    String gap = (e % 3 == 0) ? "\t" : (e % 3 == 1) ? " " : "  \t ";
+	    text.append(tail).append(gap).append(head).append(gap).append(weight);
+	    text.append((e % 7 == 0) ? "\r\n" : "\n");
+	    if(e % 11 == 0) {
+		text.append("# comment ").append(e).append(" 1 2 3\n");
+	    }
+	    if(e % 13 == 0) {
+		text.append("\n \t\n");
+	    }
+	}
+	// the last line has no newline
+	text.setLength(text.length() - 1);
+	Collections.sort(expected);
+	int maxId = 0;
+	for(String edge : expected) {
+	    String[] field = edge.split(" ");
+	    maxId = Math.max(maxId, Math.max(Integer.parseInt(field[0]), Integer.parseInt(field[1])));
+	}
+
+	Path list = dir.resolve("edges.txt");
+	Files.write(list, text.toString().getBytes("US-ASCII"));
+	Path bad = dir.resolve("bad.txt");
+	Files.write(bad, (text + "\n1 2 x\n").getBytes("US-ASCII"));
+	Path mapped = dir.resolve("edges.mapped");
+	int failures = 0;
+	for(long chunkSize : CHUNK_SIZES) {
+	    GraphSnapshot<Integer, Integer> heap = EdgeListImporter.load(list, chunkSize).buildSnapshot();
+	    List<String> found = new ArrayList<String>();
+	    for(int e = 0; e < heap.numEdges(); e++) {
+		found.add(heap.tail(e) + " " + heap.head(e) + " " + heap.edgeData(e));
+	    }
+	    Collections.sort(found);
+
+	    MappedGraph file = EdgeListImporter.importMapped(list, mapped, chunkSize);
+	    List<String> foundMapped = new ArrayList<String>();
+	    for(int e = 0; e < file.numEdges(); e++) {
+		foundMapped.add(file.tail(e) + " " + file.head(e) + " " + file.weight(e));
+	    }
+	    Collections.sort(foundMapped);
+
+	    boolean rejected = false;
+	    try {
+		EdgeListImporter.load(bad, chunkSize);
+	    } catch(IOException e) {
+		rejected = true;
+	    }
+	    if(!found.equals(expected) || !foundMapped.equals(expected) || heap.numNodes() != maxId + 1
+	       || file.numNodes() != maxId + 1 || !file.validateGraph() || !rejected) {
+		System.out.println("Import with " + chunkSize + "-byte chunks differs.");
+		failures++;
+	    }
+	}
+	if(failures == 0) {
+	    System.out.println("Edge list import: same edges at every chunk size.");
+	}
+    }
+
+    /**
+     *  Imports a single edge to a huge id, which would need billions of
+     *  nodes.
+     */
+    private void strayId(Path dir) throws IOException {
+	Path list = dir.resolve("stray.txt");
+	Files.write(list, "0 2000000000 1\n".getBytes("US-ASCII"));
+	int rejected = 0;
+	try {
+	    EdgeListImporter.load(list);
+	} catch(IOException e) {
+	    rejected++;
+	}
+	try {
+	    EdgeListImporter.importMapped(list, dir.resolve("stray.mapped"));
+	} catch(IOException e) {
+	    rejected++;
+	}
+	System.out.println("Stray huge id: rejected by " + rejected + " of 2 importers.");
+    }
+
+    public static void main(String[] args) throws IOException {
+	new TestEdgeListImporter().execute();
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ *  Tests the binary graph format.  A graph written by GraphWriter must
+ *  be read back unchanged by GraphReader, from a file or a stream, and
+ *  truncated or corrupt files must be rejected with an IOException.
+ */
+public class TestGraphIO {
+    /** Write and read graphs. */
+    public void execute() throws IOException {
+	Path dir = Files.createTempDirectory("graphio");
+	try {
+	    roundTrip(dir);
+	    corrupt();
+	} finally {
+	    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+		for(Path path : stream) {
+		    Files.delete(path);
+		}
+	    }
+	    Files.delete(dir);
+	}
+    }
+
+    /**
+     *  Writes a random graph with extreme values, self-loops and
+     *  parallel edges, and reads it back.
+     */
+    private void roundTrip(Path dir) throws IOException {
+	Random random = new Random(212);
+	int[] extremes = { 0, -1, 1, 63, 64, -64, -65, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE };
+	GraphImplementation<PlacedData<Integer>, Integer> graph = new GraphImplementation<PlacedData<Integer>, Integer>();
+	List<Graph.Node<PlacedData<Integer>, Integer>> nodes = new ArrayList<Graph.Node<PlacedData<Integer>, Integer>>();
+	for(int v = 0; v < 3000; v++) {
+	    int x = (v < extremes.length) ? extremes[v] : random.nextInt();
+	    int y = (v < extremes.length) ? extremes[extremes.length - 1 - v] : random.nextInt(1000) - 500;
+	    nodes.add(graph.addNode(new PlacedData<Integer>(v, x, y)));
+	}
+	for(int e = 0; e < 20000; e++) {
+	    Graph.Node<PlacedData<Integer>, Integer> tail = nodes.get(random.nextInt(nodes.size()));
+	    Graph.Node<PlacedData<Integer>, Integer> head = (e % 100 == 0) ? tail : nodes.get(random.nextInt(nodes.size()));
+	    int weight = (e < extremes.length) ? extremes[e] : random.nextInt();
+	    graph.addEdge(weight, tail, head);
+	    if(e % 50 == 0) {
+		graph.addEdge(weight, tail, head);
+	    }
+	}
+	String expected = describe(graph);
+
+	Path file = dir.resolve("graph.ggui");
+	try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+	    new GraphWriter(channel).write(graph);
+	}
+	String fromFile;
+	try(FileChannel channel = FileChannel.open(file)) {
+	    fromFile = describe(new GraphReader(channel).read());
+	}
+	String fromStream;
+	try(InputStream in = Files.newInputStream(file)) {
+	    fromStream = describe(new GraphReader(Channels.newChannel(in)).read(true));
+	}
+	if(expected.equals(fromFile) && expected.equals(fromStream)) {
+	    System.out.println("Round trip: graph read back unchanged.");
+	} else {
+	    System.out.println("Round trip: graph read back differs.");
+	}
+
+	byte[] bytes = Files.readAllBytes(file);
+	boolean rejected = true;
+	for(int length = 0; length < bytes.length; length += 1 + length / 3) {
+	    try {
+		new GraphReader(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(bytes, length)))).read();
+		rejected = false;
+	    } catch(IOException e) {
+		// expected
+	    }
+	}
+	System.out.println(rejected ? "Truncated files: all rejected." : "Truncated files: one was accepted.");
+    }
+
+    /**
+     *  Reads headers and records that no writer produces: counts too
+     *  large for the input, varints past 32 bits, negative counts and
+     *  indices, and edges to missing nodes.
+     */
+    private void corrupt() {
+	int[][] files = {
+	    { 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 0xFF, 0xFF, 0xFF, 0xFF, 0x07 },
+	    { 0xFF, 0xFF, 0xFF, 0xFF, 0x1F, 0 },
+	    { 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 0 },
+	    { 1, 1, 0, 0, 0, 0, 5, 0 },
+	    { 1, 1, 0, 0, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 0, 0 },
+	};
+	int rejected = 0;
+	for(int[] body : files) {
+	    byte[] bytes = new byte[GraphWriter.MAGIC.length + 1 + body.length];
+	    System.arraycopy(GraphWriter.MAGIC, 0, bytes, 0, GraphWriter.MAGIC.length);
+	    bytes[GraphWriter.MAGIC.length] = (byte)GraphWriter.FORMAT_VERSION;
+	    for(int i = 0; i < body.length; i++) {
+		bytes[GraphWriter.MAGIC.length + 1 + i] = (byte)body[i];
+	    }
+	    try {
+		new GraphReader(Channels.newChannel(new ByteArrayInputStream(bytes))).read();
+	    } catch(IOException e) {
+		rejected++;
+	    }
+	}
+	System.out.println("Corrupt files: " + rejected + " of " + files.length + " rejected.");
+    }
+
+    /**
+     *  Describes a graph by its sorted node records and sorted edges,
+     *  which identifies it when node data are distinct.
+     */
+    private static String describe(Graph<PlacedData<Integer>, Integer> graph) {
+	List<String> nodes = new ArrayList<String>();
+	for(Graph.Node<PlacedData<Integer>, Integer> node : graph.getNodes()) {
+	    PlacedData<Integer> data = node.getData();
+	    nodes.add(data.getData() + " at " + data.getX() + ", " + data.getY());
+	}
+	List<String> edges = new ArrayList<String>();
+	for(Graph.Edge<PlacedData<Integer>, Integer> edge : graph.getEdges()) {
+	    edges.add(edge.getTail().getData().getData() + " -> " + edge.getHead().getData().getData()
+		      + " : " + edge.getData());
+	}
+	Collections.sort(nodes);
+	Collections.sort(edges);
+	return nodes + "\n" + edges;
+    }
+
+    public static void main(String[] args) throws IOException {
+	new TestGraphIO().execute();
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.*;
+
+/**
+ *  Tests GraphImplementation.validateIncremental() against
+ *  validateGraph() on a graph changed through its public methods only,
+ *  so both must always find it consistent: before the first call, when
+ *  changes start being tracked, after each round of changes, after a
+ *  burst of changes long enough to stop the tracking, and when full
+ *  validations are mixed in.
+ */
+public class TestIncrementalValidation {
+    /** The number of rounds of changes. */
+    private static final int ROUNDS = 200;
+
+    /** The graph under test. */
+    private final GraphImplementation<Integer,Integer> g = new GraphImplementation<Integer,Integer>();
+    /** The nodes of the graph. */
+    private final List<Graph.Node<Integer,Integer>> nodes = new ArrayList<Graph.Node<Integer,Integer>>();
+    /** The edges of the graph. */
+    private final List<Graph.Edge<Integer,Integer>> edges = new ArrayList<Graph.Edge<Integer,Integer>>();
+
+    /** Change the graph in rounds, validating both ways after each. */
+    public void execute() {
+	Random random = new Random(212);
+	for(int i = 0; i < 2000; i++) {
+	    change(random);
+	}
+	// changes are not tracked yet, so the first call checks everything
+	boolean full = g.validateGraph();
+	boolean first = g.validateIncremental();
+	for(int i = 0; i < 50; i++) {
+	    change(random);
+	}
+	boolean second = g.validateIncremental();
+	System.out.println("First call: valid " + first + ", agrees " + (first == full)
+			   + "; second call: valid " + second + ", agrees " + (second == g.validateGraph()));
+
+	int agree = 0;
+	int valid = 0;
+	for(int r = 0; r < ROUNDS; r++) {
+	    // mostly small rounds, some long enough to stop the tracking
+	    int changes = (r % 25 == 24) ? 3 * g.numNodes() + 5000 : random.nextInt(50);
+	    for(int i = 0; i < changes; i++) {
+		change(random);
+	    }
+	    boolean incremental;
+	    boolean reference;
+	    if(r % 7 == 0) {
+		// a full validation first marks every node clean
+		reference = g.validateGraph();
+		incremental = g.validateIncremental();
+	    } else {
+		incremental = g.validateIncremental();
+		reference = g.validateGraph();
+	    }
+	    if(incremental == reference) {
+		agree++;
+	    }
+	    if(incremental) {
+		valid++;
+	    }
+	}
+	System.out.println("Rounds: agree on " + agree + " of " + ROUNDS + ", valid on " + valid + " of " + ROUNDS
+			   + ", " + g.numNodes() + " nodes and " + g.numEdges() + " edges.");
+    }
+
+    /**
+     *  Makes one random change to the graph through its public methods.
+     */
+    private void change(Random random) {
+	int op = random.nextInt(10);
+	if(op < 2 || nodes.size() < 2) {
+	    nodes.add(g.addNode(random.nextInt(1000)));
+	} else if(op < 5 || edges.isEmpty()) {
+	    edges.add(g.addEdge(random.nextInt(1000), pick(random), pick(random)));
+	} else if(op < 6) {
+	    g.removeEdge(take(edges, random));
+	} else if(op < 7) {
+	    Graph.Node<Integer,Integer> node = take(nodes, random);
+	    g.removeNode(node);
+	    for(int e = edges.size() - 1; e >= 0; e--) {
+		if(edges.get(e).getTail() == node || edges.get(e).getHead() == node) {
+		    edges.set(e, edges.get(edges.size() - 1));
+		    edges.remove(edges.size() - 1);
+		}
+	    }
+	} else if(op < 8) {
+	    edges.get(random.nextInt(edges.size())).setTail(pick(random));
+	} else if(op < 9) {
+	    edges.get(random.nextInt(edges.size())).setHead(pick(random));
+	} else {
+	    pick(random).setData(random.nextInt(1000));
+	}
+    }
+
+    /** @return a random node of the graph */
+    private Graph.Node<Integer,Integer> pick(Random random) {
+	return nodes.get(random.nextInt(nodes.size()));
+    }
+
+    /** Removes and returns a random element of a list in O(1). */
+    private static <T> T take(List<T> list, Random random) {
+	int i = random.nextInt(list.size());
+	T taken = list.get(i);
+	list.set(i, list.get(list.size() - 1));
+	list.remove(list.size() - 1);
+	return taken;
+    }
+
+    public static void main(String[] args) {
+	new TestIncrementalValidation().execute();
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.*;
+
+/**
+ *  Tests that nodes and edges handed out by IntGraph.asGraph() stop
+ *  belonging to the graph once they are removed, even after a later
+ *  addition reuses their ids, and that the description of an IntGraph
+ *  has the same form as GraphImplementation's.
+ */
+public class TestIntGraph {
+    /** Remove nodes and edges, reuse their ids, and use the old handles. */
+    public void execute() {
+	IntGraph ints = new IntGraph();
+	Graph<Integer,Integer> g = ints.asGraph();
+	Graph.Node<Integer,Integer> x = g.addNode(1);
+	Graph.Node<Integer,Integer> y = g.addNode(2);
+	g.removeNode(x);
+	Graph.Node<Integer,Integer> z = g.addNode(99);
+	System.out.println("Reused node is a new object: " + (x != z && !x.equals(z)));
+	System.out.println("Removed node rejected by getData: " + throwsError(new Runnable() {
+		public void run() {
+		    x.getData();
+		}
+	    }));
+	System.out.println("Removed node rejected by removeNode: " + throwsError(new Runnable() {
+		public void run() {
+		    g.removeNode(x);
+		}
+	    }));
+	System.out.println("Removed node rejected by addEdge: " + throwsError(new Runnable() {
+		public void run() {
+		    g.addEdge(5, x, y);
+		}
+	    }));
+	System.out.println("Reused node kept: " + (g.numNodes() == 2 && z.getData() == 99
+						  && g.getNodes().contains(z) && !g.getNodes().contains(x)));
+
+	Graph.Edge<Integer,Integer> a = g.addEdge(7, y, z);
+	g.removeEdge(a);
+	Graph.Edge<Integer,Integer> b = g.addEdge(8, z, y);
+	System.out.println("Reused edge is a new object: " + !a.equals(b));
+	System.out.println("Removed edge rejected by getHead: " + throwsError(new Runnable() {
+		public void run() {
+		    a.getHead();
+		}
+	    }));
+	System.out.println("Removed edge rejected by setTail: " + throwsError(new Runnable() {
+		public void run() {
+		    a.setTail(y);
+		}
+	    }));
+	System.out.println("Removed edge rejected by removeEdge: " + throwsError(new Runnable() {
+		public void run() {
+		    g.removeEdge(a);
+		}
+	    }));
+	System.out.println("Reused edge kept: " + (g.numEdges() == 1 && b.getData() == 8
+						  && b.getTail().equals(z) && g.validateGraph()));
+
+	// a node removed with its edges takes those edges' handles with it
+	Graph.Edge<Integer,Integer> c = g.addEdge(9, y, y);
+	g.removeNode(y);
+	Graph.Node<Integer,Integer> w = g.addNode(3);
+	g.addEdge(10, w, w);
+	System.out.println("Edges of a removed node rejected: " + (throwsError(new Runnable() {
+		public void run() {
+		    b.getData();
+		}
+	    }) && throwsError(new Runnable() {
+		public void run() {
+		    c.getData();
+		}
+	    })));
+	System.out.println("Graph valid: " + (g.validateGraph() && g.numNodes() == 2 && g.numEdges() == 1));
+
+	// the description lists the edges after the nodes, as GraphImplementation's does
+	IntGraph small = new IntGraph();
+	int p = small.addNode(1);
+	int q = small.addNode(2);
+	small.addEdge(p, q, 5);
+	small.addEdge(q, p, 6);
+	String expected = "\nGraph\n\n  Node: 1\n    To: 2, 5\n  Node: 2\n    To: 1, 6"
+	    + "\n\n Edges: \n    2, 5\n    1, 6\n";
+	System.out.println("Description lists edges: " + small.toString().equals(expected));
+    }
+
+    /** @return true if running the code throws an Error */
+    private static boolean throwsError(Runnable code) {
+	try {
+	    code.run();
+	} catch(Error e) {
+	    return true;
+	}
+	return false;
+    }
+
+    public static void main(String[] args) {
+	new TestIntGraph().execute();
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ *  Tests GraphJournal recovery.  A graph is changed at random through a
+ *  journal that checkpoints often; the journal directory is then copied
+ *  as it stands, as a crash would leave it, with a torn batch appended
+ *  to the newest log, and the copy must recover to the graph as it was
+ *  at the last sync.  Closing and reopening must also give the graph
+ *  back, including after data is set on a removed node or edge.
+ */
+public class TestJournal {
+    /** Create, crash and recover journaled graphs. */
+    public void execute() throws IOException {
+	Path dir = Files.createTempDirectory("journal");
+	Path crashed = Files.createTempDirectory("crashed");
+	try {
+	    // a small checkpoint threshold, so the copy spans generations
+	    GraphJournal<Integer, String> journal = GraphJournal.open(dir, GraphJournal.INTEGER, GraphJournal.STRING,
+								      false, 2, 1 << 12);
+	    GraphImplementation<Integer, String> graph = journal.graph();
+	    change(graph, new Random(212), 5000);
+	    journal.sync();
+	    String expected = describe(graph);
+	    copy(dir, crashed);
+	    tear(crashed);
+	    GraphJournal<Integer, String> recovered = GraphJournal.open(crashed, GraphJournal.INTEGER,
+									GraphJournal.STRING, false);
+	    report("Crash recovery", expected, describe(recovered.graph()));
+	    recovered.close();
+
+	    // data set on removed parts must not break the next recovery
+	    Graph.Node<Integer, String> node = graph.addNode(-1);
+	    Graph.Edge<Integer, String> edge = graph.addEdge("gone", node, node);
+	    graph.removeNode(node);
+	    node.setData(-2);
+	    edge.setData("still gone");
+	    expected = describe(graph);
+	    journal.close();
+	    journal = GraphJournal.open(dir, GraphJournal.INTEGER, GraphJournal.STRING, false);
+	    report("Close and reopen", expected, describe(journal.graph()));
+	    journal.close();
+	} finally {
+	    delete(dir);
+	    delete(crashed);
+	}
+    }
+
+    /**
+     *  Makes random changes to a graph, of every kind the journal logs.
+     *  Node data are kept distinct so graphs can be compared by data.
+     */
+    private static void change(GraphImplementation<Integer, String> graph, Random random, int steps) {
+	List<Graph.Node<Integer, String>> nodes = new ArrayList<Graph.Node<Integer, String>>();
+	List<Graph.Edge<Integer, String>> edges = new ArrayList<Graph.Edge<Integer, String>>();
+	int next = 0;
+	for(int step = 0; step < steps; step++) {
+	    int op = random.nextInt(10);
+	    if(op < 3 || nodes.size() < 2) {
+		nodes.add(graph.addNode(next++));
+	    } else if(op < 6) {
+		edges.add(graph.addEdge("e" + step, pick(nodes, random), pick(nodes, random)));
+	    } else if(op == 6) {
+		Graph.Node<Integer, String> node = nodes.remove(random.nextInt(nodes.size()));
+		graph.removeNode(node);
+		edges.retainAll(graph.getEdges());
+	    } else if(edges.isEmpty()) {
+		pick(nodes, random).setData(next++);
+	    } else if(op == 7) {
+		graph.removeEdge(edges.remove(random.nextInt(edges.size())));
+	    } else if(op == 8) {
+		pick(edges, random).setData("d" + step);
+	    } else if(random.nextBoolean()) {
+		pick(edges, random).setTail(pick(nodes, random));
+	    } else {
+		pick(edges, random).setHead(pick(nodes, random));
+	    }
+	}
+    }
+
+    private static <T> T pick(List<T> list, Random random) {
+	return list.get(random.nextInt(list.size()));
+    }
+
+    /**
+     *  Describes a graph by its sorted node data and sorted edges, which
+     *  identifies it when node data are distinct.
+     */
+    private static String describe(Graph<Integer, String> graph) {
+	List<Integer> nodes = new ArrayList<Integer>();
+	for(Graph.Node<Integer, String> node : graph.getNodes()) {
+	    nodes.add(node.getData());
+	}
+	List<String> edges = new ArrayList<String>();
+	for(Graph.Edge<Integer, String> edge : graph.getEdges()) {
+	    edges.add(edge.getTail().getData() + " -> " + edge.getHead().getData() + " : " + edge.getData());
+	}
+	Collections.sort(nodes);
+	Collections.sort(edges);
+	return nodes + "\n" + edges;
+    }
+
+    private static void report(String what, String expected, String actual) {
+	if(expected.equals(actual)) {
+	    System.out.println(what + ": graph recovered.");
+	} else {
+	    System.out.println(what + ": graph differs.");
+	}
+    }
+
+    /**
+     *  Copies the files of a journal directory.  A file the flusher
+     *  deletes while it is being copied belongs to an older generation
+     *  that recovery no longer needs.
+     */
+    private static void copy(Path from, Path to) throws IOException {
+	try(DirectoryStream<Path> stream = Files.newDirectoryStream(from)) {
+	    for(Path path : stream) {
+		try {
+		    Files.copy(path, to.resolve(path.getFileName()));
+		} catch(NoSuchFileException e) {
+		    // deleted by a checkpoint in the meantime
+		}
+	    }
+	}
+    }
+
+    /**
+     *  Appends half a batch to the newest log, as a crash part way
+     *  through a write would leave it.
+     */
+    private static void tear(Path dir) throws IOException {
+	Path newest = null;
+	long generation = -1;
+	try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "journal-*")) {
+	    for(Path path : stream) {
+		long g = Long.parseLong(path.getFileName().toString().substring("journal-".length()));
+		if(g > generation) {
+		    generation = g;
+		    newest = path;
+		}
+	    }
+	}
+	try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(newest, StandardOpenOption.APPEND))) {
+	    out.writeInt(100);
+	    out.writeInt(0);
+	    out.write(new byte[40]);
+	}
+    }
+
+    private static void delete(Path dir) throws IOException {
+	try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+	    for(Path path : stream) {
+		Files.delete(path);
+	    }
+	}
+	Files.delete(dir);
+    }
+
+    public static void main(String[] args) throws IOException {
+	new TestJournal().execute();
+    }
+}
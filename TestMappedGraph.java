@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ *  Tests that MappedGraph.open rejects damaged files with an
+ *  IOException: offsets that do not start at 0, decrease or do not end
+ *  at m, edges listed under the wrong node or pointing at missing
+ *  nodes, and impossible counts, as well as random damage anywhere in
+ *  the file.
+ */
+public class TestMappedGraph {
+    /** The number of random ints to damage, one file each. */
+    private static final int DAMAGES = 300;
+
+    /** Write a graph, damage copies of it, and open them. */
+    public void execute() throws IOException {
+	Random random = new Random(212);
+	GraphBuilder<Integer,Integer> builder = new GraphBuilder<Integer,Integer>();
+	int n = 200;
+	int m = 1000;
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	for(int e = 0; e < m; e++) {
+	    builder.addEdge(e, random.nextInt(n), random.nextInt(n));
+	}
+	ToIntFunction<Integer> identity = new ToIntFunction<Integer>() {
+		public int applyAsInt(Integer x) {
+		    return x;
+		}
+	    };
+	Path file = Files.createTempFile("mapped", ".graph");
+	Path copy = Files.createTempFile("damaged", ".graph");
+	try {
+	    MappedGraph.write(file, builder.build(), identity, identity);
+	    System.out.println("Intact file: valid " + MappedGraph.open(file).validateGraph());
+
+	    long outOffsets = 16 + 4L * n;
+	    long edgeTail = outOffsets + 4L * (n + 1);
+	    long edgeHead = edgeTail + 4L * m;
+	    long inOffsets = edgeHead + 8L * m;
+	    long inEdges = inOffsets + 4L * (n + 1);
+	    long[][] damages = {
+		{ 8, -1 },                          // negative node count
+		{ 12, Integer.MAX_VALUE },          // impossible edge count
+		{ outOffsets, 1 },                  // offsets not starting at 0
+		{ outOffsets + 4L * n, m - 1 },     // offsets not ending at m
+		{ outOffsets + 4L * (n / 2), m + 5 },  // offsets past the edges
+		{ inOffsets + 4L * (n / 2), -3 },   // offsets decreasing
+		{ edgeTail + 4L * (m / 2), n },     // edge under a missing tail
+		{ edgeHead + 4L * (m / 3), n },     // head out of range
+		{ edgeHead + 4L * (m / 3), -1 },    // head negative
+		{ inEdges + 4L * (m / 4), m },      // incoming edge out of range
+	    };
+	    int rejected = 0;
+	    for(long[] damage : damages) {
+		if(damaged(file, copy, damage[0], (int)damage[1]) == null) {
+		    rejected++;
+		}
+	    }
+	    System.out.println("Damaged files: " + rejected + " of " + damages.length + " rejected.");
+
+	    // damage anywhere must be rejected or leave a valid graph
+	    long size = Files.size(file);
+	    int failures = 0;
+	    for(int i = 0; i < DAMAGES; i++) {
+		long position = 4L * random.nextInt((int)(size / 4));
+		int value = random.nextBoolean() ? random.nextInt() : random.nextInt(2 * n) - n / 2;
+		Boolean valid = damaged(file, copy, position, value);
+		if(valid != null && !valid) {
+		    failures++;
+		}
+	    }
+	    System.out.println("Random damage: " + (DAMAGES - failures) + " of " + DAMAGES
+			       + " files rejected or still valid.");
+
+	    // a source that changes its edges between passes
+	    final int[] pass = new int[1];
+	    boolean refused = false;
+	    try {
+		MappedGraph.write(copy, 3, 2, new IntUnaryOperator() {
+			public int applyAsInt(int v) {
+			    return v;
+			}
+		    }, new MappedGraph.EdgeSource() {
+			public void edges(MappedGraph.EdgeSink sink) {
+			    pass[0]++;
+			    sink.edge(0, 1, 0);
+			    sink.edge(pass[0] == 1 ? 1 : 2, 2, 0);
+			}
+		    });
+	    } catch(IOException e) {
+		refused = true;
+	    }
+	    System.out.println("Changing edge source: rejected " + refused);
+	} finally {
+	    Files.deleteIfExists(file);
+	    Files.deleteIfExists(copy);
+	}
+    }
+
+    /**
+     *  Copies a graph file, writes one int into the copy, and opens it.
+     *  Any other exception from open is let through.
+     *
+     *  @return null if open threw an IOException, else whether the
+     *          opened graph is valid
+     */
+    private static Boolean damaged(Path file, Path copy, long position, int value) throws IOException {
+	Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+	try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+	    ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+	    buffer.putInt(value).flip();
+	    channel.write(buffer, position);
+	}
+	MappedGraph graph;
+	try {
+	    graph = MappedGraph.open(copy);
+	} catch(IOException e) {
+	    return null;
+	}
+	return graph.validateGraph();
+    }
+
+    public static void main(String[] args) throws IOException {
+	new TestMappedGraph().execute();
+    }
+}
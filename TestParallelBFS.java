@@ -0,0 +1,195 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *  Tests parallelBreadthFirstTraversal against breadthFirstTraversal on
+ *  random graphs large enough that the traversal goes bottom-up and
+ *  splits its bottom-up steps across tasks: it must reach the same
+ *  nodes, process each of them and each of their edges once, and finish
+ *  every level before starting the next.  Also tests that it stops when
+ *  the processor returns true.
+ */
+public class TestParallelBFS {
+    /** The number of random graphs to try. */
+    private static final int GRAPHS = 6;
+
+    /** Create random graphs and compare the parallel traversal with the serial one. */
+    public void execute() {
+	Random random = new Random(212);
+	ForkJoinPool pool = new ForkJoinPool(4);
+	GraphTraverser<Integer,Integer> traverser = new GraphTraverser<Integer,Integer>();
+	int failures = 0;
+	int stopped = 0;
+	for(int g = 0; g < GRAPHS; g++) {
+	    // well over 64 * GRAIN nodes, and enough edges per node that a
+	    // middle level holds more than 1/ALPHA of the unexplored edges
+	    int n = 20000 + random.nextInt(30000);
+	    GraphImplementation<Integer,Integer> graph = randomGraph(random, n, (4 + random.nextInt(8)) * n);
+	    GraphSnapshot<Integer,Integer> snapshot = GraphSnapshot.of(graph);
+	    Graph.Node<Integer,Integer> start = snapshot.sourceNode(random.nextInt(n));
+
+	    final int[] level = new int[n];
+	    final int[] edges = new int[1];
+	    Arrays.fill(level, -1);
+	    level[start.getData()] = 0;
+	    traverser.breadthFirstTraversal(start, new Graph.Processor<Integer,Integer>() {
+		    public boolean preProcessNode(Graph.Node<Integer,Integer> node) {
+			return false;
+		    }
+
+		    public boolean processEdge(Graph.Edge<Integer,Integer> edge) {
+			edges[0]++;
+			int head = edge.getHead().getData();
+			if(level[head] < 0) {
+			    level[head] = level[edge.getTail().getData()] + 1;
+			}
+			return false;
+		    }
+
+		    public boolean postProcessNode(Graph.Node<Integer,Integer> node) {
+			return false;
+		    }
+		});
+
+	    Recorder recorder = new Recorder(n, -1);
+	    boolean result = traverser.parallelBreadthFirstTraversal(snapshot, start, recorder, pool);
+	    if(result || !recorder.matches(level, edges[0])) {
+		System.out.println("Graph " + g + ": parallel traversal differs.");
+		failures++;
+	    }
+
+	    // stop at a node two or more levels down
+	    int target = -1;
+	    for(int v = 0; v < n && target < 0; v++) {
+		if(level[v] >= 2) {
+		    target = v;
+		}
+	    }
+	    Recorder stopper = new Recorder(n, target);
+	    if(target >= 0 && traverser.parallelBreadthFirstTraversal(snapshot, start, stopper, pool)
+	       && stopper.preSeq.get(target) >= 0 && stopper.beyond(level, level[target]) == 0) {
+		stopped++;
+	    }
+	}
+	pool.shutdown();
+	if(failures == 0) {
+	    System.out.println("Parallel BFS: all " + GRAPHS + " graphs match breadthFirstTraversal.");
+	} else {
+	    System.out.println("Parallel BFS: " + failures + " graphs differ.");
+	}
+	System.out.println("Parallel BFS: stopped early on " + stopped + " of " + GRAPHS + " graphs.");
+    }
+
+    /**
+     *  Builds a random graph whose node data are their indices.
+     */
+    private static GraphImplementation<Integer,Integer> randomGraph(Random random, int n, int m) {
+	GraphBuilder<Integer,Integer> builder = new GraphBuilder<Integer,Integer>(n, m);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	for(int e = 0; e < m; e++) {
+	    builder.addEdge(e, random.nextInt(n), random.nextInt(n));
+	}
+	return builder.build();
+    }
+
+    /**
+     *  A thread-safe processor that numbers each node's pre- and
+     *  post-processing calls in the order they happen, counts the edges
+     *  it sees, and asks to stop at a target node.
+     */
+    private static class Recorder implements Graph.Processor<Integer,Integer> {
+	/** The next number to hand out. */
+	private final AtomicInteger clock = new AtomicInteger();
+	/** The number of each node's preProcessNode call, or -1. */
+	final AtomicIntegerArray preSeq;
+	/** The number of each node's postProcessNode call, or -1. */
+	final AtomicIntegerArray postSeq;
+	/** The number of times each node was pre-processed. */
+	final AtomicIntegerArray visits;
+	/** The number of edges processed. */
+	final AtomicInteger edges = new AtomicInteger();
+	/** The node to stop at, or -1. */
+	private final int target;
+
+	Recorder(int n, int target) {
+	    this.target = target;
+	    preSeq = new AtomicIntegerArray(n);
+	    postSeq = new AtomicIntegerArray(n);
+	    visits = new AtomicIntegerArray(n);
+	    for(int v = 0; v < n; v++) {
+		preSeq.set(v, -1);
+		postSeq.set(v, -1);
+	    }
+	}
+
+	public boolean preProcessNode(Graph.Node<Integer,Integer> node) {
+	    int v = node.getData();
+	    visits.incrementAndGet(v);
+	    preSeq.set(v, clock.getAndIncrement());
+	    return v == target;
+	}
+
+	public boolean processEdge(Graph.Edge<Integer,Integer> edge) {
+	    edges.incrementAndGet();
+	    return false;
+	}
+
+	public boolean postProcessNode(Graph.Node<Integer,Integer> node) {
+	    postSeq.set(node.getData(), clock.getAndIncrement());
+	    return false;
+	}
+
+	/**
+	 *  Were exactly the nodes with a level visited, each once, with
+	 *  every node of a level post-processed before any node of the
+	 *  next was pre-processed, and were all the edges processed?
+	 */
+	boolean matches(int[] level, int numEdges) {
+	    int depth = 0;
+	    for(int v = 0; v < level.length; v++) {
+		if(visits.get(v) != ((level[v] >= 0) ? 1 : 0)) {
+		    return false;
+		}
+		depth = Math.max(depth, level[v]);
+	    }
+	    int[] firstPre = new int[depth + 2];
+	    int[] lastPost = new int[depth + 1];
+	    Arrays.fill(firstPre, Integer.MAX_VALUE);
+	    Arrays.fill(lastPost, -1);
+	    for(int v = 0; v < level.length; v++) {
+		if(level[v] >= 0) {
+		    if(postSeq.get(v) < preSeq.get(v)) {
+			return false;
+		    }
+		    firstPre[level[v]] = Math.min(firstPre[level[v]], preSeq.get(v));
+		    lastPost[level[v]] = Math.max(lastPost[level[v]], postSeq.get(v));
+		}
+	    }
+	    for(int l = 0; l < depth; l++) {
+		if(lastPost[l] > firstPre[l + 1]) {
+		    return false;
+		}
+	    }
+	    return edges.get() == numEdges;
+	}
+
+	/** @return the number of nodes pre-processed below the given level */
+	int beyond(int[] level, int maxLevel) {
+	    int count = 0;
+	    for(int v = 0; v < level.length; v++) {
+		if(preSeq.get(v) >= 0 && level[v] > maxLevel) {
+		    count++;
+		}
+	    }
+	    return count;
+	}
+    }
+
+    public static void main(String[] args) {
+	new TestParallelBFS().execute();
+    }
+}
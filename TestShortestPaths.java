@@ -0,0 +1,161 @@
+import java.util.*;
+
+/**
+ *  Tests ShortestPaths against Bellman-Ford on random graphs: single
+ *  pair, single source and k-nearest queries must give the reference
+ *  distances, and the paths returned must be real paths of that length.
+ */
+public class TestShortestPaths {
+    /** The number of random graphs to try. */
+    private static final int GRAPHS = 40;
+    /** The number of queries of each kind on each graph. */
+    private static final int QUERIES = 30;
+
+    /** Create random graphs and compare the engine with the reference on them. */
+    public void execute() {
+	Random random = new Random(212);
+	int failures = 0;
+	for(int g = 0; g < GRAPHS; g++) {
+	    GraphSnapshot<Integer, Integer> snapshot = randomGraph(random, 1 + random.nextInt(150),
+								   random.nextInt(600), (g % 2 == 0) ? 5 : 2000);
+	    int n = snapshot.numNodes();
+	    ShortestPaths<Integer, Integer> dijkstra = ShortestPaths.of(snapshot);
+	    for(int q = 0; q < QUERIES; q++) {
+		int source = random.nextInt(n);
+		int target = random.nextInt(n);
+		long[] expected = bellmanFord(snapshot, source);
+
+		long found = dijkstra.distance(source, target);
+		if(found != expected[target] || !isPath(snapshot, dijkstra.pathTo(target), source, target, found)) {
+		    System.out.println("Pair " + source + " to " + target + ": found " + found
+				       + ", expected " + expected[target] + ".");
+		    failures++;
+		}
+
+		int reached = dijkstra.fromSource(source);
+		int reachable = 0;
+		for(int v = 0; v < n; v++) {
+		    if(expected[v] >= 0) {
+			reachable++;
+		    }
+		    if(dijkstra.distanceTo(v) != expected[v]
+		       || !isPath(snapshot, dijkstra.pathTo(v), source, v, expected[v])) {
+			System.out.println("From " + source + ": distance to " + v + " is " + dijkstra.distanceTo(v)
+					   + ", expected " + expected[v] + ".");
+			failures++;
+		    }
+		}
+		if(reached != reachable) {
+		    failures++;
+		}
+
+		int k = 1 + random.nextInt(n);
+		int[] nearest = new int[k];
+		int count = dijkstra.nearest(source, k, nearest);
+		long[] sorted = expected.clone();
+		Arrays.sort(sorted);
+		int first = 0;
+		while(sorted[first] < 0) {
+		    first++;
+		}
+		if(count != Math.min(k, reachable) || nearest[0] != source) {
+		    failures++;
+		} else {
+		    for(int i = 0; i < count; i++) {
+			if(expected[nearest[i]] != sorted[first + i]) {
+			    System.out.println("Nearest " + i + " to " + source + " is at " + expected[nearest[i]]
+					       + ", expected " + sorted[first + i] + ".");
+			    failures++;
+			}
+		    }
+		}
+	    }
+	}
+	if(failures == 0) {
+	    System.out.println("Dijkstra: all " + GRAPHS * QUERIES + " sources match Bellman-Ford.");
+	} else {
+	    System.out.println("Dijkstra: " + failures + " results differ.");
+	}
+
+	// ids out of range are rejected before any search
+	ShortestPaths<Integer, Integer> small = ShortestPaths.of(randomGraph(random, 5, 10, 10));
+	int rejected = 0;
+	int[][] pairs = { { 0, 5 }, { 0, -1 }, { 5, 0 }, { -1, 0 } };
+	for(int[] pair : pairs) {
+	    try {
+		small.distance(pair[0], pair[1]);
+	    } catch(Error e) {
+		rejected++;
+	    }
+	}
+	System.out.println("Out-of-range ids: " + rejected + " of " + pairs.length + " rejected.");
+    }
+
+    /**
+     *  Builds a random graph with random weights from 0 to maxWeight - 1.
+     */
+    private static GraphSnapshot<Integer, Integer> randomGraph(Random random, int n, int m, int maxWeight) {
+	GraphBuilder<Integer, Integer> builder = new GraphBuilder<Integer, Integer>(n, m);
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	for(int e = 0; e < m; e++) {
+	    builder.addEdge(random.nextInt(maxWeight), random.nextInt(n), random.nextInt(n));
+	}
+	return builder.buildSnapshot();
+    }
+
+    /**
+     *  Returns the distance from source to every node, or -1 for the
+     *  nodes it cannot reach, by relaxing every edge until nothing
+     *  changes.
+     */
+    private static long[] bellmanFord(GraphSnapshot<Integer, Integer> snapshot, int source) {
+	long[] distance = new long[snapshot.numNodes()];
+	Arrays.fill(distance, -1);
+	distance[source] = 0;
+	boolean changed = true;
+	while(changed) {
+	    changed = false;
+	    for(int e = 0; e < snapshot.numEdges(); e++) {
+		long through = distance[snapshot.tail(e)];
+		if(through >= 0) {
+		    through += snapshot.edgeData(e);
+		    int head = snapshot.head(e);
+		    if(distance[head] < 0 || through < distance[head]) {
+			distance[head] = through;
+			changed = true;
+		    }
+		}
+	    }
+	}
+	return distance;
+    }
+
+    /**
+     *  Is a list of edge ids a path from source to target of the given
+     *  length?  A length of -1 means there should be no path at all.
+     */
+    static boolean isPath(GraphSnapshot<?, Integer> snapshot, int[] path, int source, int target, long length) {
+	if(length < 0) {
+	    return path == null;
+	}
+	if(path == null) {
+	    return false;
+	}
+	int at = source;
+	long total = 0;
+	for(int e : path) {
+	    if(snapshot.tail(e) != at) {
+		return false;
+	    }
+	    total += snapshot.edgeData(e);
+	    at = snapshot.head(e);
+	}
+	return at == target && total == length;
+    }
+
+    public static void main(String[] args) {
+	new TestShortestPaths().execute();
+    }
+}
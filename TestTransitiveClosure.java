@@ -0,0 +1,110 @@
+import java.util.*;
+
+/**
+ *  Tests TransitiveClosure against MultiSourceBFS.reachable: every pair
+ *  of nodes must be answered the same way, the reachable counts must
+ *  agree, and two nodes must share a component exactly when each can
+ *  reach the other.  Small random graphs of every density cover the
+ *  serial fill; layered graphs with more than PARALLEL_THRESHOLD
+ *  components on a level cover the parallel one.
+ */
+public class TestTransitiveClosure {
+    /** The number of small random graphs to try. */
+    private static final int GRAPHS = 300;
+    /** The number of large layered graphs to try. */
+    private static final int LAYERED = 4;
+
+    /** Create random graphs and compare their closures with BFS. */
+    public void execute() {
+	Random random = new Random(212);
+	int failures = 0;
+	for(int g = 0; g < GRAPHS; g++) {
+	    int n = 1 + random.nextInt(120);
+	    // from nearly empty to dense enough to be one big component
+	    int m = random.nextInt(1 + n * (1 + g % 6));
+	    GraphBuilder<Integer,Integer> builder = nodes(n);
+	    for(int e = 0; e < m; e++) {
+		builder.addEdge(e, random.nextInt(n), random.nextInt(n));
+	    }
+	    if(!agrees(builder.buildSnapshot())) {
+		System.out.println("Random graph " + g + " of " + n + " nodes and " + m + " edges differs.");
+		failures++;
+	    }
+	}
+	System.out.println("Closure: " + (GRAPHS - failures) + " of " + GRAPHS + " random graphs agree with BFS.");
+
+	failures = 0;
+	for(int g = 0; g < LAYERED; g++) {
+	    // layers of 300 to 700 nodes with edges only down to the next
+	    // layer and a few short cycles within a layer, so each level of
+	    // the condensation has hundreds of components
+	    int layers = 3 + random.nextInt(3);
+	    int width = 300 + random.nextInt(400);
+	    int n = layers * width;
+	    GraphBuilder<Integer,Integer> builder = nodes(n);
+	    for(int l = 0; l + 1 < layers; l++) {
+		for(int e = 0; e < 2 * width; e++) {
+		    builder.addEdge(e, l * width + random.nextInt(width), (l + 1) * width + random.nextInt(width));
+		}
+	    }
+	    for(int e = 0; e < width / 4; e++) {
+		int v = random.nextInt(n - 1);
+		if((v + 1) % width != 0) {
+		    builder.addEdge(e, v, v + 1);
+		    builder.addEdge(e, v + 1, v);
+		}
+	    }
+	    GraphSnapshot<Integer,Integer> snapshot = builder.buildSnapshot();
+	    if(!agrees(snapshot)) {
+		System.out.println("Layered graph " + g + " of " + n + " nodes differs.");
+		failures++;
+	    }
+	}
+	System.out.println("Closure: " + (LAYERED - failures) + " of " + LAYERED
+			   + " layered graphs agree with BFS.");
+    }
+
+    /**
+     *  Returns a builder holding n nodes whose data are their indices.
+     */
+    private static GraphBuilder<Integer,Integer> nodes(int n) {
+	GraphBuilder<Integer,Integer> builder = new GraphBuilder<Integer,Integer>();
+	for(int v = 0; v < n; v++) {
+	    builder.addNode(v);
+	}
+	return builder;
+    }
+
+    /**
+     *  Does the closure of a snapshot agree with BFS from every node?
+     */
+    private static boolean agrees(GraphSnapshot<Integer,Integer> snapshot) {
+	int n = snapshot.numNodes();
+	TransitiveClosure<Integer,Integer> closure = new TransitiveClosure<Integer,Integer>(snapshot);
+	int[] sources = new int[n];
+	for(int v = 0; v < n; v++) {
+	    sources[v] = v;
+	}
+	BitSet[] reachable = new MultiSourceBFS<Integer,Integer>(snapshot).reachable(sources);
+	for(int u = 0; u < n; u++) {
+	    if(closure.reachableCount(u) != reachable[u].cardinality()) {
+		return false;
+	    }
+	    for(int v = 0; v < n; v++) {
+		boolean reaches = reachable[u].get(v);
+		if(closure.canReach(u, v) != reaches) {
+		    return false;
+		}
+		boolean together = closure.componentOf(u) == closure.componentOf(v);
+		if(together != (reaches && reachable[v].get(u))) {
+		    return false;
+		}
+	    }
+	}
+	return true;
+    }
+
+    public static void main(String[] args) {
+	new TestTransitiveClosure().execute();
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.*;
+
+/**
+ *  Tests VersionedGraph by making random changes to it and to a
+ *  GraphImplementation side by side, pinning versions along the way.
+ *  Once all the changes are made, each pinned version must still show
+ *  exactly the nodes and edges the reference had when it was pinned,
+ *  and the current version must match the reference and be valid.
+ */
+public class TestVersionedGraph {
+    /** The number of random changes to make. */
+    private static final int CHANGES = 20000;
+    /** Pin a version after every this many changes. */
+    private static final int PIN_EVERY = 250;
+
+    /** The versioned graph under test. */
+    private final VersionedGraph<Integer,Integer> versioned = new VersionedGraph<Integer,Integer>();
+    /** The reference graph. */
+    private final Graph<Integer,Integer> reference = new GraphImplementation<Integer,Integer>();
+    /** The live nodes of the versioned graph. */
+    private final List<Graph.Node<Integer,Integer>> vNodes = new ArrayList<Graph.Node<Integer,Integer>>();
+    /** The reference nodes, in the same order. */
+    private final List<Graph.Node<Integer,Integer>> rNodes = new ArrayList<Graph.Node<Integer,Integer>>();
+    /** The live edges of the versioned graph. */
+    private final List<Graph.Edge<Integer,Integer>> vEdges = new ArrayList<Graph.Edge<Integer,Integer>>();
+    /** The reference edges, in the same order. */
+    private final List<Graph.Edge<Integer,Integer>> rEdges = new ArrayList<Graph.Edge<Integer,Integer>>();
+    /** The data to give the next node, so every node's data is unique. */
+    private int nextData = 0;
+
+    /** Make the changes, pinning as we go, and check every pinned version. */
+    public void execute() {
+	Random random = new Random(212);
+	List<VersionedGraph<Integer,Integer>.Version> pinned = new ArrayList<VersionedGraph<Integer,Integer>.Version>();
+	List<String> expected = new ArrayList<String>();
+	List<Long> numbers = new ArrayList<Long>();
+	for(int i = 0; i < CHANGES; i++) {
+	    if(i % PIN_EVERY == 0) {
+		VersionedGraph<Integer,Integer>.Version version = versioned.pin();
+		pinned.add(version);
+		numbers.add(versioned.version());
+		expected.add(describe(reference));
+	    }
+	    change(random);
+	}
+
+	int differ = 0;
+	int invalid = 0;
+	for(int p = 0; p < pinned.size(); p++) {
+	    VersionedGraph<Integer,Integer>.Version version = pinned.get(p);
+	    if(!describe(version).equals(expected.get(p)) || version.getVersionNumber() != numbers.get(p)) {
+		differ++;
+	    }
+	    if(!version.validateGraph()) {
+		invalid++;
+	    }
+	}
+	System.out.println("Pinned versions: " + differ + " of " + pinned.size() + " changed, "
+			   + invalid + " invalid.");
+
+	boolean readOnly = false;
+	try {
+	    pinned.get(pinned.size() - 1).addNode(0);
+	} catch(Error e) {
+	    readOnly = true;
+	}
+	System.out.println("Pinned versions read-only: " + readOnly);
+	System.out.println("Current version: valid " + versioned.validateGraph() + ", matches reference "
+			   + describe(versioned).equals(describe(reference)) + ", " + versioned.numNodes()
+			   + " nodes and " + versioned.numEdges() + " edges.");
+    }
+
+    /**
+     *  Makes the same random change to both graphs.
+     */
+    private void change(Random random) {
+	int op = random.nextInt(10);
+	if(op < 2 || vNodes.size() < 2) {
+	    vNodes.add(versioned.addNode(nextData));
+	    rNodes.add(reference.addNode(nextData));
+	    nextData++;
+	} else if(op < 5 || vEdges.isEmpty()) {
+	    int t = random.nextInt(vNodes.size());
+	    int h = random.nextInt(vNodes.size());
+	    int data = random.nextInt(1000);
+	    vEdges.add(versioned.addEdge(data, vNodes.get(t), vNodes.get(h)));
+	    rEdges.add(reference.addEdge(data, rNodes.get(t), rNodes.get(h)));
+	} else if(op < 6) {
+	    int e = random.nextInt(vEdges.size());
+	    versioned.removeEdge(vEdges.get(e));
+	    reference.removeEdge(rEdges.get(e));
+	    dropEdge(e);
+	} else if(op < 7) {
+	    int v = random.nextInt(vNodes.size());
+	    Graph.Node<Integer,Integer> node = rNodes.get(v);
+	    versioned.removeNode(vNodes.get(v));
+	    reference.removeNode(node);
+	    for(int e = rEdges.size() - 1; e >= 0; e--) {
+		if(rEdges.get(e).getTail() == node || rEdges.get(e).getHead() == node) {
+		    dropEdge(e);
+		}
+	    }
+	    vNodes.set(v, vNodes.get(vNodes.size() - 1));
+	    vNodes.remove(vNodes.size() - 1);
+	    rNodes.set(v, rNodes.get(rNodes.size() - 1));
+	    rNodes.remove(rNodes.size() - 1);
+	} else if(op < 8) {
+	    int v = random.nextInt(vNodes.size());
+	    vNodes.get(v).setData(nextData);
+	    rNodes.get(v).setData(nextData);
+	    nextData++;
+	} else if(op < 9) {
+	    int e = random.nextInt(vEdges.size());
+	    int data = random.nextInt(1000);
+	    vEdges.get(e).setData(data);
+	    rEdges.get(e).setData(data);
+	} else {
+	    int e = random.nextInt(vEdges.size());
+	    int v = random.nextInt(vNodes.size());
+	    if(random.nextBoolean()) {
+		vEdges.get(e).setTail(vNodes.get(v));
+		rEdges.get(e).setTail(rNodes.get(v));
+	    } else {
+		vEdges.get(e).setHead(vNodes.get(v));
+		rEdges.get(e).setHead(rNodes.get(v));
+	    }
+	}
+    }
+
+    /**
+     *  Forgets the e-th edge of both graphs.
+     */
+    private void dropEdge(int e) {
+	vEdges.set(e, vEdges.get(vEdges.size() - 1));
+	vEdges.remove(vEdges.size() - 1);
+	rEdges.set(e, rEdges.get(rEdges.size() - 1));
+	rEdges.remove(rEdges.size() - 1);
+    }
+
+    /**
+     *  Describes a graph whose node data are unique, in a form that does
+     *  not depend on the order of its sets: the sorted node data, the
+     *  sorted edges, and each node's sorted outgoing and incoming edges.
+     */
+    private static String describe(Graph<Integer,Integer> g) {
+	List<Integer> nodes = new ArrayList<Integer>();
+	List<String> adjacency = new ArrayList<String>();
+	for(Graph.Node<Integer,Integer> node : g.getNodes()) {
+	    nodes.add(node.getData());
+	    adjacency.add(node.getData() + " out " + edges(node.getOutgoingEdges())
+			  + " in " + edges(node.getIncomingEdges()));
+	}
+	Collections.sort(nodes);
+	Collections.sort(adjacency);
+	return g.numNodes() + " " + nodes + "\n" + g.numEdges() + " " + edges(g.getEdges()) + "\n" + adjacency;
+    }
+
+    /**
+     *  Describes a set of edges as a sorted list of tail, head and data.
+     */
+    private static List<String> edges(Set<Graph.Edge<Integer,Integer>> set) {
+	List<String> edges = new ArrayList<String>();
+	for(Graph.Edge<Integer,Integer> edge : set) {
+	    edges.add(edge.getTail().getData() + "->" + edge.getHead().getData() + ":" + edge.getData());
+	}
+	Collections.sort(edges);
+	return edges;
+    }
+
+    public static void main(String[] args) {
+	new TestVersionedGraph().execute();
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ *  The reachability relation of a GraphSnapshot, computed once so that
+ *  "can x reach y" is answered in O(1).  Nodes that can reach each other
+ *  -- the strongly connected components -- reach exactly the same
+ *  nodes, so the graph is first condensed into its components, which
+ *  form a DAG.  Each component then gets a row of bits, one per
+ *  component, set for the components it can reach.  A row is its own
+ *  bit ORed with the rows of the components its edges lead to, so the
+ *  rows are filled in reverse topological order: the components are
+ *  grouped into levels by the length of the longest path leaving them,
+ *  and all the rows of one level, which depend only on lower levels,
+ *  are computed in parallel.
+ *
+ *  The matrix takes c*c bits for c components, so tens of thousands of
+ *  components fit in a few hundred megabytes.  Reachability is
+ *  reflexive: every node can reach itself.
+ */
+public class TransitiveClosure<N,E> {
+    /** Levels with fewer components than this are done on one thread. */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    /** The graph whose reachability this is. */
+    private final GraphSnapshot<N,E> snapshot;
+    /** The component of each node. */
+    private final int[] component;
+    /** The number of components. */
+    private final int numComponents;
+    /** The reachability row of each component. */
+    private final long[][] rows;
+
+    /**
+     *  Computes the transitive closure of a snapshot.
+     *  Performance: O(n + e + c * (edges between components) / 64),
+     *  the last term divided among the available cores
+     *
+     *  @param snapshot : the graph
+     */
+    public TransitiveClosure(GraphSnapshot<N,E> snapshot) {
+	this.snapshot = snapshot;
+	StronglyConnectedComponents<N,E> components = StronglyConnectedComponents.of(snapshot);
+	this.component = components.components();
+	this.numComponents = components.numComponents();
+	this.rows = new long[numComponents][];
+
+	// the condensation, as lists of successor components; components
+	// are numbered so that every edge between two components goes from
+	// a higher number to a lower one
+	final int[][] successors = condense(components);
+	int[] level = new int[numComponents];
+	int maxLevel = 0;
+	for(int c = 0; c < numComponents; c++) {
+	    for(int d : successors[c]) {
+		level[c] = Math.max(level[c], level[d] + 1);
+	    }
+	    maxLevel = Math.max(maxLevel, level[c]);
+	}
+	int[][] byLevel = StronglyConnectedComponents.group(level, maxLevel + 1);
+
+	final int words = (numComponents + 63) >>> 6;
+	for(int[] members : byLevel) {
+	    if(members.length < PARALLEL_THRESHOLD) {
+		fill(members, 0, members.length, successors, words);
+		continue;
+	    }
+	    int chunks = Math.min(members.length / (PARALLEL_THRESHOLD / 4),
+				  4 * Runtime.getRuntime().availableProcessors());
+	    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	    final int[] group = members;
+	    for(int i = 0; i < chunks; i++) {
+		final int from = (int)((long)members.length * i / chunks);
+		final int to = (int)((long)members.length * (i + 1) / chunks);
+		tasks.add(new Callable<Void>() {
+			public Void call() {
+			    fill(group, from, to, successors, words);
+			    return null;
+			}
+		    });
+	    }
+	    for(Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+		try {
+		    future.get();
+		} catch(ExecutionException e) {
+		    throw new Error(e.getCause());
+		} catch(InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new Error(e);
+		}
+	    }
+	}
+    }
+
+    /**
+     *  Can one node reach another?
+     *  Performance: O(1)
+     *
+     *  @param u : the id of the first node
+     *  @param v : the id of the second node
+     *  @return true if there is a path from u to v
+     */
+    public boolean canReach(int u, int v) {
+	int d = component[v];
+	return (rows[component[u]][d >>> 6] & (1L << d)) != 0;
+    }
+
+    /**
+     *  Can one node reach another?
+     *  Performance: O(1) expected
+     *
+     *  @param from : a node of the snapshot or of the graph it was taken from
+     *  @param to   : another such node
+     *  @return true if there is a path from from to to
+     *  @throws Error if either node does not belong to the snapshot
+     */
+    public boolean canReach(Graph.Node<N,E> from, Graph.Node<N,E> to) {
+	int u = snapshot.indexOf(from);
+	int v = snapshot.indexOf(to);
+	if(u < 0 || v < 0) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	return canReach(u, v);
+    }
+
+    /**
+     *  Returns the number of nodes a node can reach, itself included.
+     *  Performance: O(n)
+     *
+     *  @param u : a node id
+     *  @return the number of nodes reachable from u
+     */
+    public int reachableCount(int u) {
+	int count = 0;
+	for(int v = 0; v < component.length; v++) {
+	    if(canReach(u, v)) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    /**
+     *  Returns the strongly connected component of a node.  Two nodes
+     *  are in the same component if and only if each can reach the other.
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return the component number
+     */
+    public int componentOf(int v) {
+	return component[v];
+    }
+
+    /**
+     *  Returns the number of strongly connected components.
+     *  Performance: O(1)
+     *
+     *  @return the number of components
+     */
+    public int numComponents() {
+	return numComponents;
+    }
+
+    /**
+     *  Fills in the rows of some components, all of whose successors'
+     *  rows are already done.
+     */
+    private void fill(int[] members, int from, int to, int[][] successors, int words) {
+	for(int i = from; i < to; i++) {
+	    int c = members[i];
+	    long[] row = new long[words];
+	    row[c >>> 6] |= 1L << c;
+	    for(int d : successors[c]) {
+		long[] other = rows[d];
+		for(int w = 0; w < words; w++) {
+		    row[w] |= other[w];
+		}
+	    }
+	    rows[c] = row;
+	}
+    }
+
+    /**
+     *  Returns, for each component, the distinct components its edges
+     *  lead to.
+     */
+    private int[][] condense(StronglyConnectedComponents<N,E> components) {
+	int[][] successors = new int[numComponents][];
+	int[] lastSeen = new int[numComponents];
+	Arrays.fill(lastSeen, -1);
+	int[] found = new int[numComponents];
+	for(int c = 0; c < numComponents; c++) {
+	    int count = 0;
+	    for(int v : components.members(c)) {
+		for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+		    int d = component[snapshot.head(e)];
+		    if(d != c && lastSeen[d] != c) {
+			lastSeen[d] = c;
+			found[count++] = d;
+		    }
+		}
+	    }
+	    successors[c] = Arrays.copyOf(found, count);
+	}
+	return successors;
+    }
+}
@@ -0,0 +1,343 @@
+import java.util.*;
+
+/**
+ *  Breadth- and depth-first traversals of a GraphSnapshot by dense node
+ *  id.  All of the traversal state -- an int queue, an int stack of DFS
+ *  frames, and a BitSet of visited nodes -- is allocated once, when the
+ *  kernel is created, and reused by every later traversal, so a
+ *  traversal allocates nothing however many nodes it visits.  Only the
+ *  bits set by the previous traversal are cleared when the next one
+ *  starts, so many small traversals of a big graph stay cheap.
+ *
+ *  A kernel is not thread-safe; give each thread its own.
+ *
+ *  Typical use:
+ *
+ *      TraversalKernel<String,Integer> kernel = new TraversalKernel<String,Integer>(graph.snapshot());
+ *      for(int v : sources) {
+ *          kernel.breadthFirst(v, visitor);
+ *          ... kernel.visitedCount(), kernel.visited(i) ...
+ *      }
+ */
+public class TraversalKernel<N,E> {
+    /**
+     *  The primitive counterpart of Graph.Processor, called with node
+     *  and edge ids of the snapshot.
+     */
+    public interface Visitor {
+	/**
+	 *  Called when a node is first reached.
+	 *
+	 *  @param v : the node id
+	 *  @return true if the traversal should be stopped immediately
+	 */
+	boolean preVisit(int v);
+
+	/**
+	 *  Called for each edge leaving a reached node.
+	 *
+	 *  @param e : the edge id
+	 *  @return true if the traversal should be stopped immediately
+	 */
+	boolean visitEdge(int e);
+
+	/**
+	 *  Called when a node is finished: in a breadth-first traversal
+	 *  after its edges, in a depth-first traversal after everything
+	 *  reachable through them.
+	 *
+	 *  @param v : the node id
+	 *  @return true if the traversal should be stopped immediately
+	 */
+	boolean postVisit(int v);
+    }
+
+    /** The graph traversed. */
+    private final GraphSnapshot<N,E> snapshot;
+    /** One bit per node, set for the nodes reached by the last traversal. */
+    private final BitSet visited;
+    /**
+     *  Every node reached by the last traversal, in the order reached.
+     *  A breadth-first traversal uses it as its queue: each node is
+     *  added once, so n slots always suffice.
+     */
+    private final int[] order;
+    /** The number of nodes in order. */
+    private int count;
+    /** The node of each depth-first frame. */
+    private final int[] frameNode;
+    /** The next edge to follow from each depth-first frame. */
+    private final int[] frameEdge;
+
+    /**
+     *  Create a kernel for a snapshot.
+     *  Performance: O(n)
+     *
+     *  @param snapshot : the graph to traverse
+     */
+    public TraversalKernel(GraphSnapshot<N,E> snapshot) {
+	this.snapshot = snapshot;
+	int n = snapshot.numNodes();
+	this.visited = new BitSet(n);
+	this.order = new int[n];
+	this.frameNode = new int[n];
+	this.frameEdge = new int[n];
+    }
+
+    /**
+     *  Returns the snapshot this kernel traverses.
+     *
+     *  @return the snapshot
+     */
+    public GraphSnapshot<N,E> snapshot() {
+	return snapshot;
+    }
+
+    /**
+     *  Performs a breadth-first traversal from a node.
+     *  Performance: O(nodes and edges reached)
+     *
+     *  @param source  : the id of the starting node
+     *  @param visitor : called for each node and edge reached
+     *  @return true if the visitor ever returns true, false otherwise
+     */
+    public boolean breadthFirst(int source, Visitor visitor) {
+	reset();
+	mark(source);
+	int head = 0;
+	while(head < count) {
+	    int v = order[head++];
+	    if(visitor.preVisit(v)) {
+		return true;
+	    }
+	    for(int e = snapshot.outStart(v), end = snapshot.outEnd(v); e < end; e++) {
+		if(visitor.visitEdge(e)) {
+		    return true;
+		}
+		int w = snapshot.head(e);
+		if(!visited.get(w)) {
+		    mark(w);
+		}
+	    }
+	    if(visitor.postVisit(v)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     *  Performs a depth-first traversal from a node.  Each node is
+     *  pre-visited when it is first reached and post-visited once every
+     *  node reachable through it has been, so the post-visits come in
+     *  true post-order.  The recursion is kept in an explicit stack of
+     *  frames, one per node on the current path, so deep graphs cannot
+     *  overflow the call stack.
+     *  Performance: O(nodes and edges reached)
+     *
+     *  @param source  : the id of the starting node
+     *  @param visitor : called for each node and edge reached
+     *  @return true if the visitor ever returns true, false otherwise
+     */
+    public boolean depthFirst(int source, Visitor visitor) {
+	reset();
+	return explore(source, visitor);
+    }
+
+    /**
+     *  Performs depth-first traversals from every node not yet reached,
+     *  in increasing order of id, until every node has been reached.
+     *  The post-visits of the whole forest come in post-order, so a
+     *  visitor recording them gets finish times, and their reverse is a
+     *  topological order if the graph is acyclic.
+     *  Performance: O(n + e)
+     *
+     *  @param visitor : called for each node and edge
+     *  @return true if the visitor ever returns true, false otherwise
+     */
+    public boolean depthFirstForest(Visitor visitor) {
+	reset();
+	for(int v = 0; v < order.length; v++) {
+	    if(!visited.get(v) && explore(v, visitor)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     *  Returns every node in the post-order of a depth-first forest (see
+     *  depthFirstForest).
+     *  Performance: O(n + e)
+     *
+     *  @return the node ids in the order they are finished
+     */
+    public int[] postOrder() {
+	final int[] finished = new int[order.length];
+	depthFirstForest(new Visitor() {
+		private int next;
+
+		public boolean preVisit(int v) {
+		    return false;
+		}
+
+		public boolean visitEdge(int e) {
+		    return false;
+		}
+
+		public boolean postVisit(int v) {
+		    finished[next++] = v;
+		    return false;
+		}
+	    });
+	return finished;
+    }
+
+    /**
+     *  Depth-first search from a node not yet reached, without clearing
+     *  the marks of earlier searches.
+     */
+    private boolean explore(int source, Visitor visitor) {
+	mark(source);
+	if(visitor.preVisit(source)) {
+	    return true;
+	}
+	int top = 0;
+	frameNode[0] = source;
+	frameEdge[0] = snapshot.outStart(source);
+	while(top >= 0) {
+	    int v = frameNode[top];
+	    int e = frameEdge[top];
+	    if(e < snapshot.outEnd(v)) {
+		frameEdge[top] = e + 1;
+		if(visitor.visitEdge(e)) {
+		    return true;
+		}
+		int w = snapshot.head(e);
+		if(!visited.get(w)) {
+		    mark(w);
+		    if(visitor.preVisit(w)) {
+			return true;
+		    }
+		    top++;
+		    frameNode[top] = w;
+		    frameEdge[top] = snapshot.outStart(w);
+		}
+	    } else {
+		top--;
+		if(visitor.postVisit(v)) {
+		    return true;
+		}
+	    }
+	}
+	return false;
+    }
+
+    /**
+     *  Performs a breadth-first traversal from a node, passing the
+     *  processor the nodes and edges of the graph the snapshot was
+     *  taken from.
+     *  Performance: O(nodes and edges reached)
+     *
+     *  @param start     : the starting node
+     *  @param processor : the processing class to be applied to each node/edge
+     *  @return true if the processor ever returns true, false otherwise
+     *  @throws Error if the node does not belong to the snapshot
+     */
+    public boolean breadthFirst(Graph.Node<N,E> start, Graph.Processor<N,E> processor) {
+	return breadthFirst(indexOf(start), new ProcessorVisitor(processor));
+    }
+
+    /**
+     *  Performs a depth-first traversal from a node, passing the
+     *  processor the nodes and edges of the graph the snapshot was
+     *  taken from.
+     *  Performance: O(nodes and edges reached)
+     *
+     *  @param start     : the starting node
+     *  @param processor : the processing class to be applied to each node/edge
+     *  @return true if the processor ever returns true, false otherwise
+     *  @throws Error if the node does not belong to the snapshot
+     */
+    public boolean depthFirst(Graph.Node<N,E> start, Graph.Processor<N,E> processor) {
+	return depthFirst(indexOf(start), new ProcessorVisitor(processor));
+    }
+
+    /**
+     *  Was a node reached by the last traversal?
+     *  Performance: O(1)
+     *
+     *  @param v : a node id
+     *  @return true if the node was reached
+     */
+    public boolean isVisited(int v) {
+	return visited.get(v);
+    }
+
+    /**
+     *  Returns the number of nodes reached by the last traversal.
+     *  Performance: O(1)
+     *
+     *  @return the number of nodes reached
+     */
+    public int visitedCount() {
+	return count;
+    }
+
+    /**
+     *  Returns the i-th node reached by the last traversal.
+     *  Performance: O(1)
+     *
+     *  @param i : an index less than visitedCount()
+     *  @return the node id
+     */
+    public int visited(int i) {
+	return order[i];
+    }
+
+    private int indexOf(Graph.Node<N,E> node) {
+	int v = snapshot.indexOf(node);
+	if(v < 0) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	return v;
+    }
+
+    private void mark(int v) {
+	visited.set(v);
+	order[count++] = v;
+    }
+
+    /**
+     *  Clears the bits set by the last traversal.
+     */
+    private void reset() {
+	for(int i = 0; i < count; i++) {
+	    visited.clear(order[i]);
+	}
+	count = 0;
+    }
+
+    /**
+     *  Adapts a Processor to a Visitor.
+     */
+    private class ProcessorVisitor implements Visitor {
+	private final Graph.Processor<N,E> processor;
+
+	ProcessorVisitor(Graph.Processor<N,E> processor) {
+	    this.processor = processor;
+	}
+
+	public boolean preVisit(int v) {
+	    return processor.preProcessNode(snapshot.sourceNode(v));
+	}
+
+	public boolean visitEdge(int e) {
+	    return processor.processEdge(snapshot.sourceEdge(e));
+	}
+
+	public boolean postVisit(int v) {
+	    return processor.postProcessNode(snapshot.sourceNode(v));
+	}
+    }
+}
@@ -0,0 +1,1087 @@
+import java.util.*;
+
+/**
+ *  A graph that keeps every state it has ever been in as an immutable,
+ *  numbered version.  Each change produces a new version that shares
+ *  all of its unchanged structure with the previous one, so a change
+ *  costs O(log n + log e) rather than a copy of the graph.  Even a
+ *  node's edge lists are shared this way: each edge remembers where it
+ *  sits in its tail's and head's lists, and a removed edge's place is
+ *  filled by the list's last edge, so no change copies a whole list.
+ *
+ *  A reader calls pin() to get the current Version, which is itself a
+ *  read-only Graph, and can traverse it for as long as it likes while
+ *  writers carry on; the version never changes underneath it and no
+ *  lock is taken.  A version is reclaimed by the garbage collector as
+ *  soon as no reader holds it and it is no longer current.
+ *
+ *  Writes are serialized with each other.  Reads through the graph
+ *  itself (getNodes, findEdge, ...) see the version current when they
+ *  were called.  Nodes and edges handed out by the graph are live:
+ *  their getData reads the current version and their setters make new
+ *  versions.  Nodes and edges handed out by a pinned Version read that
+ *  version and cannot be changed.  A live node and a pinned node with
+ *  the same id are equal, so either may be passed to the graph's
+ *  methods.
+ */
+public class VersionedGraph<N,E> implements Graph<N,E> {
+    /** The current version; replaced, never modified, by writers. */
+    private volatile Version current = new Version(0, Trie.EMPTY, Trie.EMPTY, 0, 0);
+
+    /**
+     *  Returns the number of the current version.  It starts at 0 and
+     *  goes up by one with every change.
+     *  Performance: O(1)
+     *
+     *  @return the current version number
+     */
+    public long version() {
+	return current.number;
+    }
+
+    /**
+     *  Pins the current version.  The returned graph will never change,
+     *  whatever writers do afterwards.
+     *  Performance: O(1)
+     *
+     *  @return the current version
+     */
+    public Version pin() {
+	return current;
+    }
+
+    /**
+     *  Get a set of all of the nodes in the current version.  The set
+     *  does not change, but the nodes in it are live.
+     *  Performance: O(1)
+     *
+     *  @return the set of the nodes in the graph
+     */
+    public Set<Node<N,E>> getNodes() {
+	return current.nodeSet(true);
+    }
+
+    /**
+     *  Get a set of all of the edges in the current version.  The set
+     *  does not change, but the edges in it are live.
+     *  Performance: O(1)
+     *
+     *  @return the set of the edges in the graph
+     */
+    public Set<Edge<N,E>> getEdges() {
+	return current.edgeSet(true);
+    }
+
+    /**
+     *  Find a particular edge given its tail and head.
+     *  Performance: O(log n + out-degree of tail)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be found
+     *  @param head : the head ("to" node) of the edge to be found
+     *  @return the live edge, or null if there is no such edge
+     */
+    public Edge<N,E> findEdge(Node<N,E> tail, Node<N,E> head) {
+	int e = current.findEdgeId(tail, head);
+	return (e < 0) ? null : new EdgeHandle(null, e);
+    }
+
+    public int numNodes() {
+	return current.numNodes;
+    }
+
+    public int numEdges() {
+	return current.numEdges;
+    }
+
+    /**
+     *  Adds a node to the graph. The new node will have degree 0.
+     *  Performance: O(log n)
+     *
+     *  @param data : the data to be associated with the node
+     *  @return the new live node
+     */
+    public synchronized Node<N,E> addNode(N data) {
+	Version v = current;
+	int id = v.nodes.size;
+	publish(v.nodes.append(new NodeRec<N>(data, IdList.EMPTY, IdList.EMPTY)), v.edges,
+		v.numNodes + 1, v.numEdges);
+	return new NodeHandle(null, id);
+    }
+
+    /**
+     *  Adds an edge to the graph.
+     *  Performance: O(log n + log e)
+     *
+     *  @param tail : the tail ("from" node) of the edge to be added
+     *  @param head : the head ("to" node) of the edge to be added
+     *  @return the new live edge
+     *  @throws Error if either node does not belong to this graph
+     */
+    public synchronized Edge<N,E> addEdge(E data, Node<N,E> tail, Node<N,E> head) {
+	Version v = current;
+	int t = v.liveNodeId(tail);
+	int h = v.liveNodeId(head);
+	int e = v.edges.size;
+	Draft d = new Draft(v);
+	d.link(e, data, t, h);
+	d.numEdges++;
+	publish(d);
+	return new EdgeHandle(null, e);
+    }
+
+    /**
+     *  Removes a node and all its incident edges from the graph, as a
+     *  single new version.
+     *  Performance: O(degree * (log n + log e))
+     *
+     *  @param node : the node to be removed
+     *  @throws Error if the node does not belong to this graph
+     */
+    public synchronized void removeNode(Node<N,E> node) {
+	Version v = current;
+	int id = v.liveNodeId(node);
+	Draft d = new Draft(v);
+	// take edges off the ends of the node's lists, so nothing moves in them
+	for(IdList out = d.node(id).out; out.size > 0; out = d.node(id).out) {
+	    d.remove(out.get(out.size - 1));
+	}
+	for(IdList in = d.node(id).in; in.size > 0; in = d.node(id).in) {
+	    d.remove(in.get(in.size - 1));
+	}
+	d.nodes = d.nodes.set(id, null);
+	d.numNodes--;
+	publish(d);
+    }
+
+    /**
+     *  Removes an edge from the graph.
+     *  Performance: O(log n + log e)
+     *
+     *  @param edge : the edge to be removed
+     *  @throws Error if the edge does not belong to this graph
+     */
+    public synchronized void removeEdge(Edge<N,E> edge) {
+	Version v = current;
+	int e = v.liveEdgeId(edge);
+	Draft d = new Draft(v);
+	d.remove(e);
+	publish(d);
+    }
+
+    /**
+     *  Removes every edge from the graph with the given tail and head
+     *  nodes, as a single new version.
+     *  Performance: O(out-degree of tail * log e + k * (log n + log e))
+     *  to remove k edges
+     *
+     *  @param tail : the tail ("from" node) of the edge to be removed
+     *  @param head : the head ("to" node) of the edge to be removed
+     *  @throws Error if the head or tail nodes do not belong to this graph
+     */
+    public synchronized void removeEdge(Node<N,E> tail, Node<N,E> head) {
+	Version v = current;
+	int t = v.liveNodeId(tail);
+	int h = v.liveNodeId(head);
+	IdList out = v.nodeRec(t).out;
+	Draft d = new Draft(v);
+	for(int i = 0; i < out.size; i++) {
+	    int e = out.get(i);
+	    if(v.edgeRec(e).head == h) {
+		d.remove(e);
+	    }
+	}
+	if(d.numEdges < v.numEdges) {
+	    publish(d);
+	}
+    }
+
+    public String toString() {
+	return current.toString();
+    }
+
+    public boolean validateGraph() {
+	return current.validateGraph();
+    }
+
+    /**
+     *  Makes a new version current.  Callers hold the graph's lock.
+     */
+    private void publish(Trie nodes, Trie edges, int numNodes, int numEdges) {
+	current = new Version(current.number + 1, nodes, edges, numNodes, numEdges);
+    }
+
+    /**
+     *  Makes a draft the new current version.  Callers hold the
+     *  graph's lock.
+     */
+    private void publish(Draft d) {
+	publish(d.nodes, d.edges, d.numNodes, d.numEdges);
+    }
+
+    /**
+     *  Reads a node's record out of a trie.  The tries hold Objects, so
+     *  the unchecked cast is confined to here and edgeAt.
+     */
+    @SuppressWarnings("unchecked")
+    private static <N> NodeRec<N> nodeAt(Trie nodes, int id) {
+	return (NodeRec<N>)nodes.get(id);
+    }
+
+    /**
+     *  Reads an edge's record out of a trie.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> EdgeRec<E> edgeAt(Trie edges, int id) {
+	return (EdgeRec<E>)edges.get(id);
+    }
+
+    /**
+     *  Changes the data of a node.  Callers use NodeHandle.setData.
+     *
+     *  @throws Error if the node has been removed
+     */
+    private synchronized void setNodeData(int id, N data) {
+	Version v = current;
+	NodeRec<N> rec = v.nodeRec(id);
+	if(rec == null) {
+	    throw new Error("Node does not belong to graph.");
+	}
+	publish(v.nodes.set(id, new NodeRec<N>(data, rec.out, rec.in)), v.edges, v.numNodes, v.numEdges);
+    }
+
+    /**
+     *  Changes the data of an edge.  Callers use EdgeHandle.setData.
+     *
+     *  @throws Error if the edge has been removed
+     */
+    private synchronized void setEdgeData(int id, E data) {
+	Version v = current;
+	EdgeRec<E> rec = v.edgeRec(id);
+	if(rec == null) {
+	    throw new Error("Edge does not belong to graph.");
+	}
+	publish(v.nodes, v.edges.set(id, new EdgeRec<E>(data, rec.tail, rec.head, rec.outSlot, rec.inSlot)),
+		v.numNodes, v.numEdges);
+    }
+
+    /**
+     *  Moves an edge to a new tail and head.  Callers use
+     *  EdgeHandle.setTail and setHead.
+     *
+     *  @throws Error if the edge has been removed or a new endpoint
+     *          does not belong to this graph
+     */
+    private synchronized void moveEdge(int id, Node<N,E> tail, Node<N,E> head) {
+	Version v = current;
+	EdgeRec<E> rec = v.edgeRec(id);
+	if(rec == null) {
+	    throw new Error("Edge does not belong to graph.");
+	}
+	int t = (tail == null) ? rec.tail : v.liveNodeId(tail);
+	int h = (head == null) ? rec.head : v.liveNodeId(head);
+	Draft d = new Draft(v);
+	d.unlink(id);
+	d.link(id, rec.data, t, h);
+	publish(d);
+    }
+
+    /**
+     *  The tries and counts of the version a writer is building, which
+     *  keeps the nodes' edge lists and the edges' slots in them in step.
+     *  Callers hold the graph's lock.
+     */
+    private final class Draft {
+	Trie nodes;
+	Trie edges;
+	int numNodes;
+	int numEdges;
+
+	Draft(Version v) {
+	    this.nodes = v.nodes;
+	    this.edges = v.edges;
+	    this.numNodes = v.numNodes;
+	    this.numEdges = v.numEdges;
+	}
+
+	NodeRec<N> node(int id) {
+	    return nodeAt(nodes, id);
+	}
+
+	EdgeRec<E> edge(int id) {
+	    return edgeAt(edges, id);
+	}
+
+	/**
+	 *  Puts edge e, which is new or has just been unlinked, at the
+	 *  ends of its tail's and head's lists.
+	 *  Performance: O(log n + log e)
+	 */
+	void link(int e, E data, int t, int h) {
+	    NodeRec<N> tail = node(t);
+	    int outSlot = tail.out.size;
+	    nodes = nodes.set(t, tail.withOut(tail.out.append(e)));
+	    NodeRec<N> head = node(h);
+	    int inSlot = head.in.size;
+	    nodes = nodes.set(h, head.withIn(head.in.append(e)));
+	    EdgeRec<E> rec = new EdgeRec<E>(data, t, h, outSlot, inSlot);
+	    edges = (e == edges.size) ? edges.append(rec) : edges.set(e, rec);
+	}
+
+	/**
+	 *  Takes edge e out of its tail's and head's lists, moving the
+	 *  last edge of each list into the slot it leaves.
+	 *  Performance: O(log n + log e)
+	 */
+	void unlink(int e) {
+	    EdgeRec<E> rec = edge(e);
+	    NodeRec<N> tail = node(rec.tail);
+	    int last = tail.out.get(tail.out.size - 1);
+	    IdList out = tail.out.pop();
+	    if(last != e) {
+		out = out.set(rec.outSlot, last);
+		edges = edges.set(last, edge(last).withOutSlot(rec.outSlot));
+	    }
+	    nodes = nodes.set(rec.tail, tail.withOut(out));
+	    NodeRec<N> head = node(rec.head);
+	    last = head.in.get(head.in.size - 1);
+	    IdList in = head.in.pop();
+	    if(last != e) {
+		in = in.set(rec.inSlot, last);
+		edges = edges.set(last, edge(last).withInSlot(rec.inSlot));
+	    }
+	    nodes = nodes.set(rec.head, head.withIn(in));
+	}
+
+	/**
+	 *  Removes edge e.
+	 *  Performance: O(log n + log e)
+	 */
+	void remove(int e) {
+	    unlink(e);
+	    edges = edges.set(e, null);
+	    numEdges--;
+	}
+    }
+
+    /**
+     *  One immutable state of the graph.  A Version is a read-only
+     *  Graph: every mutator throws an Error.
+     */
+    public class Version implements Graph<N,E> {
+	/** The version number. */
+	private final long number;
+	/** NodeRecs indexed by node id; null for removed nodes. */
+	private final Trie nodes;
+	/** EdgeRecs indexed by edge id; null for removed edges. */
+	private final Trie edges;
+	/** The number of non-null entries in nodes. */
+	private final int numNodes;
+	/** The number of non-null entries in edges. */
+	private final int numEdges;
+
+	private Version(long number, Trie nodes, Trie edges, int numNodes, int numEdges) {
+	    this.number = number;
+	    this.nodes = nodes;
+	    this.edges = edges;
+	    this.numNodes = numNodes;
+	    this.numEdges = numEdges;
+	}
+
+	/**
+	 *  Returns the number of this version.
+	 *
+	 *  @return the version number
+	 */
+	public long getVersionNumber() {
+	    return number;
+	}
+
+	public Set<Node<N,E>> getNodes() {
+	    return nodeSet(false);
+	}
+
+	public Set<Edge<N,E>> getEdges() {
+	    return edgeSet(false);
+	}
+
+	public Edge<N,E> findEdge(Node<N,E> tail, Node<N,E> head) {
+	    int e = findEdgeId(tail, head);
+	    return (e < 0) ? null : new EdgeHandle(this, e);
+	}
+
+	public int numNodes() {
+	    return numNodes;
+	}
+
+	public int numEdges() {
+	    return numEdges;
+	}
+
+	public Node<N,E> addNode(N data) {
+	    throw new Error("Version is read-only.");
+	}
+
+	public Edge<N,E> addEdge(E data, Node<N,E> tail, Node<N,E> head) {
+	    throw new Error("Version is read-only.");
+	}
+
+	public void removeNode(Node<N,E> node) {
+	    throw new Error("Version is read-only.");
+	}
+
+	public void removeEdge(Edge<N,E> edge) {
+	    throw new Error("Version is read-only.");
+	}
+
+	public void removeEdge(Node<N,E> tail, Node<N,E> head) {
+	    throw new Error("Version is read-only.");
+	}
+
+	/**
+	 *  Returns a string representation of this version.
+	 *
+	 *  @return a string representation of this version
+	 */
+	public String toString() {
+	    StringBuilder builder = new StringBuilder();
+	    builder.append("\n");
+	    builder.append("Graph");
+	    builder.append("\n");
+	    for(int v = 0; v < nodes.size; v++) {
+		NodeRec<N> rec = nodeAt(nodes, v);
+		if(rec == null) continue;
+		builder.append("\n  Node: ").append(rec.data);
+		for(int i = 0; i < rec.out.size; i++) {
+		    EdgeRec<E> edge = edgeRec(rec.out.get(i));
+		    builder.append("\n    To: ").append(nodeRec(edge.head).data).append(", ").append(edge.data);
+		}
+	    }
+	    builder.append("\n\n Edges: ");
+	    for(int e = 0; e < edges.size; e++) {
+		EdgeRec<E> edge = edgeAt(edges, e);
+		if(edge == null) continue;
+		builder.append("\n    ").append(nodeRec(edge.head).data).append(", ").append(edge.data);
+	    }
+	    builder.append("\n");
+	    return builder.toString();
+	}
+
+	/**
+	 *  Verifies that every edge is listed, in the slots it records, by
+	 *  both of its endpoints, that the lists hold nothing else, and
+	 *  that the counts agree.
+	 *  Performance: O(n log n + e log e)
+	 *
+	 *  @return true if consistent, false otherwise
+	 */
+	public boolean validateGraph() {
+	    int liveEdges = 0;
+	    for(int e = 0; e < edges.size; e++) {
+		EdgeRec<E> edge = edgeAt(edges, e);
+		if(edge == null) continue;
+		liveEdges++;
+		NodeRec<N> tail = nodeAt(nodes, edge.tail);
+		NodeRec<N> head = nodeAt(nodes, edge.head);
+		if(tail == null || head == null
+		   || edge.outSlot >= tail.out.size || tail.out.get(edge.outSlot) != e
+		   || edge.inSlot >= head.in.size || head.in.get(edge.inSlot) != e) {
+		    return false;
+		}
+	    }
+	    int liveNodes = 0;
+	    long outSlots = 0;
+	    long inSlots = 0;
+	    for(int v = 0; v < nodes.size; v++) {
+		NodeRec<N> rec = nodeAt(nodes, v);
+		if(rec != null) {
+		    liveNodes++;
+		    outSlots += rec.out.size;
+		    inSlots += rec.in.size;
+		}
+	    }
+	    return liveEdges == numEdges && liveNodes == numNodes
+		&& outSlots == liveEdges && inSlots == liveEdges;
+	}
+
+	NodeRec<N> nodeRec(int id) {
+	    return nodeAt(nodes, id);
+	}
+
+	EdgeRec<E> edgeRec(int id) {
+	    return edgeAt(edges, id);
+	}
+
+	/**
+	 *  Returns the id of a node of this graph that is present in
+	 *  this version.
+	 *
+	 *  @throws Error if it is not
+	 */
+	int liveNodeId(Node<N,E> node) {
+	    if(node instanceof VersionedGraph.NodeHandle) {
+		NodeHandle handle = (NodeHandle)node;
+		if(handle.owner() == VersionedGraph.this && handle.id < nodes.size && nodes.get(handle.id) != null) {
+		    return handle.id;
+		}
+	    }
+	    throw new Error("Node does not belong to graph.");
+	}
+
+	/**
+	 *  Returns the id of an edge of this graph that is present in
+	 *  this version.
+	 *
+	 *  @throws Error if it is not
+	 */
+	int liveEdgeId(Edge<N,E> edge) {
+	    if(edge instanceof VersionedGraph.EdgeHandle) {
+		EdgeHandle handle = (EdgeHandle)edge;
+		if(handle.owner() == VersionedGraph.this && handle.id < edges.size && edges.get(handle.id) != null) {
+		    return handle.id;
+		}
+	    }
+	    throw new Error("Edge does not belong to graph.");
+	}
+
+	int findEdgeId(Node<N,E> tail, Node<N,E> head) {
+	    if(!(tail instanceof VersionedGraph.NodeHandle) || !(head instanceof VersionedGraph.NodeHandle)) {
+		return -1;
+	    }
+	    int t = ((NodeHandle)tail).id;
+	    int h = ((NodeHandle)head).id;
+	    if(t >= nodes.size || nodes.get(t) == null) {
+		return -1;
+	    }
+	    IdList out = nodeRec(t).out;
+	    for(int i = 0; i < out.size; i++) {
+		if(edgeRec(out.get(i)).head == h) {
+		    return out.get(i);
+		}
+	    }
+	    return -1;
+	}
+
+	/**
+	 *  The nodes of this version, handed out live or pinned.
+	 */
+	Set<Node<N,E>> nodeSet(final boolean live) {
+	    return new AbstractSet<Node<N,E>>() {
+		public Iterator<Node<N,E>> iterator() {
+		    return new SlotIterator<Node<N,E>>(nodes) {
+			Node<N,E> get(int id) { return new NodeHandle(live ? null : Version.this, id); }
+		    };
+		}
+		public int size() {
+		    return numNodes;
+		}
+	    };
+	}
+
+	/**
+	 *  The edges of this version, handed out live or pinned.
+	 */
+	Set<Edge<N,E>> edgeSet(final boolean live) {
+	    return new AbstractSet<Edge<N,E>>() {
+		public Iterator<Edge<N,E>> iterator() {
+		    return new SlotIterator<Edge<N,E>>(edges) {
+			Edge<N,E> get(int id) { return new EdgeHandle(live ? null : Version.this, id); }
+		    };
+		}
+		public int size() {
+		    return numEdges;
+		}
+	    };
+	}
+
+	/**
+	 *  The edges with the given ids, handed out live or pinned.
+	 */
+	Set<Edge<N,E>> edgeList(final IdList ids, final boolean live) {
+	    return new AbstractSet<Edge<N,E>>() {
+		public Iterator<Edge<N,E>> iterator() {
+		    return new Iterator<Edge<N,E>>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+			    return next < ids.size;
+			}
+
+			public Edge<N,E> next() {
+			    if(next >= ids.size) {
+				throw new NoSuchElementException();
+			    }
+			    return new EdgeHandle(live ? null : Version.this, ids.get(next++));
+			}
+		    };
+		}
+		public int size() {
+		    return ids.size;
+		}
+	    };
+	}
+    }
+
+    /**
+     *  Iterates over the ids of the non-null slots of a trie.
+     */
+    private abstract static class SlotIterator<T> implements Iterator<T> {
+	private final Trie trie;
+	private int next;
+
+	SlotIterator(Trie trie) {
+	    this.trie = trie;
+	    this.next = advance(0);
+	}
+
+	private int advance(int i) {
+	    while(i < trie.size && trie.get(i) == null) {
+		i++;
+	    }
+	    return i;
+	}
+
+	abstract T get(int id);
+
+	public boolean hasNext() {
+	    return next < trie.size;
+	}
+
+	public T next() {
+	    if(next >= trie.size) {
+		throw new NoSuchElementException();
+	    }
+	    T item = get(next);
+	    next = advance(next + 1);
+	    return item;
+	}
+    }
+
+    /**
+     *  A node of the graph.  A handle pinned to a version reads that
+     *  version; an unpinned (live) handle reads the current one.
+     */
+    private class NodeHandle implements Graph.Node<N,E> {
+	/** The version to read, or null for the current one. */
+	private final Version pinned;
+	/** The node's id, which is the same in every version. */
+	private final int id;
+
+	NodeHandle(Version pinned, int id) {
+	    this.pinned = pinned;
+	    this.id = id;
+	}
+
+	VersionedGraph<N,E> owner() {
+	    return VersionedGraph.this;
+	}
+
+	private Version version() {
+	    return (pinned != null) ? pinned : current;
+	}
+
+	private NodeRec<N> rec() {
+	    Version v = version();
+	    NodeRec<N> rec = (id < v.nodes.size) ? v.nodeRec(id) : null;
+	    if(rec == null) {
+		throw new Error("Node does not belong to graph.");
+	    }
+	    return rec;
+	}
+
+	public N getData() {
+	    return rec().data;
+	}
+
+	/**
+	 *  Sets the data of a live node, making a new version.
+	 *
+	 *  @throws Error if the node is pinned to a version
+	 */
+	public void setData(N data) {
+	    if(pinned != null) {
+		throw new Error("Version is read-only.");
+	    }
+	    setNodeData(id, data);
+	}
+
+	public Set<Edge<N,E>> getOutgoingEdges() {
+	    Version v = version();
+	    return v.edgeList(rec().out, pinned == null);
+	}
+
+	public Set<Edge<N,E>> getIncomingEdges() {
+	    Version v = version();
+	    return v.edgeList(rec().in, pinned == null);
+	}
+
+	/**
+	 *  Nodes are equal if they have the same id in the same graph,
+	 *  whichever versions they are pinned to.
+	 *
+	 *  @param that : the node to compare to this one
+	 *  @return true if that is the same node
+	 */
+	public boolean equals(Node<N,E> that) {
+	    return (that instanceof VersionedGraph.NodeHandle)
+		&& ((NodeHandle)that).owner() == VersionedGraph.this
+		&& ((NodeHandle)that).id == id;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Node) && this.equals((Node<N,E>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return String.valueOf(getData());
+	}
+    }
+
+    /**
+     *  An edge of the graph.  A handle pinned to a version reads that
+     *  version; an unpinned (live) handle reads the current one.
+     */
+    private class EdgeHandle implements Graph.Edge<N,E> {
+	/** The version to read, or null for the current one. */
+	private final Version pinned;
+	/** The edge's id, which is the same in every version. */
+	private final int id;
+
+	EdgeHandle(Version pinned, int id) {
+	    this.pinned = pinned;
+	    this.id = id;
+	}
+
+	VersionedGraph<N,E> owner() {
+	    return VersionedGraph.this;
+	}
+
+	private EdgeRec<E> rec() {
+	    Version v = (pinned != null) ? pinned : current;
+	    EdgeRec<E> rec = (id < v.edges.size) ? v.edgeRec(id) : null;
+	    if(rec == null) {
+		throw new Error("Edge does not belong to graph.");
+	    }
+	    return rec;
+	}
+
+	public E getData() {
+	    return rec().data;
+	}
+
+	/**
+	 *  Sets the data of a live edge, making a new version.
+	 *
+	 *  @throws Error if the edge is pinned to a version
+	 */
+	public void setData(E data) {
+	    if(pinned != null) {
+		throw new Error("Version is read-only.");
+	    }
+	    setEdgeData(id, data);
+	}
+
+	public Node<N,E> getTail() {
+	    return new NodeHandle(pinned, rec().tail);
+	}
+
+	/**
+	 *  Moves a live edge to a new tail, making a new version.
+	 *
+	 *  @throws Error if the edge is pinned to a version
+	 */
+	public void setTail(Node<N,E> node) {
+	    if(pinned != null) {
+		throw new Error("Version is read-only.");
+	    }
+	    moveEdge(id, node, null);
+	}
+
+	public Node<N,E> getHead() {
+	    return new NodeHandle(pinned, rec().head);
+	}
+
+	/**
+	 *  Moves a live edge to a new head, making a new version.
+	 *
+	 *  @throws Error if the edge is pinned to a version
+	 */
+	public void setHead(Node<N,E> node) {
+	    if(pinned != null) {
+		throw new Error("Version is read-only.");
+	    }
+	    moveEdge(id, null, node);
+	}
+
+	/**
+	 *  Edges are equal if they have the same id in the same graph,
+	 *  whichever versions they are pinned to.
+	 *
+	 *  @param that : the edge to compare to this one
+	 *  @return true if that is the same edge
+	 */
+	public boolean equals(Edge<N,E> that) {
+	    return (that instanceof VersionedGraph.EdgeHandle)
+		&& ((EdgeHandle)that).owner() == VersionedGraph.this
+		&& ((EdgeHandle)that).id == id;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object that) {
+	    return (that instanceof Edge) && this.equals((Edge<N,E>)that);
+	}
+
+	public int hashCode() {
+	    return id;
+	}
+
+	public String toString() {
+	    return String.valueOf(getData());
+	}
+    }
+
+    /**
+     *  The state of one node in one version.
+     */
+    private static final class NodeRec<N> {
+	final N data;
+	/** Ids of the edges leaving the node. */
+	final IdList out;
+	/** Ids of the edges entering the node. */
+	final IdList in;
+
+	NodeRec(N data, IdList out, IdList in) {
+	    this.data = data;
+	    this.out = out;
+	    this.in = in;
+	}
+
+	NodeRec<N> withOut(IdList out) {
+	    return new NodeRec<N>(data, out, in);
+	}
+
+	NodeRec<N> withIn(IdList in) {
+	    return new NodeRec<N>(data, out, in);
+	}
+    }
+
+    /**
+     *  The state of one edge in one version.
+     */
+    private static final class EdgeRec<E> {
+	final E data;
+	final int tail;
+	final int head;
+	/** The edge's index in its tail's out list. */
+	final int outSlot;
+	/** The edge's index in its head's in list. */
+	final int inSlot;
+
+	EdgeRec(E data, int tail, int head, int outSlot, int inSlot) {
+	    this.data = data;
+	    this.tail = tail;
+	    this.head = head;
+	    this.outSlot = outSlot;
+	    this.inSlot = inSlot;
+	}
+
+	EdgeRec<E> withOutSlot(int outSlot) {
+	    return new EdgeRec<E>(data, tail, head, outSlot, inSlot);
+	}
+
+	EdgeRec<E> withInSlot(int inSlot) {
+	    return new EdgeRec<E>(data, tail, head, outSlot, inSlot);
+	}
+    }
+
+    /**
+     *  A persistent list of edge ids: a 32-way trie of int leaves, like
+     *  Trie, that can also drop its last element.  The last leaf is only
+     *  as long as it needs to be, so a node of small degree costs one
+     *  short array per list.
+     */
+    private static final class IdList {
+	static final IdList EMPTY = new IdList(new int[0], 0, 0);
+
+	/** An int[] leaf when shift is 0, otherwise an Object[] of subtrees. */
+	final Object root;
+	/** The shift for the root level. */
+	final int shift;
+	/** The number of ids. */
+	final int size;
+
+	IdList(Object root, int shift, int size) {
+	    this.root = root;
+	    this.shift = shift;
+	    this.size = size;
+	}
+
+	/**
+	 *  Performance: O(log size)
+	 */
+	int get(int i) {
+	    Object node = root;
+	    for(int level = shift; level > 0; level -= 5) {
+		node = ((Object[])node)[(i >>> level) & 31];
+	    }
+	    return ((int[])node)[i & 31];
+	}
+
+	/**
+	 *  Returns a list with slot i (which must be less than size) set
+	 *  to id.
+	 *  Performance: O(log size)
+	 */
+	IdList set(int i, int id) {
+	    return new IdList(setIn(root, shift, i, id), shift, size);
+	}
+
+	/**
+	 *  Returns a list with id added at the end.
+	 *  Performance: O(log size)
+	 */
+	IdList append(int id) {
+	    Object r = root;
+	    int s = shift;
+	    if(size == (1 << (s + 5))) {
+		Object[] up = new Object[32];
+		up[0] = root;
+		r = up;
+		s += 5;
+	    }
+	    return new IdList(appendIn(r, s, size, id), s, size + 1);
+	}
+
+	/**
+	 *  Returns a list without its last id.
+	 *  Performance: O(log size)
+	 */
+	IdList pop() {
+	    int last = size - 1;
+	    if(last == 0) {
+		return EMPTY;
+	    }
+	    Object r = popIn(root, shift, last);
+	    int s = shift;
+	    if(s > 0 && last == (1 << s)) {
+		// the ids fit under the first subtree again
+		r = ((Object[])r)[0];
+		s -= 5;
+	    }
+	    return new IdList(r, s, last);
+	}
+
+	private static Object setIn(Object node, int level, int i, int id) {
+	    if(level == 0) {
+		int[] copy = ((int[])node).clone();
+		copy[i & 31] = id;
+		return copy;
+	    }
+	    Object[] copy = ((Object[])node).clone();
+	    int slot = (i >>> level) & 31;
+	    copy[slot] = setIn(copy[slot], level - 5, i, id);
+	    return copy;
+	}
+
+	private static Object appendIn(Object node, int level, int i, int id) {
+	    if(level == 0) {
+		int[] leaf = (node == null) ? EMPTY_LEAF : (int[])node;
+		int[] copy = Arrays.copyOf(leaf, (i & 31) + 1);
+		copy[i & 31] = id;
+		return copy;
+	    }
+	    Object[] copy = (node == null) ? new Object[32] : ((Object[])node).clone();
+	    int slot = (i >>> level) & 31;
+	    copy[slot] = appendIn(copy[slot], level - 5, i, id);
+	    return copy;
+	}
+
+	/**
+	 *  Drops slot i, the last, returning null if the subtree is left
+	 *  empty.
+	 */
+	private static Object popIn(Object node, int level, int i) {
+	    if(level == 0) {
+		return ((i & 31) == 0) ? null : Arrays.copyOf((int[])node, i & 31);
+	    }
+	    Object[] copy = ((Object[])node).clone();
+	    int slot = (i >>> level) & 31;
+	    copy[slot] = popIn(copy[slot], level - 5, i);
+	    return (slot == 0 && copy[0] == null) ? null : copy;
+	}
+
+	private static final int[] EMPTY_LEAF = new int[0];
+    }
+
+    /**
+     *  A persistent array: a 32-way trie in which set and append copy
+     *  only the path from the root to the changed slot and share
+     *  everything else with the trie they were called on.
+     */
+    private static final class Trie {
+	static final Trie EMPTY = new Trie(new Object[32], 0, 0);
+
+	/** The root of the trie. */
+	final Object[] root;
+	/** The shift for the root level; 0 when the root is a leaf. */
+	final int shift;
+	/** The number of slots in use. */
+	final int size;
+
+	Trie(Object[] root, int shift, int size) {
+	    this.root = root;
+	    this.shift = shift;
+	    this.size = size;
+	}
+
+	/**
+	 *  Performance: O(log size)
+	 */
+	Object get(int i) {
+	    Object[] node = root;
+	    for(int level = shift; level > 0; level -= 5) {
+		node = (Object[])node[(i >>> level) & 31];
+	    }
+	    return node[i & 31];
+	}
+
+	/**
+	 *  Returns a trie with slot i (which must be less than size) set
+	 *  to value.
+	 *  Performance: O(log size)
+	 */
+	Trie set(int i, Object value) {
+	    return new Trie(setIn(root, shift, i, value), shift, size);
+	}
+
+	/**
+	 *  Returns a trie with value added as a new last slot.
+	 *  Performance: O(log size)
+	 */
+	Trie append(Object value) {
+	    Object[] r = root;
+	    int s = shift;
+	    if(size == (1 << (s + 5))) {
+		r = new Object[32];
+		r[0] = root;
+		s += 5;
+	    }
+	    return new Trie(setIn(r, s, size, value), s, size + 1);
+	}
+
+	private static Object[] setIn(Object[] node, int level, int i, Object value) {
+	    Object[] copy = (node == null) ? new Object[32] : node.clone();
+	    if(level == 0) {
+		copy[i & 31] = value;
+	    } else {
+		int slot = (i >>> level) & 31;
+		copy[slot] = setIn((Object[])copy[slot], level - 5, i, value);
+	    }
+	    return copy;
+	}
+    }
+}